@@ -0,0 +1,88 @@
+package com.fetch.api.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import com.fetch.api.CachingAuthenticationProvider;
+import com.fetch.api.service.TokenService;
+
+/**
+ * Per-request cost of authenticating, as wired in WebSecurityConfiguration: decoding
+ * the Basic header and checking the password through a ProviderManager, with and without
+ * the credential cache, against verifying a bearer token. cached=false with
+ * encoder=noop is the previous filter chain with the default configuration.
+ * Run with -prof gc to compare the bytes allocated per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AuthenticationBenchmark {
+
+    @Param({"noop", "bcrypt"})
+    public String encoder;
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private AuthenticationManager authenticationManager;
+    private TokenService tokenService;
+    private String basicHeader;
+    private String bearerHeader;
+
+    @Setup
+    public void setup() {
+        String password = "bcrypt".equals(encoder) ? "{bcrypt}" + new BCryptPasswordEncoder().encode("password")
+                : "{noop}password";
+        DaoAuthenticationProvider passwordCheck = new DaoAuthenticationProvider();
+        passwordCheck.setUserDetailsService(new InMemoryUserDetailsManager(
+                User.withUsername("admin").password(password).build()));
+        AuthenticationProvider provider = cached
+                ? new CachingAuthenticationProvider(passwordCheck, 10_000, Duration.ofMinutes(1)) : passwordCheck;
+        authenticationManager = new ProviderManager(provider);
+        basicHeader = "Basic " + Base64.getEncoder().encodeToString("admin:password".getBytes(StandardCharsets.UTF_8));
+
+        tokenService = new TokenService(true, Base64.getEncoder().encodeToString(new byte[32]), Duration.ofMinutes(15),
+                Clock.systemUTC());
+        bearerHeader = "Bearer " + tokenService.issue("admin");
+    }
+
+    @Benchmark
+    public Authentication basic() {
+        String credentials = new String(Base64.getDecoder().decode(basicHeader.substring(6)), StandardCharsets.UTF_8);
+        int colon = credentials.indexOf(':');
+        return authenticationManager.authenticate(UsernamePasswordAuthenticationToken.unauthenticated(
+                credentials.substring(0, colon), credentials.substring(colon + 1)));
+    }
+
+    @Benchmark
+    public String bearer() {
+        return tokenService.verify(bearerHeader);
+    }
+}
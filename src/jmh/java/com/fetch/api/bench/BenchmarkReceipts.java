@@ -0,0 +1,106 @@
+package com.fetch.api.bench;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import com.fetch.api.model.Money;
+import com.fetch.model.Item;
+import com.fetch.model.Receipt;
+
+/**
+ * Receipts shared by the benchmarks.
+ */
+public final class BenchmarkReceipts {
+
+    private static final String[] RETAILERS = {
+        "Target", "Walgreens", "M&M Corner Market", "Whole Foods Market", "Trader Joes",
+        "CVS Pharmacy", "Costco Wholesale", "Safeway", "7-Eleven", "Home Depot"
+    };
+
+    private static final String[] PRODUCTS = {
+        "Mountain Dew 12PK", "Emils Cheese Pizza", "Knorr Creamy Chicken", "Doritos Nacho Cheese",
+        "   Klarbrunn 12-PK 12 FL OZ  ", "Gatorade", "Pepsi - 12-oz", "Dasani", "Organic Bananas",
+        "Whole Milk 1 Gal", "Large Eggs 12ct", "Sourdough Bread", "Paper Towels 6 Roll", "Ground Coffee"
+    };
+
+    private BenchmarkReceipts() {
+    }
+
+    /**
+     * readme(): The sample receipt given in the README.
+     */
+    public static Receipt readme() {
+        String[][] itemData = {
+            {"Mountain Dew 12PK", "6.49"},
+            {"Emils Cheese Pizza", "12.25"},
+            {"Knorr Creamy Chicken", "1.26"},
+            {"Doritos Nacho Cheese", "3.35"},
+            {" Klarbrunn 12-PK 12 FL OZ ", "12.00"}
+        };
+        List<Item> items = new ArrayList<>();
+        for (String[] data : itemData) {
+            Item item = new Item();
+            item.setShortDescription(data[0]);
+            item.setPrice(data[1]);
+            items.add(item);
+        }
+        Receipt receipt = new Receipt();
+        receipt.setRetailer("Target");
+        receipt.setPurchaseDate(LocalDate.parse("2022-01-01"));
+        receipt.setPurchaseTime("13:01");
+        receipt.setItems(items);
+        receipt.setTotal("35.35");
+        return receipt;
+    }
+
+    /**
+     * withItems(): A receipt with the given number of items, for measuring per-item costs.
+     */
+    public static Receipt withItems(int count) {
+        Receipt receipt = readme();
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Item item = new Item();
+            item.setShortDescription("Product line " + i);
+            item.setPrice((i % 50) + "." + (10 + i % 90));
+            items.add(item);
+        }
+        receipt.setItems(items);
+        return receipt;
+    }
+
+    /**
+     * dataset(): Valid receipts with the given number of items, generated from a fixed seed so
+     * every run does the same work. Retailers and products repeat as in real traffic, while
+     * prices, dates and times vary; a quarter of the prices are round or multiples of 0.25.
+     */
+    public static Receipt[] dataset(int count, int items, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Receipt[] receipts = new Receipt[count];
+        for (int r = 0; r < count; r++) {
+            List<Item> itemList = new ArrayList<>(items);
+            long total = 0;
+            for (int i = 0; i < items; i++) {
+                long cents = random.nextInt(25, 5000);
+                if (random.nextInt(4) == 0) {
+                    cents -= cents % 25;
+                }
+                total += cents;
+                Item item = new Item();
+                item.setShortDescription(PRODUCTS[random.nextInt(PRODUCTS.length)]);
+                item.setPrice(Money.format(cents));
+                itemList.add(item);
+            }
+            Receipt receipt = new Receipt();
+            receipt.setRetailer(RETAILERS[random.nextInt(RETAILERS.length)]);
+            receipt.setPurchaseDate(LocalDate.of(2022, 1, 1).plusDays(random.nextInt(3 * 365)));
+            receipt.setPurchaseTime(String.format("%02d:%02d", random.nextInt(24), random.nextInt(60)));
+            receipt.setItems(itemList);
+            receipt.setTotal(Money.format(total));
+            receipts[r] = receipt;
+        }
+        return receipts;
+    }
+}
@@ -0,0 +1,39 @@
+package com.fetch.api.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks once for each thread count in -Djmh.threads (default "1,4")
+ * and writes every run's results as JSON to threads-N.json under -Djmh.results (default
+ * target/jmh), so runs from different releases can be compared. The arguments are
+ * passed to JMH as on its own command line, for example an include pattern or -prof gc.
+ */
+public final class BenchmarkSuite {
+
+    private BenchmarkSuite() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Path results = Paths.get(System.getProperty("jmh.results", "target/jmh"));
+        Files.createDirectories(results);
+        for (String value : System.getProperty("jmh.threads", "1,4").split(",")) {
+            int threads = Integer.parseInt(value.trim());
+            Options options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(results.resolve("threads-" + threads + ".json").toString())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
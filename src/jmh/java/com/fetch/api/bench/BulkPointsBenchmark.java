@@ -0,0 +1,103 @@
+package com.fetch.api.bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fetch.api.ApiApplication;
+import com.fetch.api.service.ReceiptService;
+
+/**
+ * Latency of resolving N receipt IDs over HTTP: N single GET /receipts/{id}/points
+ * calls against one POST /receipts/points/batch. Both go through the security
+ * filters and JSON binding of the running application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BulkPointsBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int ids;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+    private String authorization;
+    private List<String> receiptIds;
+    private String batchBody;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = SpringApplication.run(ApiApplication.class, "--server.port=0", "--logging.level.root=WARN",
+                "--logging.level.org.springframework.web=WARN");
+        baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        authorization = "Basic " + Base64.getEncoder().encodeToString("admin:password".getBytes(StandardCharsets.UTF_8));
+        client = HttpClient.newHttpClient();
+
+        ReceiptService receiptService = context.getBean(ReceiptService.class);
+        receiptIds = new ArrayList<>(ids);
+        StringBuilder body = new StringBuilder("{\"ids\":[");
+        for (int i = 0; i < ids; i++) {
+            String id = receiptService.save(BenchmarkReceipts.readme());
+            receiptIds.add(id);
+            body.append(i == 0 ? "\"" : ",\"").append(id).append('"');
+        }
+        batchBody = body.append("]}").toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int singleGets() throws IOException, InterruptedException {
+        int bytes = 0;
+        for (String id : receiptIds) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/receipts/" + id + "/points"))
+                    .header("Authorization", authorization)
+                    .GET()
+                    .build();
+            bytes += client.send(request, HttpResponse.BodyHandlers.ofString()).body().length();
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public int batchGet() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/receipts/points/batch"))
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(batchBody))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString()).body().length();
+    }
+}
@@ -0,0 +1,105 @@
+package com.fetch.api.bench;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fetch.api.service.PointsRules;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.api.store.ReceiptIdGenerator;
+import com.fetch.api.store.TimeOrderedIdGenerator;
+import com.fetch.model.Receipt;
+
+/**
+ * Throughput of generating receipt IDs, and of ReceiptService.save() with each
+ * generator, from 1 to 64 threads. The store is points-only and replaced every
+ * iteration so its growth stays out of the numbers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IdGeneratorBenchmark {
+
+    @Param({"random", "time-ordered"})
+    public String ids;
+
+    private ReceiptIdGenerator generator;
+    private ReceiptService receiptService;
+    private Receipt receipt;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        generator = "random".equals(ids) ? ReceiptIdGenerator.random() : new TimeOrderedIdGenerator();
+        receipt = BenchmarkReceipts.readme();
+    }
+
+    @Setup(Level.Iteration)
+    public void newStore() {
+        receiptService = new ReceiptService(new CompactReceiptStore(false), PointsRules.defaults(), generator);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public UUID next1() {
+        return generator.next();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public UUID next4() {
+        return generator.next();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public UUID next16() {
+        return generator.next();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public UUID next64() {
+        return generator.next();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String save1() {
+        return receiptService.save(receipt);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String save4() {
+        return receiptService.save(receipt);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String save16() {
+        return receiptService.save(receipt);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String save64() {
+        return receiptService.save(receipt);
+    }
+}
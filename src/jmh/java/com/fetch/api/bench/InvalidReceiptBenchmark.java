@@ -0,0 +1,100 @@
+package com.fetch.api.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fetch.api.model.CustomError;
+import com.fetch.api.service.ApiDelegateImpl;
+import com.fetch.api.service.ErrorController;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.model.Receipt;
+
+/**
+ * Throughput of rejecting an invalid receipt. returned() is the current
+ * ApiDelegateImpl, which returns the 400 response. thrown() is the previous path, an
+ * exception with a stack trace caught further up and turned into the response, and
+ * stackless() is the same with the stackless CustomError. depth adds that many frames
+ * between the handler and the catch, as the servlet and Spring MVC frames do.
+ * Run with -prof gc to compare the bytes allocated per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class InvalidReceiptBenchmark {
+
+    @Param({"0", "100"})
+    public int depth;
+
+    private final ReceiptService receiptService = new ReceiptService();
+    private final ApiDelegateImpl apiDelegate = new ApiDelegateImpl(receiptService);
+    private final ErrorController errorController = new ErrorController();
+    private Receipt receipt;
+
+    @Setup
+    public void setup() {
+        receipt = BenchmarkReceipts.readme();
+        receipt.setPurchaseTime("25:01");
+    }
+
+    @Benchmark
+    public ResponseEntity<?> returned() {
+        return call(depth, false, false);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> thrown() {
+        try {
+            return call(depth, true, true);
+        } catch (PreviousError ex) {
+            return ErrorController.errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<?> stackless() {
+        try {
+            return call(depth, true, false);
+        } catch (CustomError ex) {
+            return errorController.handleCustomException(ex);
+        }
+    }
+
+    private ResponseEntity<?> call(int frames, boolean throwing, boolean stackTrace) {
+        if (frames > 0) {
+            return call(frames - 1, throwing, stackTrace);
+        }
+        if (!throwing) {
+            return apiDelegate.receiptsProcessPost(receipt);
+        }
+        List<String> receiptErrors = receiptService.validateReceipt(receipt);
+        if (stackTrace) {
+            throw new PreviousError(String.join(", ", receiptErrors));
+        }
+        throw new CustomError().message(String.join(", ", receiptErrors))
+                .code(Integer.toString(HttpStatus.BAD_REQUEST.value()));
+    }
+
+    // CustomError as it was before it became stackless.
+    private static final class PreviousError extends RuntimeException {
+        PreviousError(String message) {
+            super(message);
+        }
+    }
+}
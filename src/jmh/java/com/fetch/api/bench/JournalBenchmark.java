@@ -0,0 +1,86 @@
+package com.fetch.api.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.api.store.JournaledReceiptStore;
+import com.fetch.api.store.ReceiptJournal;
+import com.fetch.model.Receipt;
+
+/**
+ * Ingest throughput of ReceiptService.save() with durability off, with the
+ * journal written but not forced, and with the journal forced per group commit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class JournalBenchmark {
+
+    @Param({"off", "journal", "journal-fsync"})
+    public String durability;
+
+    private Path directory;
+    private JournaledReceiptStore journaled;
+    private ReceiptService receiptService;
+    private Receipt receipt;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        receipt = BenchmarkReceipts.readme();
+        CompactReceiptStore store = new CompactReceiptStore(true);
+        if ("off".equals(durability)) {
+            receiptService = new ReceiptService(store);
+            return;
+        }
+        directory = Files.createTempDirectory("journal-bench");
+        journaled = new JournaledReceiptStore(store,
+                new ReceiptJournal(directory, 64L << 20, "journal-fsync".equals(durability)));
+        receiptService = new ReceiptService(journaled);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (journaled != null) {
+            journaled.close();
+            deleteRecursively(directory);
+        }
+    }
+
+    @Benchmark
+    public String save() {
+        return receiptService.save(receipt);
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.fetch.api.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.api.store.ReceiptCodec;
+import com.fetch.api.store.ReceiptJournal;
+
+/**
+ * Time to replay a journal of README-sized receipts into a points-only compact store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+public class JournalRecoveryBenchmark {
+
+    @Param({"10000000"})
+    public long records;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void writeJournal() throws IOException {
+        directory = Files.createTempDirectory("journal-recovery-bench");
+        byte[] encoded = ReceiptCodec.encode(BenchmarkReceipts.readme());
+        try (ReceiptJournal journal = new ReceiptJournal(directory, 64L << 20, false)) {
+            LongStream.range(0, records).parallel().forEach(i -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                journal.append(random.nextLong() | 1, random.nextLong(), 28, System.currentTimeMillis(), encoded);
+            });
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        JournalBenchmark.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long recover() throws IOException {
+        CompactReceiptStore store = new CompactReceiptStore(false);
+        try (ReceiptJournal journal = new ReceiptJournal(directory, 64L << 20, false)) {
+            journal.replay((msb, lsb, points, writtenMillis, encoded) -> store.restore(msb, lsb, points, encoded, writtenMillis));
+        }
+        return store.size();
+    }
+}
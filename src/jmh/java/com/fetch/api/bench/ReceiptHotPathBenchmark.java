@@ -0,0 +1,142 @@
+package com.fetch.api.bench;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.model.InlineResponse200;
+import com.fetch.model.InlineResponse2001;
+import com.fetch.model.Receipt;
+
+/**
+ * Throughput of the per-request work behind POST /receipts/process and GET
+ * /receipts/{id}/points, over a generated dataset of realistic receipts: the
+ * ReceiptService calls, and the JSON binding of the request and response bodies.
+ *
+ * The services are shared by all threads, so running at several thread counts with
+ * BenchmarkSuite shows contention on the store. save() writes into a points-only
+ * CompactReceiptStore that is replaced every iteration, so the heap stays flat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReceiptHotPathBenchmark {
+
+    // A power of two, so the cursors wrap with a mask.
+    private static final int DATASET = 4096;
+
+    @Param({"1", "5", "50"})
+    public int items;
+
+    private Receipt[] receipts;
+    private byte[][] json;
+    private String[] ids;
+    private ReceiptService lookupService;
+    private ReceiptService saveService;
+    private ObjectMapper objectMapper;
+    private InlineResponse200 idResponse;
+    private InlineResponse2001 pointsResponse;
+
+    /**
+     * Each thread's position in the dataset, so threads do not all work on the same receipt.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int position;
+
+        @Setup
+        public void setup() {
+            position = (int) (Thread.currentThread().getId() * 997);
+        }
+
+        int next() {
+            return position++ & (DATASET - 1);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        objectMapper = new ObjectMapper().findAndRegisterModules()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        receipts = BenchmarkReceipts.dataset(DATASET, items, 20240601L);
+        json = new byte[DATASET][];
+        ids = new String[DATASET];
+        lookupService = new ReceiptService();
+        for (int i = 0; i < DATASET; i++) {
+            json[i] = objectMapper.writeValueAsBytes(receipts[i]);
+            ids[i] = lookupService.save(receipts[i]);
+        }
+        idResponse = new InlineResponse200();
+        idResponse.setId(ids[0]);
+        pointsResponse = new InlineResponse2001();
+        pointsResponse.setPoints(lookupService.findPointsById(ids[0]));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetSaveStore() {
+        saveService = new ReceiptService(new CompactReceiptStore(false));
+    }
+
+    @Benchmark
+    public String save(Cursor cursor) {
+        return saveService.save(receipts[cursor.next()]);
+    }
+
+    @Benchmark
+    public Long findPointsById(Cursor cursor) {
+        return lookupService.findPointsById(ids[cursor.next()]);
+    }
+
+    @Benchmark
+    public List<String> validateReceipt(Cursor cursor) {
+        return lookupService.validateReceipt(receipts[cursor.next()]);
+    }
+
+    @Benchmark
+    public long calculatePoints(Cursor cursor) {
+        return lookupService.calculatePoints(receipts[cursor.next()]);
+    }
+
+    @Benchmark
+    public boolean isValidTime(Cursor cursor) {
+        return ReceiptService.isValidTime(receipts[cursor.next()].getPurchaseTime());
+    }
+
+    @Benchmark
+    public Receipt readReceipt(Cursor cursor) throws IOException {
+        return objectMapper.readValue(json[cursor.next()], Receipt.class);
+    }
+
+    @Benchmark
+    public byte[] writeIdResponse() throws IOException {
+        return objectMapper.writeValueAsBytes(idResponse);
+    }
+
+    @Benchmark
+    public byte[] writePointsResponse() throws IOException {
+        return objectMapper.writeValueAsBytes(pointsResponse);
+    }
+}
@@ -0,0 +1,75 @@
+package com.fetch.api.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fetch.api.model.ParsedReceipt;
+import com.fetch.api.service.ReceiptParser;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.model.Receipt;
+
+/**
+ * Decode, validate and score one receipt from its JSON bytes: data binding into the
+ * generated model with double arithmetic, against ReceiptParser with cents.
+ * Run with -prof gc to compare the bytes allocated per receipt.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReceiptParserBenchmark {
+
+    // 5 is the README receipt.
+    @Param({"5", "500"})
+    public int items;
+
+    private final ReceiptService receiptService = new ReceiptService();
+    private ObjectMapper objectMapper;
+    private ReceiptParser receiptParser;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = new ObjectMapper().findAndRegisterModules()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        receiptParser = new ReceiptParser(objectMapper.getFactory());
+        Receipt receipt = items == 5 ? BenchmarkReceipts.readme() : BenchmarkReceipts.withItems(items);
+        json = objectMapper.writeValueAsBytes(receipt);
+    }
+
+    @Benchmark
+    public long dataBinding() throws IOException {
+        Receipt receipt = objectMapper.readValue(json, Receipt.class);
+        if (!receiptService.validateReceipt(receipt).isEmpty()) {
+            return -1;
+        }
+        return receiptService.calculatePoints(receipt);
+    }
+
+    @Benchmark
+    public long streaming() throws IOException {
+        ParsedReceipt receipt = receiptParser.parse(json, 0, json.length);
+        if (!receiptService.validateReceipt(receipt).isEmpty()) {
+            return -1;
+        }
+        return receiptService.calculatePoints(receipt);
+    }
+}
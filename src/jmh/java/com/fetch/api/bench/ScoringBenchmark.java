@@ -0,0 +1,120 @@
+package com.fetch.api.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fetch.api.model.Money;
+import com.fetch.api.service.ReceiptParser;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.model.Item;
+import com.fetch.model.Receipt;
+
+/**
+ * Throughput of ReceiptService.calculatePoints(), which runs the compiled PointsRules,
+ * against the README rules hand-written on integer cents, handWritten(), and the
+ * previous double-based implementation, doubles().
+ * Run with -prof gc to compare the bytes allocated per receipt.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ScoringBenchmark {
+
+    // 5 is the README receipt.
+    @Param({"5", "100"})
+    public int items;
+
+    private final ReceiptService receiptService = new ReceiptService();
+    private Receipt receipt;
+
+    @Setup
+    public void setup() {
+        receipt = items == 5 ? BenchmarkReceipts.readme() : BenchmarkReceipts.withItems(items);
+    }
+
+    @Benchmark
+    public long rules() {
+        return receiptService.calculatePoints(receipt);
+    }
+
+    @Benchmark
+    public long handWritten() {
+        long points = 0;
+        String retailer = receipt.getRetailer();
+        for (int i = 0; i < retailer.length(); i++) {
+            if (Character.isLetterOrDigit(retailer.charAt(i))) {
+                points++;
+            }
+        }
+        long total = Money.parseCents(receipt.getTotal());
+        if (total % 100 == 0) {
+            points += 50;
+        }
+        if (total % 25 == 0) {
+            points += 25;
+        }
+        List<Item> items = receipt.getItems();
+        points += (long) (items.size() / 2) * 5;
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            if (item.getShortDescription().trim().length() % 3 == 0) {
+                points += (Money.parseCents(item.getPrice()) + 499) / 500;
+            }
+        }
+        if (receipt.getPurchaseDate().getDayOfMonth() % 2 != 0) {
+            points += 6;
+        }
+        int minutes = ReceiptParser.parseMinutes(receipt.getPurchaseTime());
+        if (minutes >= 14 * 60 && minutes < 16 * 60) {
+            points += 10;
+        }
+        return points;
+    }
+
+    @Benchmark
+    public long doubles() {
+        long points = 0;
+        for (char c : receipt.getRetailer().toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                points++;
+            }
+        }
+        double total = Double.parseDouble(receipt.getTotal());
+        if (total % 1 == 0) {
+            points += 50;
+        }
+        if (total % 0.25 == 0) {
+            points += 25;
+        }
+        points += (long) ((receipt.getItems().size()) / 2) * 5;
+        for (Item item : receipt.getItems()) {
+            if (item.getShortDescription().trim().length() % 3 == 0) {
+                Double price = Double.parseDouble(item.getPrice()) * 0.2;
+                points += Math.ceil(price);
+            }
+        }
+        if (receipt.getPurchaseDate().getDayOfMonth() % 2 != 0) {
+            points += 6;
+        }
+        int hours = Integer.parseInt(receipt.getPurchaseTime().substring(0, 2));
+        if (hours >= 14 && hours < 16) {
+            points += 10;
+        }
+        return points;
+    }
+}
@@ -0,0 +1,168 @@
+package com.fetch.api.jfr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+
+import com.fetch.api.service.LatencyHistogram;
+
+/**
+ * Summarizes the receipt events in a Java Flight Recorder file into per-stage latency
+ * breakdowns: each endpoint's requests and, for POST /receipts/process, the time spent
+ * outside ApiDelegateImpl (security filters, JSON binding and writing the response),
+ * validation and saving, and within saves, scoring and the store write. It also counts
+ * ingest outcomes and validation error messages.
+ *
+ * The events are threshold-gated, so only requests slower than each event's threshold are
+ * in the file. For a breakdown of every request, record with the thresholds lowered, for
+ * example with a copy of default.jfc made by "jfr configure" (JDK 17+) or JDK Mission Control
+ * that sets the com.fetch.receipts events' threshold to 0 ms.
+ *
+ * Record with: java -XX:StartFlightRecording:filename=receipts.jfr,settings=default -jar api.jar
+ * Run with: mvn -Pbenchmarks test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.fetch.api.jfr.ReceiptEventAnalyzer -Dexec.args=receipts.jfr
+ */
+public final class ReceiptEventAnalyzer {
+
+    private static final String OUTSIDE_HANDLER = "  outside ApiDelegateImpl";
+
+    private ReceiptEventAnalyzer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: ReceiptEventAnalyzer <recording.jfr>");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[0]);
+        Map<String, LatencyHistogram> stages = new LinkedHashMap<>();
+        Map<String, Long> outcomes = new TreeMap<>();
+        Map<String, Long> errors = new TreeMap<>();
+        Map<Long, List<RecordedEvent>> processRequests = new HashMap<>();
+        Map<Long, List<RecordedEvent>> ingests = new HashMap<>();
+
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                switch (event.getEventType().getName()) {
+                    case ReceiptRequestEvent.NAME:
+                        String endpoint = event.getString("endpoint");
+                        record(stages, "request " + endpoint, event.getDuration());
+                        if ("PROCESS".equals(endpoint)) {
+                            byThread(processRequests, event);
+                        }
+                        break;
+                    case ReceiptIngestEvent.NAME:
+                        record(stages, "ingest", event.getDuration());
+                        record(stages, "  validation", event.getDuration("validation"));
+                        record(stages, "  save", event.getDuration("save"));
+                        outcomes.merge(event.getString("outcome"), 1L, Long::sum);
+                        byThread(ingests, event);
+                        break;
+                    case ReceiptValidationEvent.NAME:
+                        record(stages, "validation", event.getDuration());
+                        if (!event.getBoolean("valid")) {
+                            for (String error : event.getString("errors").split(", ")) {
+                                errors.merge(error, 1L, Long::sum);
+                            }
+                        }
+                        break;
+                    case ReceiptSaveEvent.NAME:
+                        record(stages, "save", event.getDuration());
+                        record(stages, "  scoring", event.getDuration("scoring"));
+                        record(stages, "  store", event.getDuration("store"));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        outsideHandler(stages, processRequests, ingests);
+
+        System.out.printf("%s%n%n%-28s %8s %9s %9s %9s %9s%n", file, "stage", "events", "p50 ms", "p99 ms",
+                "max ms", "total ms");
+        for (Map.Entry<String, LatencyHistogram> stage : stages.entrySet()) {
+            LatencyHistogram histogram = stage.getValue();
+            System.out.printf("%-28s %8d %9.2f %9.2f %9.2f %9.1f%n", stage.getKey(), histogram.count(),
+                    millis(histogram.percentile(0.50)), millis(histogram.percentile(0.99)), millis(histogram.max()),
+                    millis(histogram.sum()));
+        }
+        if (stages.isEmpty()) {
+            System.out.println("No receipt events; were the thresholds too high, or the recording too short?");
+        }
+        if (!outcomes.isEmpty()) {
+            System.out.printf("%nIngest outcomes:%n");
+            outcomes.forEach((outcome, count) -> System.out.printf("  %-26s %8d%n", outcome, count));
+        }
+        if (!errors.isEmpty()) {
+            System.out.printf("%nValidation errors:%n");
+            errors.forEach((error, count) -> System.out.printf("  %-26s %8d%n", error, count));
+        }
+    }
+
+    // The part of each recorded POST /receipts/process outside the ingest event it contains, on the same thread.
+    private static void outsideHandler(Map<String, LatencyHistogram> stages, Map<Long, List<RecordedEvent>> requests,
+            Map<Long, List<RecordedEvent>> ingests) {
+        Comparator<RecordedEvent> byStart = Comparator.comparing(RecordedEvent::getStartTime);
+        for (Map.Entry<Long, List<RecordedEvent>> thread : requests.entrySet()) {
+            List<RecordedEvent> inner = ingests.get(thread.getKey());
+            if (inner == null) {
+                continue;
+            }
+            List<RecordedEvent> outer = thread.getValue();
+            outer.sort(byStart);
+            inner.sort(byStart);
+            int next = 0;
+            for (RecordedEvent request : outer) {
+                Instant start = request.getStartTime();
+                while (next < inner.size() && inner.get(next).getStartTime().isBefore(start)) {
+                    next++;
+                }
+                if (next < inner.size() && !inner.get(next).getEndTime().isAfter(request.getEndTime())) {
+                    record(stages, OUTSIDE_HANDLER, request.getDuration().minus(inner.get(next).getDuration()));
+                    next++;
+                }
+            }
+        }
+        // Listed under the process requests rather than last.
+        LatencyHistogram outside = stages.remove(OUTSIDE_HANDLER);
+        if (outside != null) {
+            Map<String, LatencyHistogram> ordered = new LinkedHashMap<>();
+            stages.forEach((name, histogram) -> {
+                ordered.put(name, histogram);
+                if (name.equals("request PROCESS")) {
+                    ordered.put(OUTSIDE_HANDLER, outside);
+                }
+            });
+            stages.clear();
+            stages.putAll(ordered);
+        }
+    }
+
+    private static void byThread(Map<Long, List<RecordedEvent>> events, RecordedEvent event) {
+        RecordedThread thread = event.getThread();
+        long id = thread == null ? -1 : thread.getJavaThreadId();
+        events.computeIfAbsent(id, key -> new ArrayList<>()).add(event);
+    }
+
+    private static void record(Map<String, LatencyHistogram> stages, String stage, Duration duration) {
+        stages.computeIfAbsent(stage, key -> new LatencyHistogram()).record(duration.toNanos());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,184 @@
+package com.fetch.api.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fetch.api.ApiApplication;
+import com.fetch.api.bench.BenchmarkReceipts;
+import com.fetch.api.service.LatencyHistogram;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.model.Receipt;
+
+/**
+ * Open-loop load test of the whole HTTP path, security filters and JSON binding included.
+ *
+ * The application is started in-process on a random port, with receipts already stored
+ * for the GETs to look up. Requests are then sent on a fixed schedule at the target rate,
+ * a mix of POST /receipts/process with generated receipts and GET /receipts/{id}/points,
+ * whether or not earlier ones have finished. Latency is measured from when each request
+ * was due, which corrects for coordinated omission: a server that stalls is charged for
+ * every request that should have been sent during the stall. The latency from when each
+ * request was actually sent is reported next to it, to show how much a closed-loop client
+ * would have hidden. After a warm-up, it reports throughput, p50/p99/p99.9/max and errors
+ * per request type.
+ *
+ * Everything runs on localhost, so it needs no network. For gating a release, the exit
+ * status is 1 when any request failed or, with -Dload.maxP99Ms set, when the corrected p99
+ * of any request type is above it.
+ *
+ * Run with: mvn -Pbenchmarks test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.fetch.api.load.ReceiptLoadTest
+ * Tune with -Dload.rate (requests per second), -Dload.seconds, -Dload.warmupSeconds,
+ * -Dload.postPercent, -Dload.items, -Dload.maxOutstanding and -Dload.maxP99Ms.
+ */
+public class ReceiptLoadTest {
+
+    private static final int RATE = Integer.getInteger("load.rate", 2000);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 30);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmupSeconds", 10);
+    private static final int POST_PERCENT = Integer.getInteger("load.postPercent", 20);
+    private static final int ITEMS = Integer.getInteger("load.items", 5);
+    private static final int MAX_OUTSTANDING = Integer.getInteger("load.maxOutstanding", 20_000);
+    private static final double MAX_P99_MS = Double.parseDouble(System.getProperty("load.maxP99Ms", "0"));
+
+    private static final int DATASET = 4096;
+
+    public static void main(String[] args) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ApiApplication.class)
+                .properties("server.port=0", "logging.level.root=WARN")
+                .run(args);
+        boolean passed;
+        try {
+            passed = run(context);
+        } finally {
+            context.close();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static boolean run(ConfigurableApplicationContext context) throws Exception {
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        String authorization = "Basic " + Base64.getEncoder().encodeToString((context.getEnvironment()
+                .getProperty("spring.security.user.name") + ":" + context.getEnvironment()
+                .getProperty("spring.security.user.password")).getBytes(StandardCharsets.UTF_8));
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        Receipt[] receipts = BenchmarkReceipts.dataset(DATASET, ITEMS, 20240601L);
+        ReceiptService receiptService = context.getBean(ReceiptService.class);
+        List<HttpRequest> posts = new ArrayList<>(DATASET);
+        List<HttpRequest> gets = new ArrayList<>(DATASET);
+        for (Receipt receipt : receipts) {
+            posts.add(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/receipts/process"))
+                    .header("Authorization", authorization).header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(60))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(receipt))).build());
+            gets.add(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/receipts/"
+                    + receiptService.save(receipt) + "/points"))
+                    .header("Authorization", authorization).timeout(Duration.ofSeconds(60)).build());
+        }
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30)).build();
+
+        System.out.printf("Warming up for %d s at %d requests/s%n", WARMUP_SECONDS, RATE);
+        drive(client, posts, gets, WARMUP_SECONDS);
+        System.out.printf("Measuring for %d s at %d requests/s, %d%% POST%n", SECONDS, RATE, POST_PERCENT);
+        Traffic[] traffic = drive(client, posts, gets, SECONDS);
+
+        System.out.printf("%n%-5s %8s %9s %9s %9s %9s %9s %9s %7s %8s%n", "type", "requests", "req/s",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms", "sent p99", "errors", "skipped");
+        boolean passed = true;
+        for (Traffic type : traffic) {
+            LatencyHistogram due = type.sinceDue;
+            System.out.printf("%-5s %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %7d %8d%n", type.name, due.count(),
+                    due.count() / (double) SECONDS, millis(due.percentile(0.50)), millis(due.percentile(0.99)),
+                    millis(due.percentile(0.999)), millis(due.max()), millis(type.sinceSent.percentile(0.99)),
+                    type.errors.sum(), type.skipped.sum());
+            passed &= type.errors.sum() == 0 && type.skipped.sum() == 0
+                    && (MAX_P99_MS <= 0 || millis(due.percentile(0.99)) <= MAX_P99_MS);
+        }
+        System.out.println(passed ? "PASSED" : "FAILED");
+        return passed;
+    }
+
+    // Sends requests on the open-loop schedule for the given time and waits for the last responses.
+    private static Traffic[] drive(HttpClient client, List<HttpRequest> posts, List<HttpRequest> gets, int seconds)
+            throws InterruptedException {
+        Traffic post = new Traffic("POST");
+        Traffic get = new Traffic("GET");
+        AtomicInteger outstanding = new AtomicInteger();
+        SplittableRandom random = new SplittableRandom(20240601L);
+        long interval = 1_000_000_000L / RATE;
+        long requests = (long) seconds * RATE;
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long due = start + i * interval;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean isPost = random.nextInt(100) < POST_PERCENT;
+            Traffic type = isPost ? post : get;
+            HttpRequest request = (isPost ? posts : gets).get(random.nextInt(DATASET));
+            if (outstanding.get() >= MAX_OUTSTANDING) {
+                type.skipped.increment();
+                continue;
+            }
+            outstanding.incrementAndGet();
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                long now = System.nanoTime();
+                type.sinceDue.record(now - due);
+                type.sinceSent.record(now - sent);
+                if (error != null || response.statusCode() >= 300) {
+                    type.errors.increment();
+                }
+                outstanding.decrementAndGet();
+            });
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return new Traffic[] {post, get};
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * What was measured for one request type.
+     */
+    private static final class Traffic {
+
+        final String name;
+        final LatencyHistogram sinceDue = new LatencyHistogram();
+        final LatencyHistogram sinceSent = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        // Not sent because MAX_OUTSTANDING requests were already waiting; counted against the run.
+        final LongAdder skipped = new LongAdder();
+
+        Traffic(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.fetch.api.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.api.ApiApplication;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+
+/**
+ * Load test comparing receipts.server.mode=platform and virtual with slow clients.
+ *
+ * For each mode the application is started on a random port. Slow clients then each
+ * open a connection and trickle a receipt POST body over several seconds, as a client
+ * on a poor mobile link would, while a probe sends points GETs at a fixed rate. Probe
+ * latency is measured from when each GET was due, not when it was sent, so a stalled
+ * server shows up in the percentiles. The report gives probe p50/p99/max and the peak
+ * number of requests the server was running at once.
+ *
+ * Run with: mvn -Pbenchmarks test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.fetch.api.load.ServerModeLoadTest
+ * The virtual mode needs Maven itself to run on Java 21. Tune with -Dload.modes,
+ * -Dload.slowClients, -Dload.slowSeconds, -Dload.probesPerSecond.
+ */
+public class ServerModeLoadTest {
+
+    private static final String[] MODES = System.getProperty("load.modes", "platform,virtual").split(",");
+    private static final int SLOW_CLIENTS = Integer.getInteger("load.slowClients", 400);
+    private static final int SLOW_SECONDS = Integer.getInteger("load.slowSeconds", 10);
+    private static final int PROBES_PER_SECOND = Integer.getInteger("load.probesPerSecond", 100);
+
+    private static final byte[] RECEIPT = ("{\"retailer\":\"Target\",\"purchaseDate\":\"2022-01-01\",\"purchaseTime\":\"13:01\","
+            + "\"items\":[{\"shortDescription\":\"Mountain Dew 12PK\",\"price\":\"6.49\"}],\"total\":\"6.49\"}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        List<String> rows = new ArrayList<>();
+        for (String mode : MODES) {
+            rows.add(run(mode.trim()));
+        }
+        System.out.printf("%n%-10s %6s %9s %7s %8s %8s %8s %7s%n", "mode", "slow", "peak-busy", "probes",
+                "p50 ms", "p99 ms", "max ms", "failed");
+        rows.forEach(System.out::println);
+    }
+
+    private static String run(String mode) throws Exception {
+        InFlightFilter inFlight = new InFlightFilter();
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ApiApplication.class)
+                .properties("server.port=0", "receipts.server.mode=" + mode, "logging.level.org.springframework.web=INFO")
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("inFlightFilter", inFlight))
+                .run();
+        try {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            String authorization = "Basic " + Base64.getEncoder().encodeToString((context.getEnvironment()
+                    .getProperty("spring.security.user.name") + ":" + context.getEnvironment()
+                    .getProperty("spring.security.user.password")).getBytes(StandardCharsets.UTF_8));
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30)).build();
+            String id = post(client, port, authorization);
+
+            CountDownLatch slowDone = new CountDownLatch(SLOW_CLIENTS);
+            LongAdder failed = new LongAdder();
+            for (int i = 0; i < SLOW_CLIENTS; i++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        slowPost(port, authorization);
+                    } catch (IOException e) {
+                        failed.increment();
+                    } finally {
+                        slowDone.countDown();
+                    }
+                }, "slow-client-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            long[] latencies = probe(client, port, authorization, id, failed);
+            slowDone.await();
+            return String.format("%-10s %6d %9d %7d %8.1f %8.1f %8.1f %7d", mode, SLOW_CLIENTS, inFlight.peak.get(),
+                    latencies.length, percentile(latencies, 0.50), percentile(latencies, 0.99),
+                    percentile(latencies, 1.0), failed.sum());
+        } finally {
+            context.close();
+        }
+    }
+
+    // Fires GETs on a fixed schedule for the slow clients' duration; each latency counts from its due time.
+    private static long[] probe(HttpClient client, int port, String authorization, String id, LongAdder failed)
+            throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/receipts/" + id + "/points"))
+                .header("Authorization", authorization).timeout(Duration.ofSeconds(60)).build();
+        int probes = SLOW_SECONDS * PROBES_PER_SECOND;
+        long interval = 1_000_000_000L / PROBES_PER_SECOND;
+        long[] latencies = new long[probes];
+        List<CompletableFuture<?>> pending = new ArrayList<>(probes);
+        long start = System.nanoTime();
+        for (int i = 0; i < probes; i++) {
+            long due = start + i * interval;
+            LockSupport.parkNanos(due - System.nanoTime());
+            int index = i;
+            pending.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                latencies[index] = System.nanoTime() - due;
+                if (error != null || response.statusCode() >= 300) {
+                    failed.increment();
+                }
+            }));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+        return latencies;
+    }
+
+    // Sends the headers at once and the body a byte at a time over SLOW_SECONDS, then reads the response.
+    private static void slowPost(int port, String authorization) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(60_000);
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /receipts/process HTTP/1.1\r\nHost: localhost\r\nAuthorization: " + authorization
+                    + "\r\nContent-Type: application/json\r\nContent-Length: " + RECEIPT.length
+                    + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            long pause = SLOW_SECONDS * 1_000_000_000L / RECEIPT.length;
+            for (byte b : RECEIPT) {
+                out.write(b);
+                out.flush();
+                LockSupport.parkNanos(pause);
+            }
+            InputStream in = socket.getInputStream();
+            byte[] status = in.readNBytes(12);
+            if (status.length < 12 || status[9] != '2') {
+                throw new IOException("Unexpected response " + new String(status, StandardCharsets.US_ASCII));
+            }
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static String post(HttpClient client, int port, String authorization) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/receipts/process"))
+                .header("Authorization", authorization).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(RECEIPT)).build();
+        String body = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        return new ObjectMapper().readTree(body).get("id").asText();
+    }
+
+    private static double percentile(long[] latencies, double quantile) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * Counts the requests being served and remembers the most at once.
+     */
+    static final class InFlightFilter implements Filter {
+
+        final AtomicInteger current = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            peak.accumulateAndGet(current.incrementAndGet(), Math::max);
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                current.decrementAndGet();
+            }
+        }
+    }
+}
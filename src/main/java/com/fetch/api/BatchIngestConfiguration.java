@@ -0,0 +1,44 @@
+package com.fetch.api;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * The generated controller binds the batch upload body as a Resource, which
+ * ResourceHttpMessageConverter reads fully into a byte array. This registers a
+ * converter ahead of it that hands the request stream through unread instead,
+ * so ReceiptBatchProcessor can consume the upload incrementally.
+ */
+@Configuration
+public class BatchIngestConfiguration implements WebMvcConfigurer {
+
+    static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new StreamingResourceHttpMessageConverter());
+    }
+
+    private static final class StreamingResourceHttpMessageConverter extends ResourceHttpMessageConverter {
+
+        StreamingResourceHttpMessageConverter() {
+            super(true);
+            setSupportedMediaTypes(Arrays.asList(APPLICATION_NDJSON, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        protected Resource readInternal(Class<? extends Resource> clazz, HttpInputMessage inputMessage) throws IOException {
+            return new InputStreamResource(inputMessage.getBody());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.fetch.api;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fetch.api.service.TokenService;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Authenticates requests that carry a valid "Authorization: Bearer" token from
+ * TokenService. Other requests pass through untouched to the Basic filter, and an
+ * invalid token leaves the request unauthenticated, so it gets the usual 401.
+ */
+public class BearerTokenFilter extends OncePerRequestFilter {
+
+    private final TokenService tokenService;
+    private final SecurityContextHolderStrategy contextHolder = SecurityContextHolder.getContextHolderStrategy();
+
+    public BearerTokenFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String username = tokenService.verify(request.getHeader(HttpHeaders.AUTHORIZATION));
+        if (username != null) {
+            SecurityContext context = contextHolder.createEmptyContext();
+            context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(username, null,
+                    Collections.emptyList()));
+            contextHolder.setContext(context);
+        }
+        chain.doFilter(request, response);
+    }
+}
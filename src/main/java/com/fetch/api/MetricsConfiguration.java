@@ -0,0 +1,24 @@
+package com.fetch.api;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.fetch.api.service.ReceiptMetrics;
+
+/**
+ * Registers RequestMetricsFilter ahead of every other filter, Spring Security's included,
+ * so the endpoint timers cover authentication as well as the handler.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<RequestMetricsFilter> requestMetricsFilter(ReceiptMetrics receiptMetrics) {
+        FilterRegistrationBean<RequestMetricsFilter> registration =
+                new FilterRegistrationBean<>(new RequestMetricsFilter(receiptMetrics));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
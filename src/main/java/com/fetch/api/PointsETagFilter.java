@@ -0,0 +1,72 @@
+package com.fetch.api;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fetch.api.service.ApiDelegateImpl;
+import com.fetch.api.service.ReceiptMetrics;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.ReceiptIds;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Answers GET /receipts/{id}/points with 304 Not Modified when If-None-Match holds the
+ * points' current ETag, straight after authorization and before Spring MVC binds the
+ * request or serializes a body. The receipt must still be stored, so an expired one
+ * gets its 410 rather than a 304. Everything else passes through untouched.
+ */
+public class PointsETagFilter extends OncePerRequestFilter {
+
+    private static final int PREFIX = "/receipts/".length();
+    private static final int SUFFIX = "/points".length();
+
+    private final ReceiptService receiptService;
+
+    public PointsETagFilter(ReceiptService receiptService) {
+        this.receiptService = receiptService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        String path = request.getRequestURI();
+        if (ifNoneMatch != null
+                && RequestMetricsFilter.endpoint(request.getMethod(), path) == ReceiptMetrics.Timer.POINTS) {
+            String id = ReceiptIds.canonical(path.substring(PREFIX, path.length() - SUFFIX));
+            String etag = ApiDelegateImpl.pointsETag(id, receiptService.getScoringVersion());
+            if (matches(ifNoneMatch, etag) && receiptService.findPointsById(id) != null) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                response.setHeader(HttpHeaders.ETAG, etag);
+                response.setHeader(HttpHeaders.CACHE_CONTROL, ApiDelegateImpl.POINTS_CACHE_CONTROL);
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * matches(): To compare If-None-Match with the ETag, weakly as RFC 9110 requires for it.
+     * @param ifNoneMatch "*" or a comma-separated list of entity tags
+     * @param etag quoted entity tag
+     * @return
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
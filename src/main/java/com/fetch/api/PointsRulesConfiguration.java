@@ -0,0 +1,26 @@
+package com.fetch.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fetch.api.service.PointsRules;
+
+/**
+ * Compiles receipts.points.rules at startup, falling back to the README rules when
+ * it is empty. A malformed rule set fails startup rather than scoring receipts wrongly.
+ */
+@Configuration
+public class PointsRulesConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(PointsRulesConfiguration.class);
+
+    @Bean
+    public PointsRules pointsRules(@Value("${receipts.points.rules:}") String rules) {
+        PointsRules pointsRules = rules.isBlank() ? PointsRules.defaults() : PointsRules.compile(rules);
+        log.info("Scoring receipts with points rules: {}", pointsRules);
+        return pointsRules;
+    }
+}
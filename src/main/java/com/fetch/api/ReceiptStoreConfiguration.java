@@ -0,0 +1,93 @@
+package com.fetch.api;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fetch.api.store.BoundedReceiptStore;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.api.store.JournaledReceiptStore;
+import com.fetch.api.store.MapReceiptStore;
+import com.fetch.api.store.ReceiptIdGenerator;
+import com.fetch.api.store.ReceiptJournal;
+import com.fetch.api.store.ReceiptStore;
+import com.fetch.api.store.StringDictionary;
+import com.fetch.api.store.TimeOrderedIdGenerator;
+
+/**
+ * Selects the ReceiptStore implementation from receipts.store.type, and puts the
+ * journal in front of it when receipts.journal.enabled is true. Selects the
+ * ReceiptIdGenerator from receipts.ids.type. The StringDictionary is shared by the
+ * store and the points calculation.
+ */
+@Configuration
+public class ReceiptStoreConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptStoreConfiguration.class);
+
+    @Bean
+    public StringDictionary stringDictionary(@Value("${receipts.dictionary.maximum-entries:65536}") int maximumEntries) {
+        return new StringDictionary(maximumEntries);
+    }
+
+    @Bean
+    public ReceiptStore receiptStore(StringDictionary stringDictionary,
+            @Value("${receipts.store.type:map}") String type,
+            @Value("${receipts.store.keep-receipts:true}") boolean keepReceipts,
+            @Value("${receipts.store.maximum-size:0}") long maximumSize,
+            @Value("${receipts.store.maximum-bytes:0}") long maximumBytes,
+            @Value("${receipts.store.expire-after-write:0s}") Duration expireAfterWrite,
+            @Value("${receipts.store.expired-ids:1000000}") long expiredIds,
+            @Value("${receipts.journal.enabled:false}") boolean journalEnabled,
+            @Value("${receipts.journal.directory:data/journal}") Path journalDirectory,
+            @Value("${receipts.journal.segment-bytes:67108864}") long segmentBytes,
+            @Value("${receipts.journal.fsync:true}") boolean fsync,
+            @Value("${receipts.dictionary.maximum-entries:65536}") int dictionaryEntries) throws IOException {
+        // With no room for entries the dictionary would only add a re-encoding step.
+        StringDictionary dictionary = dictionaryEntries > 0 ? stringDictionary : null;
+        ReceiptStore store;
+        switch (type) {
+            case "map":
+                store = new MapReceiptStore(dictionary);
+                break;
+            case "compact":
+                store = new CompactReceiptStore(keepReceipts, dictionary);
+                break;
+            case "bounded":
+                store = new BoundedReceiptStore(maximumSize, maximumBytes, expireAfterWrite, keepReceipts, expiredIds,
+                        dictionary);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown receipts.store.type: " + type);
+        }
+        if (!journalEnabled) {
+            return store;
+        }
+
+        JournaledReceiptStore journaled = new JournaledReceiptStore(store,
+                new ReceiptJournal(journalDirectory, segmentBytes, fsync));
+        long started = System.nanoTime();
+        long records = journaled.recover();
+        log.info("Replayed {} receipts from {} in {} ms", records, journalDirectory,
+                (System.nanoTime() - started) / 1_000_000);
+        return journaled;
+    }
+
+    @Bean
+    public ReceiptIdGenerator receiptIdGenerator(@Value("${receipts.ids.type:random}") String type) {
+        switch (type) {
+            case "random":
+                return ReceiptIdGenerator.random();
+            case "time-ordered":
+                return new TimeOrderedIdGenerator();
+            default:
+                throw new IllegalArgumentException("Unknown receipts.ids.type: " + type);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.fetch.api;
+
+import java.io.IOException;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.fetch.api.jfr.ReceiptRequestEvent;
+import com.fetch.api.service.ReceiptMetrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Times the receipt endpoints into ReceiptMetrics, from before the security filters to
+ * the end of the response, and records the slow ones as a ReceiptRequestEvent. Other
+ * requests, /metrics included, pass through untimed.
+ */
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    private static final String RECEIPTS = "/receipts/";
+    private static final String POINTS = "/points";
+
+    private final ReceiptMetrics receiptMetrics;
+
+    public RequestMetricsFilter(ReceiptMetrics receiptMetrics) {
+        this.receiptMetrics = receiptMetrics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReceiptMetrics.Timer timer = endpoint(request.getMethod(), request.getRequestURI());
+        if (timer == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ReceiptRequestEvent event = new ReceiptRequestEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            receiptMetrics.record(timer, start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.endpoint = timer.name();
+                event.status = response.getStatus();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * endpoint(): The timer for the request, matched on the api.yml paths without building a pattern.
+     * @param method
+     * @param path
+     * @return the timer, or null for requests that are not timed
+     */
+    static ReceiptMetrics.Timer endpoint(String method, String path) {
+        if (!path.startsWith(RECEIPTS)) {
+            return null;
+        }
+        if ("POST".equals(method)) {
+            switch (path) {
+                case "/receipts/process":
+                    return ReceiptMetrics.Timer.PROCESS;
+                case "/receipts/process/batch":
+                    return ReceiptMetrics.Timer.PROCESS_BATCH;
+                case "/receipts/points/batch":
+                    return ReceiptMetrics.Timer.POINTS_BATCH;
+                default:
+                    return null;
+            }
+        }
+        // /receipts/{id}/points, where the ID is one non-empty path segment.
+        int idEnd = path.length() - POINTS.length();
+        if ("GET".equals(method) && path.endsWith(POINTS) && idEnd > RECEIPTS.length()
+                && path.indexOf('/', RECEIPTS.length()) == idEnd) {
+            return ReceiptMetrics.Timer.POINTS;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,61 @@
+package com.fetch.api;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Selects how Tomcat runs requests from receipts.server.mode.
+ *
+ * "platform" runs every request on Tomcat's pool of server.tomcat.threads.max platform
+ * threads, so that many slow clients are enough to make the rest queue. "virtual" runs
+ * every request on its own virtual thread, so a request waiting on a slow client only
+ * holds a small heap object and concurrency is bounded by server.tomcat.max-connections.
+ * Virtual threads need Java 21; the executor is looked up reflectively so the build
+ * stays on Java 17, and startup fails with a clear message on older runtimes.
+ *
+ * Both modes run the same servlet stack, so WebSecurityConfiguration and ErrorController
+ * apply unchanged.
+ */
+@Configuration
+public class ServerModeConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(ServerModeConfiguration.class);
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> serverModeCustomizer(@Value("${receipts.server.mode:platform}") String mode) {
+        switch (mode) {
+            case "platform":
+                return protocolHandler -> {
+                };
+            case "virtual":
+                ExecutorService executor = newVirtualThreadPerTaskExecutor();
+                log.info("Serving requests on virtual threads");
+                return protocolHandler -> protocolHandler.setExecutor(executor);
+            default:
+                throw new IllegalArgumentException("Unknown receipts.server.mode: " + mode);
+        }
+    }
+
+    /**
+     * newVirtualThreadPerTaskExecutor(): Executors.newVirtualThreadPerTaskExecutor() when the runtime has it.
+     * @return
+     * @throws IllegalStateException before Java 21
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("receipts.server.mode=virtual needs Java 21 or later, running on "
+                    + Runtime.version(), e);
+        }
+    }
+}
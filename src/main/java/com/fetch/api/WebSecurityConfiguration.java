@@ -2,26 +2,57 @@ package com.fetch.api;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.FilterSecurityInterceptor;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.service.TokenService;
 
+/**
+ * Basic authentication against the configured user, with successful checks cached for
+ * receipts.security.credential-cache.ttl, and signed bearer tokens from TokenService
+ * accepted ahead of Basic when receipts.security.token.enabled is true. Conditional points
+ * GETs are answered by PointsETagFilter once the request is authorized.
+ */
 @Configuration
 @EnableWebSecurity
 public class WebSecurityConfiguration {
 
     @SuppressWarnings("deprecation")
 	@Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, UserDetailsService userDetailsService,
+            TokenService tokenService, ReceiptService receiptService,
+            @Value("${receipts.security.credential-cache.maximum-size:10000}") long cacheSize,
+            @Value("${receipts.security.credential-cache.ttl:60s}") Duration cacheTtl) throws Exception {
+        DaoAuthenticationProvider passwordCheck = new DaoAuthenticationProvider();
+        passwordCheck.setUserDetailsService(userDetailsService);
+        AuthenticationProvider provider = cacheTtl.isZero() ? passwordCheck
+                : new CachingAuthenticationProvider(passwordCheck, cacheSize, cacheTtl);
+
         http.csrf(csrf -> csrf.disable())
                 .authorizeRequests(authorize -> authorize
                         .anyRequest().authenticated()
                 )
+                .authenticationManager(new ProviderManager(provider))
                 .httpBasic(withDefaults())
-                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterAfter(new PointsETagFilter(receiptService), FilterSecurityInterceptor.class);
+        if (tokenService.isEnabled()) {
+            http.addFilterBefore(new BearerTokenFilter(tokenService), BasicAuthenticationFilter.class);
+        }
         return http.build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,50 @@
+package com.fetch.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * One POST /receipts/process handled by ApiDelegateImpl, split into validation and saving.
+ */
+@Name(ReceiptIngestEvent.NAME)
+@Label("Receipt Ingest")
+@Category({"Fetch API", "Receipts"})
+@Description("A receipt validated and saved by ApiDelegateImpl, JSON binding excluded")
+@Threshold("10 ms")
+@StackTrace(false)
+public final class ReceiptIngestEvent extends Event {
+
+    public static final String NAME = "com.fetch.receipts.Ingest";
+
+    public static final String STORED = "stored";
+    public static final String INVALID = "invalid";
+    public static final String CONFLICT = "conflict";
+
+    @Label("Receipt ID")
+    public String receiptId;
+
+    @Label("Item Count")
+    public int itemCount;
+
+    @Label("Outcome")
+    @Description("stored, invalid or conflict (an Idempotency-Key reused for another receipt)")
+    public String outcome;
+
+    @Label("Validation Errors")
+    public String errors;
+
+    @Label("Validation")
+    @Timespan(Timespan.NANOSECONDS)
+    public long validation;
+
+    @Label("Save")
+    @Description("Deduplication, scoring and the store write")
+    @Timespan(Timespan.NANOSECONDS)
+    public long save;
+}
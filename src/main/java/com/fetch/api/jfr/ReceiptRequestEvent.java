@@ -0,0 +1,30 @@
+package com.fetch.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A request to a receipt endpoint, from the first filter to the end of the response, so it
+ * includes the security chain and JSON binding that the ReceiptIngest event inside it does not.
+ */
+@Name(ReceiptRequestEvent.NAME)
+@Label("Receipt Request")
+@Category({"Fetch API", "Receipts"})
+@Description("A receipt endpoint request, security filters and JSON binding included")
+@Threshold("20 ms")
+@StackTrace(false)
+public final class ReceiptRequestEvent extends Event {
+
+    public static final String NAME = "com.fetch.receipts.Request";
+
+    @Label("Endpoint")
+    public String endpoint;
+
+    @Label("Status")
+    public int status;
+}
@@ -0,0 +1,64 @@
+package com.fetch.api.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * One receipt scored and stored by ReceiptService.save(), split into scoring and the store write.
+ */
+@Name(ReceiptSaveEvent.NAME)
+@Label("Receipt Save")
+@Category({"Fetch API", "Receipts"})
+@Description("A receipt scored and written to the receipt store by ReceiptService")
+@Threshold("1 ms")
+@StackTrace(false)
+public final class ReceiptSaveEvent extends Event {
+
+    public static final String NAME = "com.fetch.receipts.Save";
+
+    @Label("Receipt ID")
+    public String receiptId;
+
+    @Label("Item Count")
+    public int itemCount;
+
+    @Label("Scoring Version")
+    public long scoringVersion;
+
+    @Label("Scoring")
+    @Timespan(Timespan.NANOSECONDS)
+    public long scoring;
+
+    @Label("Store")
+    @Description("The store write, journal included, and any rescore overlays")
+    @Timespan(Timespan.NANOSECONDS)
+    public long store;
+
+    /**
+     * finish(): To end the event and, when it passes its threshold, fill it in and record it.
+     * Nothing is set on events that are dropped.
+     * @param id receipt ID
+     * @param items
+     * @param version scoring version used
+     * @param start System.nanoTime() at the start of the save
+     * @param scored System.nanoTime() after scoring
+     * @param stored System.nanoTime() after the store write
+     */
+    public void finish(String id, int items, long version, long start, long scored, long stored) {
+        end();
+        if (shouldCommit()) {
+            receiptId = id;
+            itemCount = items;
+            scoringVersion = version;
+            scoring = scored - start;
+            store = stored - scored;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.fetch.api.jfr;
+
+import java.util.List;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One receipt checked by ReceiptService against api.yml, from a single POST or a batch.
+ */
+@Name(ReceiptValidationEvent.NAME)
+@Label("Receipt Validation")
+@Category({"Fetch API", "Receipts"})
+@Description("A receipt validated by ReceiptService")
+@Threshold("1 ms")
+@StackTrace(false)
+public final class ReceiptValidationEvent extends Event {
+
+    public static final String NAME = "com.fetch.receipts.Validation";
+
+    @Label("Item Count")
+    public int itemCount;
+
+    @Label("Valid")
+    public boolean valid;
+
+    @Label("Validation Errors")
+    public String errors;
+
+    /**
+     * finish(): To end the event and, when it passes its threshold, fill it in and record it.
+     * @param items
+     * @param messages the validation errors list
+     * @param from size of the list before this validation
+     */
+    public void finish(int items, List<String> messages, int from) {
+        end();
+        if (shouldCommit()) {
+            itemCount = items;
+            valid = messages.size() == from;
+            errors = valid ? null : String.join(", ", messages.subList(from, messages.size()));
+            commit();
+        }
+    }
+}
@@ -12,6 +12,7 @@ import io.swagger.annotations.ApiModelProperty;
 
 /**
  * To Display Error Response with Message and Code. 
+ * The error is stackless: it only carries a response, so it does not pay for a stack trace.
  */
 @ApiModel(description = "Error message")
 public class CustomError extends RuntimeException   {
@@ -21,6 +22,10 @@ public class CustomError extends RuntimeException   {
   @JsonProperty("code")
   private String code;
 
+  public CustomError() {
+    super(null, null, false, false);
+  }
+
   public CustomError message(String message) {
     this.message = message;
     return this;
@@ -0,0 +1,71 @@
+package com.fetch.api.model;
+
+/**
+ * Conversions between decimal amount strings such as "6.49" and whole cents.
+ */
+public final class Money {
+
+    // Returned when a string is not a plain decimal amount.
+    public static final long INVALID = -1L;
+
+    // Largest number of cents that can be parsed without overflow.
+    private static final long MAX_CENTS = Long.MAX_VALUE / 100;
+
+    private Money() {
+    }
+
+    /**
+     * parseCents(): To parse an amount with up to two decimals into cents without allocating.
+     * @param amount
+     * @return cents, or INVALID when the amount is not in "digits[.d[d]]" form
+     */
+    public static long parseCents(CharSequence amount) {
+        if (amount == null) {
+            return INVALID;
+        }
+        int length = amount.length();
+        int i = 0;
+        long whole = 0;
+        while (i < length && amount.charAt(i) != '.') {
+            int digit = amount.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || whole > MAX_CENTS / 10) {
+                return INVALID;
+            }
+            whole = whole * 10 + digit;
+            i++;
+        }
+        if (i == 0 || whole > MAX_CENTS) {
+            return INVALID;
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (i < length) {
+            i++;
+            while (i < length) {
+                int digit = amount.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || ++fractionDigits > 2) {
+                    return INVALID;
+                }
+                fraction = fraction * 10 + digit;
+                i++;
+            }
+            if (fractionDigits == 0) {
+                return INVALID;
+            }
+        }
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        return whole * 100 + fraction;
+    }
+
+    /**
+     * format(): To format cents as an amount with two decimals.
+     * @param cents
+     * @return
+     */
+    public static String format(long cents) {
+        long fraction = cents % 100;
+        return (cents / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
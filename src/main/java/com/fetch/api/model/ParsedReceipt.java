@@ -0,0 +1,65 @@
+package com.fetch.api.model;
+
+import java.time.LocalDate;
+
+/**
+ * Receipt as decoded by ReceiptParser: amounts in cents and the purchase time in
+ * minutes after midnight, with no intermediate strings or generated model.
+ * Fields that were missing or malformed hold null, -1 or Money.INVALID, and are
+ * reported by ReceiptService.validateReceipt(ParsedReceipt).
+ *
+ * The constructor keeps the item arrays it is given without copying them. ReceiptParser
+ * passes trimmed copies of its reusable scratch arrays, so each receipt owns its arrays.
+ */
+public final class ParsedReceipt {
+
+    // Purchase time value when it is missing or not in H:MM / HH:MM form.
+    public static final int INVALID_TIME = -1;
+
+    private final String retailer;
+    private final LocalDate purchaseDate;
+    private final int purchaseMinutes;
+    private final long totalCents;
+    private final int itemCount;
+    private final String[] descriptions;
+    private final long[] priceCents;
+
+    public ParsedReceipt(String retailer, LocalDate purchaseDate, int purchaseMinutes, long totalCents,
+            int itemCount, String[] descriptions, long[] priceCents) {
+        this.retailer = retailer;
+        this.purchaseDate = purchaseDate;
+        this.purchaseMinutes = purchaseMinutes;
+        this.totalCents = totalCents;
+        this.itemCount = itemCount;
+        this.descriptions = descriptions;
+        this.priceCents = priceCents;
+    }
+
+    public String getRetailer() {
+        return retailer;
+    }
+
+    public LocalDate getPurchaseDate() {
+        return purchaseDate;
+    }
+
+    public int getPurchaseMinutes() {
+        return purchaseMinutes;
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public String getDescription(int item) {
+        return descriptions[item];
+    }
+
+    public long getPriceCents(int item) {
+        return priceCents[item];
+    }
+}
@@ -0,0 +1,35 @@
+package com.fetch.api.model;
+
+import com.fetch.model.Receipt;
+
+/**
+ * Receipt stored together with the points calculated for it at ingest.
+ * The points are kept boxed so a points lookup does not allocate.
+ */
+public final class ScoredReceipt {
+
+    private final Receipt receipt;
+
+    private final Long points;
+
+    public ScoredReceipt(Receipt receipt, long points) {
+        this.receipt = receipt;
+        this.points = points;
+    }
+
+    /**
+     * Get receipt
+     * @return receipt
+     */
+    public Receipt getReceipt() {
+        return receipt;
+    }
+
+    /**
+     * Get points
+     * @return points
+     */
+    public Long getPoints() {
+        return points;
+    }
+}
@@ -1,21 +1,45 @@
 package com.fetch.api.service;
 
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import com.fetch.api.jfr.ReceiptIngestEvent;
 import com.fetch.api.model.CustomError;
+import com.fetch.api.model.ParsedReceipt;
 import com.fetch.api.DefaultApiDelegate;
+import com.fetch.api.store.ReceiptIds;
+import com.fetch.api.store.ReceiptStore;
+import com.fetch.model.AggregateGroup;
+import com.fetch.model.AggregatesResponse;
+import com.fetch.model.ErrorResponse;
 import com.fetch.model.InlineResponse200;
 import com.fetch.model.InlineResponse2001;
+import com.fetch.model.LeaderboardEntry;
+import com.fetch.model.LeaderboardResponse;
+import com.fetch.model.PointsBatchRequest;
+import com.fetch.model.PointsBatchResponse;
+import com.fetch.model.PointsBatchResult;
+import com.fetch.model.RescoreRequest;
+import com.fetch.model.RescoreStatus;
+import com.fetch.model.TokenResponse;
 import com.fetch.model.Item;
 import com.fetch.model.Receipt;
 
@@ -25,56 +49,363 @@ import com.fetch.model.Receipt;
 @Service
 public class ApiDelegateImpl implements DefaultApiDelegate {
 	
+	private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+	
+	private static final MediaType PROMETHEUS_TEXT = MediaType.parseMediaType("text/plain;version=0.0.4;charset=utf-8");
+	
+	// Largest number of IDs accepted by the bulk points lookup, as in api.yml.
+	private static final int MAX_BATCH_IDS = 10000;
+	
+	// Leaderboard entries returned when no limit is given, as in api.yml.
+	private static final int DEFAULT_LEADERBOARD_LIMIT = 10;
+	
+	// Receipts listed per page when no limit is given, and at most, as in api.yml.
+	private static final int DEFAULT_PAGE_LIMIT = 100;
+	private static final int MAX_PAGE_LIMIT = 1000;
+	
+	// Response header carrying the cursor of the next page of GET /receipts.
+	public static final String NEXT_CURSOR = "Next-Cursor";
+	
+	// Expected failures are returned, not thrown, and the fixed ones are built once.
+	private static final ResponseEntity<ErrorResponse> UNKNOWN_ID = ErrorController.errorResponse(HttpStatus.NOT_FOUND, "Invalid Receipt ID.");
+	private static final ResponseEntity<ErrorResponse> EXPIRED_ID = ErrorController.errorResponse(HttpStatus.GONE, "Receipt ID has expired.");
+	
+	// Shared caches such as a CDN answer polls for ten minutes and clients for one, then revalidate;
+	// an unchanged tag costs a 304 from PointsETagFilter. Points a rescore changed, or a receipt
+	// since evicted, can so be served from a cache for up to ten minutes after the change.
+	public static final String POINTS_CACHE_CONTROL = "public, max-age=60, s-maxage=600, must-revalidate";
+	
 	//Object for ReceiptService class
     private final ReceiptService receiptService;
 	
-	@Autowired
+	//Object for ReceiptBatchProcessor class
+    private final ReceiptBatchProcessor receiptBatchProcessor;
+	
+	//Object for ReceiptRescorer class
+    private final ReceiptRescorer receiptRescorer;
+	
+	//Object for ReceiptDeduplicator class
+    private final ReceiptDeduplicator receiptDeduplicator;
+	
+	//Object for TokenService class
+    private final TokenService tokenService;
+	
     public ApiDelegateImpl(ReceiptService receiptService) {
+        this(receiptService, new ReceiptDeduplicator(receiptService));
+    }
+	
+    private ApiDelegateImpl(ReceiptService receiptService, ReceiptDeduplicator receiptDeduplicator) {
+        this(receiptService, new ReceiptBatchProcessor(receiptService, receiptDeduplicator),
+        		new ReceiptRescorer(receiptService), receiptDeduplicator, new TokenService());
+    }
+	
+	@Autowired
+    public ApiDelegateImpl(ReceiptService receiptService, ReceiptBatchProcessor receiptBatchProcessor,
+    		ReceiptRescorer receiptRescorer, ReceiptDeduplicator receiptDeduplicator, TokenService tokenService) {
         this.receiptService = receiptService;
+        this.receiptBatchProcessor = receiptBatchProcessor;
+        this.receiptRescorer = receiptRescorer;
+        this.receiptDeduplicator = receiptDeduplicator;
+        this.tokenService = tokenService;
     }
 	
+	/**
+	 * receiptsProcessPost(): To Process POST receipt method without an Idempotency-Key.
+	 */
+	public ResponseEntity<?> receiptsProcessPost(@Valid Receipt receipt){
+		return receiptsProcessPost(receipt, null);
+	}
+	
 	/**
 	 * receiptsProcessPost(): To Process POST receipt method.
+	 * A repeated Idempotency-Key, or a repeated receipt when deduplication is enabled, returns the existing ID.
+	 * An invalid receipt gets a 400 listing the validation errors.
+	 * Requests slower than its threshold are recorded as a ReceiptIngestEvent.
 	 */
 	@Override
-	public ResponseEntity<InlineResponse200> receiptsProcessPost(@Valid Receipt receipt){
+	public ResponseEntity<?> receiptsProcessPost(@Valid Receipt receipt, String idempotencyKey){
+		
+		ReceiptIngestEvent event = new ReceiptIngestEvent();
+		event.begin();
+		long start = System.nanoTime();
+		List<String> receiptErrors = new ArrayList<>(0);
+		ParsedReceipt parsed = receiptService.parseReceipt(receipt, receiptErrors);
+		long validated = System.nanoTime();
+		if(parsed == null) {
+			String errors = String.join(", ", receiptErrors);
+			commit(event, receipt, null, ReceiptIngestEvent.INVALID, errors, validated - start, 0);
+			return ErrorController.errorResponse(HttpStatus.BAD_REQUEST, errors);
+		}
 		
 		try {
-			
 			InlineResponse200 response = new InlineResponse200();
-			List<String> receiptErrors = receiptService.validateReceipt(receipt);
-			if(receiptErrors.size() == 0) {
-				response.setId(receiptService.save(receipt));
-				return ResponseEntity.status(201).body(response);
-			}else {
-				throw new CustomError().message(String.join(", ", receiptErrors)).code(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()));
-			}
-			
-		} catch (CustomError ex) {
-			throw ex;
-       }
+			response.setId(receiptDeduplicator.save(receipt, parsed, idempotencyKey));
+			commit(event, receipt, response.getId(), ReceiptIngestEvent.STORED, null, validated - start, System.nanoTime() - validated);
+			return ResponseEntity.status(201).body(response);
+		} catch (IllegalStateException ex) {
+			commit(event, receipt, null, ReceiptIngestEvent.CONFLICT, null, validated - start, System.nanoTime() - validated);
+			return ErrorController.errorResponse(HttpStatus.UNPROCESSABLE_ENTITY, ex.getMessage());
+		}
 		
 	}
 	
+	// Fills in and records the event only when it passed its threshold.
+	private static void commit(ReceiptIngestEvent event, Receipt receipt, String id, String outcome, String errors,
+			long validation, long save) {
+		event.end();
+		if(event.shouldCommit()) {
+			event.receiptId = id;
+			event.itemCount = receipt.getItems() == null ? 0 : receipt.getItems().size();
+			event.outcome = outcome;
+			event.errors = errors;
+			event.validation = validation;
+			event.save = save;
+			event.commit();
+		}
+	}
+	
 	/**
-	 * receiptsIdPointsGet(): To process points GET method.
+	 * receiptsProcessBatchPost(): To process a JSON array or newline-delimited stream of receipts.
+	 * The receipts are processed while the response is being written.
 	 */
 	@Override
-	public ResponseEntity<InlineResponse2001> receiptsIdPointsGet(String id){
+	public ResponseEntity<Resource> receiptsProcessBatchPost(Resource body){
 		
 		try {
 			
-			InlineResponse2001 response = new InlineResponse2001();
-			if(receiptService.findById(id) != null) {
-				response.setPoints(receiptService.calculatePoints(id));
-				return ResponseEntity.status(201).body(response);
-			}else {
-				throw new CustomError().message("Invalid Receipt ID.").code(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()));
-			}
+			InputStream results = receiptBatchProcessor.process(body.getInputStream());
+			return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(new InputStreamResource(results));
 			
-		}catch (CustomError ex) {
-			throw ex;
+		} catch (IOException ex) {
+			throw new CustomError().message("Could not read the receipts.").code(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()));
+		}
+	}
+	
+	/**
+	 * receiptsGet(): To list a page of receipts by retailer, purchase date range or points range.
+	 * The receipts are looked up while the response is being written, and the cursor of the
+	 * next page, if any, is in the Next-Cursor header.
+	 */
+	@Override
+	public ResponseEntity<Resource> receiptsGet(String retailer, LocalDate purchaseDateFrom, LocalDate purchaseDateTo,
+			Long minPoints, Long maxPoints, String cursor, Integer limit){
+		
+		int size = limit == null ? DEFAULT_PAGE_LIMIT : limit;
+		if(size < 1 || size > MAX_PAGE_LIMIT) {
+			throw new CustomError().message("Limit must be between 1 and " + MAX_PAGE_LIMIT + ".").code(Integer.toString(HttpStatus.BAD_REQUEST.value()));
+		}
+		boolean byDate = purchaseDateFrom != null || purchaseDateTo != null;
+		boolean byPoints = minPoints != null || maxPoints != null;
+		if((retailer != null ? 1 : 0) + (byDate ? 1 : 0) + (byPoints ? 1 : 0) != 1) {
+			throw new CustomError().message("Give one of a retailer, a purchase date range or a points range.").code(Integer.toString(HttpStatus.BAD_REQUEST.value()));
+		}
+		
+		ReceiptIndex.Page page;
+		try {
+			if(retailer != null) {
+				page = receiptService.listByRetailer(retailer, cursor, size);
+			} else if(byDate) {
+				page = receiptService.listByPurchaseDate(purchaseDateFrom, purchaseDateTo, cursor, size);
+			} else {
+				page = receiptService.listByPoints(minPoints, maxPoints, cursor, size);
+			}
+		} catch (IllegalArgumentException ex) {
+			throw new CustomError().message(ex.getMessage()).code(Integer.toString(HttpStatus.BAD_REQUEST.value()));
+		}
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(APPLICATION_NDJSON);
+		if(page.getNextCursor() != null) {
+			response.header(NEXT_CURSOR, page.getNextCursor());
+		}
+		return response.body(new InputStreamResource(new ReceiptPageResults(page)));
+	}
+	
+	/**
+	 * receiptsPointsBatchPost(): To process the bulk points lookup, keeping the request order.
+	 */
+	@Override
+	public ResponseEntity<PointsBatchResponse> receiptsPointsBatchPost(PointsBatchRequest pointsBatchRequest){
+		
+		List<String> ids = pointsBatchRequest.getIds();
+		if(ids == null || ids.isEmpty() || ids.size() > MAX_BATCH_IDS) {
+			throw new CustomError().message("Between 1 and " + MAX_BATCH_IDS + " IDs are required.").code(Integer.toString(HttpStatus.BAD_REQUEST.value()));
+		}
+		
+		List<String> canonical = new ArrayList<>(ids.size());
+		for(String id : ids) {
+			canonical.add(ReceiptIds.canonical(id));
+		}
+		long[] points = receiptService.findPointsByIds(canonical);
+		List<PointsBatchResult> results = new ArrayList<>(ids.size());
+		for(int i = 0; i < points.length; i++) {
+			PointsBatchResult result = new PointsBatchResult();
+			result.setId(ids.get(i));
+			result.setFound(points[i] >= 0);
+			if(points[i] >= 0) {
+				result.setPoints(points[i]);
+			}else if(points[i] == ReceiptStore.EXPIRED) {
+				result.setExpired(true);
+			}
+			results.add(result);
+		}
+		
+		PointsBatchResponse response = new PointsBatchResponse();
+		response.setResults(results);
+		return ResponseEntity.ok(response);
+	}
+	
+	/**
+	 * receiptsIdPointsGet(): To process points GET method.
+	 * The points carry a strong ETag from pointsETag(), and POINTS_CACHE_CONTROL lets shared caches and clients reuse them;
+	 * a matching If-None-Match is answered with 304 by PointsETagFilter before this is reached.
+	 * An unknown ID gets a 404 and an expired one a 410.
+	 */
+	@Override
+	public ResponseEntity<?> receiptsIdPointsGet(String id){
+		
+		id = ReceiptIds.canonical(id);
+		// Read before the points, so a rescore published in between can only make the tag look stale.
+		long version = receiptService.getScoringVersion();
+		long points = receiptService.lookupPoints(id);
+		if(points >= 0) {
+			InlineResponse2001 response = new InlineResponse2001();
+			response.setPoints(points);
+			return ResponseEntity.ok().eTag(pointsETag(id, version))
+					.header(HttpHeaders.CACHE_CONTROL, POINTS_CACHE_CONTROL).body(response);
+		}else if(points == ReceiptStore.EXPIRED) {
+			return EXPIRED_ID;
+		}else {
+			return UNKNOWN_ID;
+		}
+	}
+	
+	/**
+	 * adminRescorePost(): To start re-scoring every stored receipt with the given rules.
+	 */
+	@Override
+	public ResponseEntity<RescoreStatus> adminRescorePost(RescoreRequest rescoreRequest){
+		
+		try {
+			ReceiptRescorer.Job job = receiptRescorer.start(rescoreRequest.getRules());
+			return ResponseEntity.status(HttpStatus.ACCEPTED).body(toStatus(job));
+		} catch (IllegalStateException ex) {
+			throw new CustomError().message(ex.getMessage()).code(Integer.toString(HttpStatus.CONFLICT.value()));
+		} catch (IllegalArgumentException ex) {
+			throw new CustomError().message(ex.getMessage()).code(Integer.toString(HttpStatus.BAD_REQUEST.value()));
+		}
+	}
+	
+	/**
+	 * adminRescoreGet(): To report the progress of the running or last rescore.
+	 */
+	@Override
+	public ResponseEntity<RescoreStatus> adminRescoreGet(){
+		
+		ReceiptRescorer.Job job = receiptRescorer.getJob();
+		if(job == null) {
+			throw new CustomError().message("No rescore has been started.").code(Integer.toString(HttpStatus.NOT_FOUND.value()));
+		}
+		return ResponseEntity.ok(toStatus(job));
+	}
+	
+	/**
+	 * aggregatesRetailersGet(): To return the receipt count and total points per retailer.
+	 */
+	@Override
+	public ResponseEntity<AggregatesResponse> aggregatesRetailersGet(){
+		
+		ReceiptAggregates aggregates = receiptService.getAggregates();
+		return ResponseEntity.ok(toResponse(aggregates.getVersion(), aggregates.byRetailer()));
+	}
+	
+	/**
+	 * aggregatesDatesGet(): To return the receipt count and total points per purchase date.
+	 */
+	@Override
+	public ResponseEntity<AggregatesResponse> aggregatesDatesGet(){
+		
+		ReceiptAggregates aggregates = receiptService.getAggregates();
+		return ResponseEntity.ok(toResponse(aggregates.getVersion(), aggregates.byDate()));
+	}
+	
+	/**
+	 * leaderboardGet(): To return the highest-scoring receipts, overall or for one retailer.
+	 * @param retailer the retailer name, or null for all retailers
+	 * @param limit receipts to return, 1 to ReceiptLeaderboard.SIZE; 10 when null
+	 */
+	@Override
+	public ResponseEntity<LeaderboardResponse> leaderboardGet(String retailer, Integer limit){
+		
+		int size = limit == null ? DEFAULT_LEADERBOARD_LIMIT : limit;
+		if(size < 1 || size > ReceiptLeaderboard.SIZE) {
+			throw new CustomError().message("Limit must be between 1 and " + ReceiptLeaderboard.SIZE + ".")
+					.code(Integer.toString(HttpStatus.BAD_REQUEST.value()));
+		}
+		ReceiptLeaderboard leaderboard = receiptService.getLeaderboard();
+		List<ReceiptLeaderboard.Entry> entries = retailer == null ? leaderboard.top(size) : leaderboard.top(retailer, size);
+		List<LeaderboardEntry> body = new ArrayList<>(entries.size());
+		for(ReceiptLeaderboard.Entry entry : entries) {
+			body.add(new LeaderboardEntry().id(entry.getId()).retailer(entry.getRetailer()).points(entry.getPoints()));
+		}
+		return ResponseEntity.ok(new LeaderboardResponse().version(leaderboard.getVersion()).entries(body));
+	}
+	
+	/**
+	 * metricsGet(): To expose the ReceiptMetrics and store gauges for a Prometheus scraper.
+	 */
+	@Override
+	public ResponseEntity<String> metricsGet(){
+		
+		String metrics = receiptService.getMetrics().scrape(receiptService.countReceipts(), receiptService.getEstimatedBytes(),
+				receiptService.getIndexEstimatedBytes(), receiptService.getSizeEvictionCount(), receiptService.getExpirationCount());
+		return ResponseEntity.ok().contentType(PROMETHEUS_TEXT).body(metrics);
+	}
+	
+	/**
+	 * authTokenPost(): To issue a bearer token for the authenticated user.
+	 */
+	@Override
+	public ResponseEntity<TokenResponse> authTokenPost(){
+		
+		if(!tokenService.isEnabled()) {
+			throw new CustomError().message("Bearer tokens are not enabled.").code(Integer.toString(HttpStatus.NOT_FOUND.value()));
+		}
+		String username = SecurityContextHolder.getContext().getAuthentication().getName();
+		return ResponseEntity.ok(new TokenResponse().token(tokenService.issue(username))
+				.expiresIn(tokenService.getTtl().getSeconds()));
+	}
+	
+	/**
+	 * pointsETag(): The strong ETag of a receipt's points: a stored receipt never changes, so its
+	 * points only change with the scoring version.
+	 * @param id receipt ID
+	 * @param version ReceiptService.getScoringVersion() read before the points
+	 * @return the quoted entity tag
+	 */
+	public static String pointsETag(String id, long version) {
+		return "\"" + id + "-" + version + "\"";
+	}
+	
+	private static AggregatesResponse toResponse(long version, List<ReceiptAggregates.Group> groups) {
+		List<AggregateGroup> body = new ArrayList<>(groups.size());
+		for(ReceiptAggregates.Group group : groups) {
+			body.add(new AggregateGroup().key(group.getKey()).receipts(group.getReceipts()).points(group.getPoints()));
+		}
+		return new AggregatesResponse().version(version).groups(body);
+	}
+	
+	private static RescoreStatus toStatus(ReceiptRescorer.Job job) {
+		RescoreStatus status = new RescoreStatus();
+		status.setState(job.getState().name());
+		status.setRules(job.getRules());
+		if(job.getVersion() > 0) {
+			status.setVersion(job.getVersion());
 		}
+		status.setRescored(job.getRescored());
+		status.setTotal(job.getTotal());
+		status.setElapsedMillis(job.getElapsedMillis());
+		status.setReceiptsPerSecond(job.getReceiptsPerSecond());
+		status.setError(job.getError());
+		return status;
 	}
 
 }
@@ -1,8 +1,5 @@
 package com.fetch.api.service;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -11,6 +8,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 import com.fetch.api.model.CustomError;
+import com.fetch.model.ErrorResponse;
 
 @ControllerAdvice
 @RestController
@@ -21,12 +19,36 @@ public class ErrorController extends ResponseEntityExceptionHandler {
 	 * 							the CustomError object and sends it as a response.
 	 */
 	@ExceptionHandler(CustomError.class)
-    public ResponseEntity<Map<String, Object>> handleCustomException(CustomError ex) {
-        Map<String, Object> errorResponse = new LinkedHashMap<>();
-        errorResponse.put("message", ex.getMessage());
-        errorResponse.put("code", ex.getCode());
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+    public ResponseEntity<ErrorResponse> handleCustomException(CustomError ex) {
+        return ResponseEntity.status(statusOf(ex)).body(errorBody(ex.getMessage(), ex.getCode()));
     }
 	
+	/**
+	 * errorResponse(): The same response as a thrown CustomError with this status, for handlers
+	 * 					that return expected failures instead of throwing them. Operations marked
+	 * 					x-error-body in api.yml return ResponseEntity<?> so they can return it. A
+	 * 					response built for a fixed message can be kept and reused, as long as
+	 * 					nothing sets its body's fields.
+	 */
+	public static ResponseEntity<ErrorResponse> errorResponse(HttpStatus status, String message) {
+		return ResponseEntity.status(status).body(errorBody(message, Integer.toString(status.value())));
+	}
+	
+	private static ErrorResponse errorBody(String message, String code) {
+        return new ErrorResponse().message(message).code(code);
+	}
+	
+	/**
+	 * statusOf(): The HTTP status named by the error code, or 500 when the code is not a status.
+	 */
+	private static HttpStatus statusOf(CustomError ex) {
+		try {
+			HttpStatus status = HttpStatus.resolve(Integer.parseInt(ex.getCode()));
+			return status == null ? HttpStatus.INTERNAL_SERVER_ERROR : status;
+		} catch (NumberFormatException e) {
+			return HttpStatus.INTERNAL_SERVER_ERROR;
+		}
+	}
+	
 }
 
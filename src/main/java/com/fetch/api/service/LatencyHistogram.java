@@ -0,0 +1,94 @@
+package com.fetch.api.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of latencies in nanoseconds, safe to record into from
+ * many threads. Values below 128 ns are kept exactly. Above that, each power of two is
+ * split into 64 buckets, so a reported percentile is within 1.6% of the recorded value,
+ * in the manner of HdrHistogram with two significant digits.
+ *
+ * Recording is one bucket increment and two LongAdder adds, cheap enough to time every request.
+ * The buckets are striped by thread, up to one stripe per core, so threads recording similar
+ * latencies at once do not all increment the same counter.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int HALF = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 2) * HALF;
+    private static final int STRIPES = Integer.highestOneBit(Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * record(): To count one latency.
+     * @param nanos negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        counts.incrementAndGet(stripe * BUCKETS + index(value));
+        total.increment();
+        sum.add(value);
+        // Only a new maximum pays for the compare-and-set.
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    /**
+     * sum(): Total of the recorded latencies.
+     * @return nanoseconds
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * percentile(): The smallest recorded bucket's upper bound that the quantile of values do not exceed.
+     * @param quantile between 0 and 1
+     * @return nanoseconds, or 0 when nothing was recorded
+     */
+    public long percentile(double quantile) {
+        long count = total.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                seen += counts.get(stripe * BUCKETS + i);
+            }
+            if (seen >= rank) {
+                return Math.min(highestInBucket(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static int index(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1));
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    private static long highestInBucket(int index) {
+        int shift = Math.max(0, index / HALF - 1);
+        long mantissa = index - (long) shift * HALF;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,297 @@
+package com.fetch.api.service;
+
+import java.util.Arrays;
+
+import com.fetch.api.model.Money;
+import com.fetch.api.store.StringDictionary;
+
+/**
+ * Points rule set, compiled from a declarative spec into a flat plan.
+ *
+ * The spec is a comma-separated list of name[:argument]=points entries:
+ *
+ *   retailer-alphanumeric=1            points per letter or digit in the retailer name
+ *   total-multiple:0.25=25             points when the total is a multiple of the amount
+ *   item-group:2=5                     points per complete group of that many items
+ *   description-length-multiple:3=20% percent of the item price, rounded up to whole points,
+ *                                      when the trimmed description length is a multiple
+ *   odd-day=6                          points when the day of the purchase date is odd
+ *   time-window:14:00-16:00=10         points when the purchase time is in [start, end); end may be 24:00
+ *
+ * total-multiple and time-window may be repeated; the other rules may appear once.
+ * Compiling resolves every entry into primitive fields and arrays, so scoring is one
+ * pass over the receipt with no lookups or interpretation. Instances are immutable.
+ */
+public final class PointsRules {
+
+    // The rules given in the README.
+    public static final String DEFAULT_SPEC = "retailer-alphanumeric=1, total-multiple:1.00=50, total-multiple:0.25=25, "
+            + "item-group:2=5, description-length-multiple:3=20%, odd-day=6, time-window:14:00-16:00=10";
+
+    private static final PointsRules DEFAULT = compile(DEFAULT_SPEC);
+
+    private final String spec;
+    private final long retailerCharPoints;
+    private final long[] totalModuli;
+    private final long[] totalPoints;
+    private final int itemGroupSize;
+    private final long itemGroupPoints;
+    private final int descriptionModulus;
+    private final long pricePercent;
+    // 10000 / pricePercent when that is exact, so 20% becomes one division by 500 cents.
+    private final long priceDivisor;
+    private final long oddDayPoints;
+    private final int[] windowStarts;
+    private final int[] windowEnds;
+    private final long[] windowPoints;
+
+    private PointsRules(Builder builder) {
+        this.spec = builder.spec;
+        this.retailerCharPoints = builder.retailerCharPoints;
+        this.totalModuli = Arrays.copyOf(builder.totalModuli, builder.totals);
+        this.totalPoints = Arrays.copyOf(builder.totalPoints, builder.totals);
+        this.itemGroupSize = builder.itemGroupSize;
+        this.itemGroupPoints = builder.itemGroupPoints;
+        this.descriptionModulus = builder.descriptionModulus;
+        this.pricePercent = builder.pricePercent;
+        this.priceDivisor = pricePercent != 0 && 10_000 % pricePercent == 0 ? 10_000 / pricePercent : 0;
+        this.oddDayPoints = builder.oddDayPoints;
+        this.windowStarts = Arrays.copyOf(builder.windowStarts, builder.windows);
+        this.windowEnds = Arrays.copyOf(builder.windowEnds, builder.windows);
+        this.windowPoints = Arrays.copyOf(builder.windowPoints, builder.windows);
+    }
+
+    /**
+     * defaults(): The README rule set.
+     * @return
+     */
+    public static PointsRules defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * compile(): To parse a rule spec and resolve it into an evaluation plan.
+     * @param spec
+     * @return
+     * @throws IllegalArgumentException when an entry is unknown, malformed or repeated
+     */
+    public static PointsRules compile(String spec) {
+        Builder builder = new Builder(spec);
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (!entry.isEmpty()) {
+                builder.add(entry);
+            }
+        }
+        return new PointsRules(builder);
+    }
+
+    /**
+     * scoreReceipt(): The points that do not depend on individual items.
+     * @param retailer
+     * @param totalCents
+     * @param itemCount
+     * @param dayOfMonth
+     * @param minutes purchase time in minutes after midnight
+     * @return
+     */
+    public long scoreReceipt(String retailer, long totalCents, int itemCount, int dayOfMonth, int minutes) {
+        int retailerChars = retailerCharPoints == 0 ? 0 : StringDictionary.countLettersOrDigits(retailer);
+        return scoreReceipt(retailerChars, totalCents, itemCount, dayOfMonth, minutes);
+    }
+
+    /**
+     * scoreReceipt(): The points that do not depend on individual items, from a precounted retailer name.
+     * @param retailerChars letters and digits in the retailer name
+     * @param totalCents
+     * @param itemCount
+     * @param dayOfMonth
+     * @param minutes purchase time in minutes after midnight
+     * @return
+     */
+    public long scoreReceipt(int retailerChars, long totalCents, int itemCount, int dayOfMonth, int minutes) {
+        long points = retailerChars * retailerCharPoints;
+        for (int i = 0; i < totalModuli.length; i++) {
+            if (totalCents % totalModuli[i] == 0) {
+                points += totalPoints[i];
+            }
+        }
+        if (itemGroupSize != 0) {
+            points += (long) (itemCount / itemGroupSize) * itemGroupPoints;
+        }
+        if ((dayOfMonth & 1) != 0) {
+            points += oddDayPoints;
+        }
+        for (int i = 0; i < windowStarts.length; i++) {
+            if (minutes >= windowStarts[i] && minutes < windowEnds[i]) {
+                points += windowPoints[i];
+            }
+        }
+        return points;
+    }
+
+    /**
+     * scoreItem(): The points for one item.
+     * @param description
+     * @param priceCents
+     * @return
+     */
+    public long scoreItem(String description, long priceCents) {
+        return scoreItem(descriptionModulus == 0 ? 0 : StringDictionary.trim(description), priceCents);
+    }
+
+    /**
+     * scoreItem(): The points for one item, from the precomputed trimmed description length.
+     * @param trimmedLength length of the trimmed description
+     * @param priceCents
+     * @return
+     */
+    public long scoreItem(int trimmedLength, long priceCents) {
+        if (descriptionModulus == 0 || trimmedLength % descriptionModulus != 0) {
+            return 0;
+        }
+        if (priceDivisor != 0) {
+            return priceCents / priceDivisor + (priceCents % priceDivisor == 0 ? 0 : 1);
+        }
+        // ceil(priceCents * pricePercent / 10000) without overflowing on large prices.
+        long dollars = priceCents / 10_000;
+        long rest = priceCents % 10_000;
+        return dollars * pricePercent + (rest * pricePercent + 9_999) / 10_000;
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    /**
+     * Collects the parsed entries before they are frozen into a PointsRules.
+     */
+    private static final class Builder {
+
+        final String spec;
+        long retailerCharPoints;
+        long[] totalModuli = new long[4];
+        long[] totalPoints = new long[4];
+        int totals;
+        int itemGroupSize;
+        long itemGroupPoints;
+        int descriptionModulus;
+        long pricePercent;
+        long oddDayPoints;
+        int[] windowStarts = new int[4];
+        int[] windowEnds = new int[4];
+        long[] windowPoints = new long[4];
+        int windows;
+        private final boolean[] seen = new boolean[4];
+
+        Builder(String spec) {
+            this.spec = spec;
+        }
+
+        void add(String entry) {
+            int equals = entry.lastIndexOf('=');
+            if (equals < 0) {
+                throw invalid(entry, "expected name[:argument]=points");
+            }
+            String value = entry.substring(equals + 1).trim();
+            String rule = entry.substring(0, equals).trim();
+            int colon = rule.indexOf(':');
+            String name = colon < 0 ? rule : rule.substring(0, colon).trim();
+            String argument = colon < 0 ? null : rule.substring(colon + 1).trim();
+
+            switch (name) {
+                case "retailer-alphanumeric":
+                    once(0, entry, argument == null);
+                    retailerCharPoints = points(entry, value);
+                    break;
+                case "total-multiple":
+                    long cents = Money.parseCents(argument);
+                    if (cents <= 0) {
+                        throw invalid(entry, "expected a positive amount such as 0.25");
+                    }
+                    if (totals == totalModuli.length) {
+                        totalModuli = Arrays.copyOf(totalModuli, totals * 2);
+                        totalPoints = Arrays.copyOf(totalPoints, totals * 2);
+                    }
+                    totalModuli[totals] = cents;
+                    totalPoints[totals++] = points(entry, value);
+                    break;
+                case "item-group":
+                    once(1, entry, argument != null);
+                    itemGroupSize = positive(entry, argument);
+                    itemGroupPoints = points(entry, value);
+                    break;
+                case "description-length-multiple":
+                    once(2, entry, argument != null);
+                    descriptionModulus = positive(entry, argument);
+                    if (!value.endsWith("%")) {
+                        throw invalid(entry, "expected a percent of the price such as 20%");
+                    }
+                    pricePercent = points(entry, value.substring(0, value.length() - 1).trim());
+                    break;
+                case "odd-day":
+                    once(3, entry, argument == null);
+                    oddDayPoints = points(entry, value);
+                    break;
+                case "time-window":
+                    int dash = argument == null ? -1 : argument.indexOf('-');
+                    int start = dash < 0 ? -1 : ReceiptParser.parseMinutes(argument.substring(0, dash).trim());
+                    String endTime = dash < 0 ? "" : argument.substring(dash + 1).trim();
+                    int end = "24:00".equals(endTime) ? 24 * 60 : ReceiptParser.parseMinutes(endTime);
+                    if (start < 0 || end < 0 || start >= end) {
+                        throw invalid(entry, "expected HH:MM-HH:MM with the start before the end");
+                    }
+                    if (windows == windowStarts.length) {
+                        windowStarts = Arrays.copyOf(windowStarts, windows * 2);
+                        windowEnds = Arrays.copyOf(windowEnds, windows * 2);
+                        windowPoints = Arrays.copyOf(windowPoints, windows * 2);
+                    }
+                    windowStarts[windows] = start;
+                    windowEnds[windows] = end;
+                    windowPoints[windows++] = points(entry, value);
+                    break;
+                default:
+                    throw invalid(entry, "unknown rule " + name);
+            }
+        }
+
+        private void once(int rule, String entry, boolean argumentOk) {
+            if (!argumentOk) {
+                throw invalid(entry, "unexpected or missing argument");
+            }
+            if (seen[rule]) {
+                throw invalid(entry, "rule is given more than once");
+            }
+            seen[rule] = true;
+        }
+
+        private static long points(String entry, String value) {
+            try {
+                long points = Long.parseLong(value);
+                if (points < 0) {
+                    throw invalid(entry, "points must not be negative");
+                }
+                return points;
+            } catch (NumberFormatException e) {
+                throw invalid(entry, "expected whole points");
+            }
+        }
+
+        private static int positive(String entry, String argument) {
+            try {
+                int value = Integer.parseInt(argument);
+                if (value > 0) {
+                    return value;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            throw invalid(entry, "expected a positive whole number");
+        }
+
+        private static IllegalArgumentException invalid(String entry, String reason) {
+            return new IllegalArgumentException("Invalid points rule '" + entry + "': " + reason);
+        }
+    }
+}
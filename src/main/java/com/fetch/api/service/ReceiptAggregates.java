@@ -0,0 +1,156 @@
+package com.fetch.api.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receipt count and total points per retailer and per purchase date, added to on every
+ * save so that reading them costs one pass over the groups rather than over the store.
+ *
+ * Each group is a pair of LongAdders, so saves on many cores do not contend on a shared
+ * counter, and a group is created once per retailer or date. Each dimension holds at most
+ * MAXIMUM_GROUPS groups; receipts beyond that are counted under OTHER. Reads are weakly
+ * consistent: a save that runs during a read may be counted in one of its totals only.
+ */
+public final class ReceiptAggregates {
+
+    // Groups kept per dimension; bounds the memory a stream of made-up retailers can take.
+    public static final int MAXIMUM_GROUPS = 100_000;
+
+    // Key of the group counting receipts beyond MAXIMUM_GROUPS.
+    public static final String OTHER = "(other)";
+
+    private final ConcurrentHashMap<String, Totals> byRetailer = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<LocalDate, Totals> byDate = new ConcurrentHashMap<>();
+    private final Totals otherRetailers = new Totals();
+    private final Totals otherDates = new Totals();
+    private final long version;
+    private final int maximumGroups;
+
+    /**
+     * @param version the points version the receipts are scored under
+     */
+    public ReceiptAggregates(long version) {
+        this(version, MAXIMUM_GROUPS);
+    }
+
+    /**
+     * @param version the points version the receipts are scored under
+     * @param maximumGroups groups kept per dimension before receipts are counted under OTHER
+     */
+    public ReceiptAggregates(long version, int maximumGroups) {
+        this.version = version;
+        this.maximumGroups = maximumGroups;
+    }
+
+    /**
+     * getVersion(): The points version the receipts are scored under.
+     * @return
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * add(): To count one receipt and its points.
+     * @param retailer
+     * @param purchaseDate
+     * @param points
+     */
+    public void add(String retailer, LocalDate purchaseDate, long points) {
+        group(byRetailer, retailer, otherRetailers).add(points);
+        group(byDate, purchaseDate, otherDates).add(points);
+    }
+
+    /**
+     * byRetailer(): Receipts and points per retailer, sorted by retailer name, then OTHER if used.
+     * @return
+     */
+    public List<Group> byRetailer() {
+        return snapshot(byRetailer, otherRetailers);
+    }
+
+    /**
+     * byDate(): Receipts and points per purchase date, oldest first, then OTHER if used.
+     * @return
+     */
+    public List<Group> byDate() {
+        return snapshot(byDate, otherDates);
+    }
+
+    // The key's totals, or the overflow totals for a new key once the map is full, or no key.
+    private <K> Totals group(ConcurrentHashMap<K, Totals> groups, K key, Totals other) {
+        if (key == null) {
+            return other;
+        }
+        Totals totals = groups.get(key);
+        if (totals != null) {
+            return totals;
+        }
+        if (groups.size() >= maximumGroups) {
+            return other;
+        }
+        return groups.computeIfAbsent(key, k -> new Totals());
+    }
+
+    private static <K extends Comparable<? super K>> List<Group> snapshot(Map<K, Totals> groups, Totals other) {
+        List<K> keys = new ArrayList<>(groups.keySet());
+        Collections.sort(keys);
+        List<Group> snapshot = new ArrayList<>(keys.size() + 1);
+        for (K key : keys) {
+            snapshot.add(groups.get(key).snapshot(key.toString()));
+        }
+        if (other.receipts.sum() > 0) {
+            snapshot.add(other.snapshot(OTHER));
+        }
+        return snapshot;
+    }
+
+    /**
+     * The receipt count and total points of one retailer or date, as read.
+     */
+    public static final class Group {
+
+        private final String key;
+        private final long receipts;
+        private final long points;
+
+        Group(String key, long receipts, long points) {
+            this.key = key;
+            this.receipts = receipts;
+            this.points = points;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getReceipts() {
+            return receipts;
+        }
+
+        public long getPoints() {
+            return points;
+        }
+    }
+
+    private static final class Totals {
+
+        final LongAdder receipts = new LongAdder();
+        final LongAdder points = new LongAdder();
+
+        void add(long receiptPoints) {
+            receipts.increment();
+            points.add(receiptPoints);
+        }
+
+        Group snapshot(String key) {
+            return new Group(key, receipts.sum(), points.sum());
+        }
+    }
+}
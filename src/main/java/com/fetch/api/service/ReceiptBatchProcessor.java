@@ -0,0 +1,388 @@
+package com.fetch.api.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.api.model.ParsedReceipt;
+
+/**
+ * Service to process a stream of receipts for POST /receipts/process/batch.
+ *
+ * The upload is read one receipt at a time with ReceiptParser, and each receipt is
+ * validated, scored and saved before the next one is read. The results come back as an InputStream
+ * that produces one newline-delimited BatchReceiptResult per receipt as it is read,
+ * so neither the upload nor the response is ever held in memory as a whole.
+ *
+ * A receipt larger than MAX_LINE_BYTES is reported rather than read, in either format.
+ * Once the response is under way a failure cannot change its status, so a receipt that
+ * cannot be saved gets an error line, and that line is the last one.
+ */
+@Service
+public class ReceiptBatchProcessor {
+
+	private static final Logger log = LoggerFactory.getLogger(ReceiptBatchProcessor.class);
+
+	// Longest receipt accepted, in bytes, as a newline-delimited line or a JSON array element.
+	static final int MAX_LINE_BYTES = 1 << 20;
+
+	private static final List<String> TOO_LARGE = Collections.singletonList("Receipt is larger than " + MAX_LINE_BYTES + " bytes");
+	private static final List<String> MALFORMED = Collections.singletonList("Malformed receipt JSON");
+	private static final List<String> NOT_SAVED = Collections.singletonList("Receipt could not be saved; the upload stopped here");
+
+	// Bytes read from the upload at a time.
+	static final int CHUNK_BYTES = 64 * 1024;
+
+	private final ReceiptService receiptService;
+	private final ObjectMapper objectMapper;
+	private final ReceiptDeduplicator receiptDeduplicator;
+	// Parses JSON array uploads; no string may be longer than a whole receipt.
+	private final JsonFactory arrayFactory;
+
+	public ReceiptBatchProcessor(ReceiptService receiptService) {
+		this(receiptService, new ReceiptDeduplicator(receiptService));
+	}
+
+	public ReceiptBatchProcessor(ReceiptService receiptService, ReceiptDeduplicator receiptDeduplicator) {
+		this(receiptService, new ObjectMapper().findAndRegisterModules()
+				.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES), receiptDeduplicator);
+	}
+
+	@Autowired
+	public ReceiptBatchProcessor(ReceiptService receiptService, ObjectMapper objectMapper,
+			ReceiptDeduplicator receiptDeduplicator) {
+		this.receiptService = receiptService;
+		this.objectMapper = objectMapper;
+		this.receiptDeduplicator = receiptDeduplicator;
+		this.arrayFactory = objectMapper.getFactory().copy()
+				.setStreamReadConstraints(StreamReadConstraints.builder().maxStringLength(MAX_LINE_BYTES).build());
+	}
+
+	/**
+	 * process(): To start processing an upload; receipts are read as the result stream is read.
+	 * A body starting with '[' is read as a JSON array, anything else as newline-delimited JSON.
+	 * @param body
+	 * @return newline-delimited results
+	 */
+	public InputStream process(InputStream body) throws IOException {
+		byte[] chunk = new byte[CHUNK_BYTES];
+		int start = 0;
+		int limit = 0;
+		while (true) {
+			if (start == limit) {
+				start = 0;
+				limit = Math.max(body.read(chunk, 0, chunk.length), 0);
+				if (limit == 0) {
+					break;
+				}
+			}
+			byte b = chunk[start];
+			if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+				break;
+			}
+			start++;
+		}
+		if (start < limit && chunk[start] == '[') {
+			return new ArrayResults(new SequenceInputStream(new ByteArrayInputStream(chunk, start, limit - start), body));
+		}
+		return new LineResults(body, chunk, start, limit);
+	}
+
+	/**
+	 * Result stream that processes the next receipt whenever its buffered line is used up.
+	 */
+	private abstract class Results extends InputStream {
+
+		final InputStream in;
+		final LineBuffer out = new LineBuffer();
+		final ReceiptParser receiptParser = new ReceiptParser(objectMapper.getFactory());
+		int pos;
+		long index;
+		// Set once a receipt could not be saved; the stream ends after its error line.
+		boolean failed;
+
+		Results(InputStream in) {
+			this.in = in;
+		}
+
+		// Writes the next result line into out, or returns false at the end of the upload.
+		abstract boolean next() throws IOException;
+
+		@Override
+		public int read() throws IOException {
+			if (!fill()) {
+				return -1;
+			}
+			return out.bytes()[pos++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!fill()) {
+				return -1;
+			}
+			int n = Math.min(len, out.size() - pos);
+			System.arraycopy(out.bytes(), pos, b, off, n);
+			pos += n;
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+		private boolean fill() throws IOException {
+			while (pos >= out.size()) {
+				out.reset();
+				pos = 0;
+				if (failed || !next()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void accept(ParsedReceipt receipt) throws IOException {
+			List<String> errors = receiptService.validateReceipt(receipt);
+			if (!errors.isEmpty()) {
+				writeResult(null, errors);
+				return;
+			}
+			String id;
+			try {
+				id = receiptDeduplicator.save(receipt);
+			} catch (RuntimeException e) {
+				log.warn("Batch upload stopped at receipt {}: it could not be saved", index, e);
+				failed = true;
+				writeResult(null, NOT_SAVED);
+				return;
+			}
+			writeResult(id, null);
+		}
+
+		void writeResult(String id, List<String> errors) throws IOException {
+			try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+				generator.writeStartObject();
+				generator.writeNumberField("index", index);
+				if (id != null) {
+					generator.writeStringField("id", id);
+				}
+				if (errors != null) {
+					generator.writeArrayFieldStart("errors");
+					for (String error : errors) {
+						generator.writeString(error);
+					}
+					generator.writeEndArray();
+				}
+				generator.writeEndObject();
+			}
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Newline-delimited upload: a malformed line is reported and the next line is read.
+	 */
+	private final class LineResults extends Results {
+
+		// Upload bytes read but not yet scanned are chunk[chunkPos, chunkLimit).
+		private final byte[] chunk;
+		private int chunkPos;
+		private int chunkLimit;
+		// Lines that span chunks are copied here; others are parsed in place in the chunk.
+		private byte[] line = new byte[8 * 1024];
+		private byte[] lineBytes;
+		private int lineStart;
+
+		LineResults(InputStream in, byte[] chunk, int chunkPos, int chunkLimit) {
+			super(in);
+			this.chunk = chunk;
+			this.chunkPos = chunkPos;
+			this.chunkLimit = chunkLimit;
+		}
+
+		@Override
+		boolean next() throws IOException {
+			while (true) {
+				int length = readLine();
+				if (length == -1) {
+					return false;
+				}
+				index++;
+				if (length == 0) {
+					continue;
+				}
+				if (length > MAX_LINE_BYTES) {
+					writeResult(null, TOO_LARGE);
+					return true;
+				}
+				ParsedReceipt receipt;
+				try {
+					receipt = receiptParser.parse(lineBytes, lineStart, length);
+				} catch (JsonProcessingException e) {
+					writeResult(null, MALFORMED);
+					return true;
+				}
+				accept(receipt);
+				return true;
+			}
+		}
+
+		// Reads one line into lineBytes from lineStart, without its terminator or trailing whitespace;
+		// returns its length, MAX_LINE_BYTES + 1 when it is too long, or -1 at the end of the upload.
+		private int readLine() throws IOException {
+			if (chunkPos == chunkLimit && !refill()) {
+				return -1;
+			}
+			int length = 0;
+			boolean copied = false;
+			while (true) {
+				int end = chunkPos;
+				while (end < chunkLimit && chunk[end] != '\n') {
+					end++;
+				}
+				if (end < chunkLimit && !copied) {
+					// The whole line is in the chunk.
+					lineBytes = chunk;
+					lineStart = chunkPos;
+					length = end - chunkPos;
+					chunkPos = end + 1;
+					break;
+				}
+				int n = end - chunkPos;
+				if (length + n > MAX_LINE_BYTES) {
+					length = MAX_LINE_BYTES + 1;
+				} else {
+					if (length + n > line.length) {
+						line = Arrays.copyOf(line, Math.min(Math.max(line.length * 2, length + n), MAX_LINE_BYTES));
+					}
+					System.arraycopy(chunk, chunkPos, line, length, n);
+					length += n;
+				}
+				copied = true;
+				lineBytes = line;
+				lineStart = 0;
+				if (end < chunkLimit) {
+					chunkPos = end + 1;
+					break;
+				}
+				chunkPos = end;
+				if (!refill()) {
+					break;
+				}
+			}
+			if (length > MAX_LINE_BYTES) {
+				return length;
+			}
+			while (length > 0 && (lineBytes[lineStart + length - 1] == ' ' || lineBytes[lineStart + length - 1] == '\t'
+					|| lineBytes[lineStart + length - 1] == '\r')) {
+				length--;
+			}
+			return length;
+		}
+
+		private boolean refill() throws IOException {
+			chunkPos = 0;
+			chunkLimit = Math.max(in.read(chunk, 0, chunk.length), 0);
+			return chunkLimit > 0;
+		}
+	}
+
+	/**
+	 * JSON array upload: after a malformed element the parser cannot resynchronise, so the
+	 * error is reported and the stream ends. An element that runs past MAX_LINE_BYTES is
+	 * skipped without being held and the next one is read, unless a single string in it
+	 * was too long, which ends the stream too.
+	 */
+	private final class ArrayResults extends Results {
+
+		private final JsonParser parser;
+		private boolean done;
+
+		ArrayResults(InputStream in) throws IOException {
+			super(in);
+			this.parser = arrayFactory.createParser(in);
+			parser.nextToken();
+		}
+
+		@Override
+		boolean next() throws IOException {
+			if (done) {
+				return false;
+			}
+			try {
+				JsonToken token = parser.nextToken();
+				if (token == null || token == JsonToken.END_ARRAY) {
+					done = true;
+					return false;
+				}
+				index++;
+				ParsedReceipt receipt;
+				try {
+					receipt = receiptParser.parse(parser, MAX_LINE_BYTES);
+				} catch (ReceiptParser.ReceiptTooLargeException e) {
+					skipElement();
+					writeResult(null, TOO_LARGE);
+					return true;
+				}
+				accept(receipt);
+			} catch (StreamConstraintsException e) {
+				done = true;
+				writeResult(null, TOO_LARGE);
+			} catch (JsonProcessingException e) {
+				done = true;
+				writeResult(null, MALFORMED);
+			}
+			return true;
+		}
+
+		// Reads on to the end of the current element, back in the top-level array.
+		private void skipElement() throws IOException {
+			while (parser.getParsingContext().getNestingDepth() > 1) {
+				if (parser.nextToken() == null) {
+					throw new JsonParseException(parser, "Unexpected end of the upload");
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			parser.close();
+			super.close();
+		}
+	}
+
+	/**
+	 * ByteArrayOutputStream whose buffer can be read without copying.
+	 */
+	private static final class LineBuffer extends ByteArrayOutputStream {
+
+		byte[] bytes() {
+			return buf;
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.fetch.api.service;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fetch.api.model.ParsedReceipt;
+import com.fetch.model.Receipt;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Service to save a receipt once, however often it is submitted.
+ *
+ * With receipts.dedup.enabled, every receipt is indexed by its ReceiptFingerprint, and a
+ * receipt whose content is already stored gets the existing ID back without being scored
+ * or stored again. Independently of that, a request that carries an Idempotency-Key gets
+ * the ID saved under that key the first time, and a key reused for a different receipt is
+ * rejected. Both indexes are bounded Caffeine caches; an entry whose receipt has since been
+ * evicted from the store is replaced by a fresh save.
+ *
+ * Concurrent submissions of the same receipt or key are saved exactly once: the first
+ * claims the entry with a CompletableFuture inside the index's compute() and saves after
+ * compute() returns, so scoring, the store write and the journal's fsync run without the
+ * cache's bin lock; the others wait for the future. A failed save releases the claim.
+ */
+@Service
+public class ReceiptDeduplicator {
+
+	private final ReceiptService receiptService;
+	private final boolean enabled;
+	private final Cache<UUID, CompletableFuture<String>> idsByContent;
+	private final Cache<String, Submission> submissionsByKey;
+	private final LongAdder duplicates = new LongAdder();
+
+	public ReceiptDeduplicator(ReceiptService receiptService) {
+		this(receiptService, false, 1_000_000, 100_000, Duration.ofHours(24));
+	}
+
+	@Autowired
+	public ReceiptDeduplicator(ReceiptService receiptService,
+			@Value("${receipts.dedup.enabled:false}") boolean enabled,
+			@Value("${receipts.dedup.maximum-size:1000000}") long maximumSize,
+			@Value("${receipts.dedup.idempotency-keys:100000}") long idempotencyKeys,
+			@Value("${receipts.dedup.expire-after-write:24h}") Duration expireAfterWrite) {
+		this.receiptService = receiptService;
+		this.enabled = enabled;
+		this.idsByContent = enabled ? Caffeine.newBuilder().maximumSize(maximumSize).build() : null;
+		this.submissionsByKey = Caffeine.newBuilder().maximumSize(idempotencyKeys)
+				.expireAfterWrite(expireAfterWrite).build();
+	}
+
+	/**
+	 * save(): To save a validated receipt unless the same receipt or idempotency key was saved before.
+	 * @param receipt a receipt that passed validateReceipt(Receipt)
+	 * @param idempotencyKey the Idempotency-Key header, or null
+	 * @return the new or existing receipt ID
+	 * @throws IllegalStateException when the key was used for a receipt with different content
+	 */
+	public String save(Receipt receipt, String idempotencyKey) {
+		if (idempotencyKey == null && !enabled) {
+			return receiptService.save(receipt);
+		}
+		return save(ReceiptFingerprint.of(receipt), () -> receiptService.save(receipt), idempotencyKey);
+	}
+
+	/**
+	 * save(): To save a receipt that ReceiptService.parseReceipt() accepted, as save(Receipt, String) does,
+	 * scoring and fingerprinting it from the converted amounts and time.
+	 * @param receipt
+	 * @param parsed the result of ReceiptService.parseReceipt(receipt)
+	 * @param idempotencyKey the Idempotency-Key header, or null
+	 * @return the new or existing receipt ID
+	 * @throws IllegalStateException when the key was used for a receipt with different content
+	 */
+	public String save(Receipt receipt, ParsedReceipt parsed, String idempotencyKey) {
+		if (idempotencyKey == null && !enabled) {
+			return receiptService.save(receipt, parsed);
+		}
+		return save(ReceiptFingerprint.of(parsed), () -> receiptService.save(receipt, parsed), idempotencyKey);
+	}
+
+	private String save(UUID fingerprint, Supplier<String> save, String idempotencyKey) {
+		if (idempotencyKey == null) {
+			return saveOnce(fingerprint, save);
+		}
+		while (true) {
+			Submission claim = new Submission(fingerprint, new CompletableFuture<>());
+			Submission submission = submissionsByKey.asMap().compute(idempotencyKey, (key, previous) ->
+					previous != null && isLive(previous.id) ? previous : claim);
+			if (submission == claim) {
+				return complete(claim.id, () -> enabled ? saveOnce(fingerprint, save) : save.get(),
+						() -> submissionsByKey.asMap().remove(idempotencyKey, claim));
+			}
+			if (!submission.fingerprint.equals(fingerprint)) {
+				throw new IllegalStateException("Idempotency-Key was already used for a different receipt.");
+			}
+			String id = await(submission.id);
+			if (id != null) {
+				duplicates.increment();
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * save(): To save a validated streamed receipt unless a receipt with the same content was saved before.
+	 * @param receipt a receipt that passed validateReceipt(ParsedReceipt)
+	 * @return the new or existing receipt ID
+	 */
+	public String save(ParsedReceipt receipt) {
+		if (!enabled) {
+			return receiptService.save(receipt);
+		}
+		return saveOnce(ReceiptFingerprint.of(receipt), () -> receiptService.save(receipt));
+	}
+
+	/**
+	 * isEnabled(): Whether receipts are deduplicated by content.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * getDuplicates(): Submissions answered with an existing ID instead of being stored.
+	 */
+	public long getDuplicates() {
+		return duplicates.sum();
+	}
+
+	private String saveOnce(UUID fingerprint, Supplier<String> save) {
+		while (true) {
+			CompletableFuture<String> claim = new CompletableFuture<>();
+			CompletableFuture<String> saved = idsByContent.asMap().compute(fingerprint, (key, previous) ->
+					previous != null && isLive(previous) ? previous : claim);
+			if (saved == claim) {
+				return complete(claim, save, () -> idsByContent.asMap().remove(fingerprint, claim));
+			}
+			String id = await(saved);
+			if (id != null) {
+				duplicates.increment();
+				return id;
+			}
+		}
+	}
+
+	// Runs the save for a claim this thread won, outside the cache's lock; a failure releases the claim.
+	private static String complete(CompletableFuture<String> claim, Supplier<String> save, Runnable release) {
+		String id;
+		try {
+			id = save.get();
+		} catch (RuntimeException | Error e) {
+			release.run();
+			claim.completeExceptionally(e);
+			throw e;
+		}
+		claim.complete(id);
+		return id;
+	}
+
+	// The ID the claim was completed with, or null when its save failed and the claim must be taken again.
+	private static String await(CompletableFuture<String> claim) {
+		try {
+			return claim.join();
+		} catch (CompletionException | CancellationException e) {
+			return null;
+		}
+	}
+
+	// A claim still being saved, or saved with a receipt the store still holds.
+	private boolean isLive(CompletableFuture<String> claim) {
+		if (!claim.isDone()) {
+			return true;
+		}
+		String id = await(claim);
+		return id != null && receiptService.isStored(id);
+	}
+
+	private static final class Submission {
+
+		final UUID fingerprint;
+		final CompletableFuture<String> id;
+
+		Submission(UUID fingerprint, CompletableFuture<String> id) {
+			this.fingerprint = fingerprint;
+			this.id = id;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.fetch.api.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import com.fetch.api.model.Money;
+import com.fetch.api.model.ParsedReceipt;
+import com.fetch.model.Item;
+import com.fetch.model.Receipt;
+
+/**
+ * Content hash of a receipt, used to recognise resubmissions of the same receipt.
+ *
+ * The hash covers the canonical field values rather than the submitted JSON, so key
+ * order, whitespace, "9:05" against "09:05" and "6.5" against "6.50" do not matter:
+ * the retailer, the purchase date as an epoch day, the purchase time in minutes, the
+ * total in cents, and each item's description and price in cents, in item order.
+ * Strings are length-prefixed so no two field sequences encode to the same bytes.
+ * The encoding is fed to SHA-256 and the first 128 bits are kept, so colliding
+ * receipts cannot be constructed on purpose.
+ */
+public final class ReceiptFingerprint {
+
+    private static final ThreadLocal<Hasher> HASHER = ThreadLocal.withInitial(Hasher::new);
+
+    private ReceiptFingerprint() {
+    }
+
+    /**
+     * of(): To hash a receipt from the generated model.
+     * @param receipt
+     * @return
+     */
+    public static UUID of(Receipt receipt) {
+        Hasher hasher = HASHER.get();
+        hasher.string(receipt.getRetailer());
+        hasher.date(receipt.getPurchaseDate());
+        String time = receipt.getPurchaseTime();
+        hasher.number(time == null ? ParsedReceipt.INVALID_TIME : ReceiptParser.parseMinutes(time));
+        hasher.number(Money.parseCents(receipt.getTotal()));
+        List<Item> items = receipt.getItems();
+        hasher.number(items == null ? -1 : items.size());
+        if (items != null) {
+            for (Item item : items) {
+                hasher.string(item == null ? null : item.getShortDescription());
+                hasher.number(item == null ? Money.INVALID : Money.parseCents(item.getPrice()));
+            }
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * of(): To hash a streamed receipt; equal receipts hash the same as through of(Receipt).
+     * @param receipt
+     * @return
+     */
+    public static UUID of(ParsedReceipt receipt) {
+        Hasher hasher = HASHER.get();
+        hasher.string(receipt.getRetailer());
+        hasher.date(receipt.getPurchaseDate());
+        hasher.number(receipt.getPurchaseMinutes());
+        hasher.number(receipt.getTotalCents());
+        hasher.number(receipt.getItemCount());
+        for (int i = 0; i < receipt.getItemCount(); i++) {
+            hasher.string(receipt.getDescription(i));
+            hasher.number(receipt.getPriceCents(i));
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * One digest and scratch buffer per thread, reset by every finish().
+     */
+    private static final class Hasher {
+
+        private final MessageDigest digest;
+        private final byte[] scratch = new byte[8];
+
+        Hasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                // Every Java platform is required to provide SHA-256.
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void string(String value) {
+            if (value == null) {
+                number(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            number(bytes.length);
+            digest.update(bytes);
+        }
+
+        void date(LocalDate date) {
+            number(date == null ? Long.MIN_VALUE : date.toEpochDay());
+        }
+
+        void number(long value) {
+            for (int i = 7; i >= 0; i--) {
+                scratch[i] = (byte) value;
+                value >>>= 8;
+            }
+            digest.update(scratch);
+        }
+
+        UUID finish() {
+            byte[] hash = digest.digest();
+            long msb = 0;
+            long lsb = 0;
+            for (int i = 0; i < 8; i++) {
+                msb = msb << 8 | (hash[i] & 0xff);
+                lsb = lsb << 8 | (hash[i + 8] & 0xff);
+            }
+            return new UUID(msb, lsb);
+        }
+    }
+}
@@ -0,0 +1,589 @@
+package com.fetch.api.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.fetch.api.store.ReceiptStore;
+
+/**
+ * Secondary indexes of the stored receipts by retailer, purchase date and points, added to
+ * on every save, for listing them a page at a time.
+ *
+ * Each key holds an append-only postings list of receipt IDs in the order they were added,
+ * in arrays of 16 bytes of ID and a 4-byte ordinal per receipt, so an indexed receipt costs
+ * 60 bytes across the three indexes. A full list grows by copying into arrays twice its
+ * size. When the store has evicted receipts since the list was last compacted, the append
+ * that grew it then compacts it outside the list's lock: the receipts the store no longer
+ * holds are dropped from a copy, which replaces the list along with anything appended
+ * meanwhile. A list so holds at most about twice its live entries plus those evicted since
+ * it grew. Readers take the arrays and their published size without locking; appends to one
+ * list are serialized.
+ *
+ * Lists that stop growing are reached by a sweep instead: while evictions are pending, each
+ * save visits a few lists and compacts those that have missed evictions of half the store
+ * since they were last compacted. A list left empty is removed with its key. At most
+ * MAXIMUM_RETAILERS retailers have their own list; receipts of later retailers share the
+ * OTHER list, from which a listing of one of them picks its receipts out.
+ *
+ * A page is described by a cursor naming the key, its list and the ordinal of the last receipt
+ * returned, so it is not thrown off by receipts added or dropped between pages, or by the list
+ * being removed and the key started afresh. Cursors belong to the points version the index was
+ * built under; a rescore rebuilds the indexes and ends them.
+ */
+public final class ReceiptIndex {
+
+    // Estimated heap per entry and per key: map node, key, postings list and array headers.
+    static final long ENTRY_BYTES = 20;
+    static final long KEY_BYTES = 160;
+
+    // Retailers with their own list, as many as ReceiptAggregates keeps groups for.
+    public static final int MAXIMUM_RETAILERS = ReceiptAggregates.MAXIMUM_GROUPS;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    // Lists a sweep step visits on each save while evictions are pending.
+    private static final int SWEEP_LISTS = 4;
+    private static final int SWEPT_INDEXES = 3;
+
+    /**
+     * Reads the listed form of an indexed receipt, or returns null when it is no longer stored.
+     */
+    @FunctionalInterface
+    public interface RowReader {
+        Row read(long msb, long lsb);
+    }
+
+    private final ConcurrentHashMap<String, Postings> byRetailer = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<LocalDate, Postings> byDate = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, Postings> byPoints = new ConcurrentSkipListMap<>();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder estimatedBytes = new LongAdder();
+    // Numbers the lists, so a cursor can tell a removed list from the one that replaced it.
+    private final AtomicLong lists = new AtomicLong();
+    private final Postings otherRetailers = new Postings(null, ReceiptAggregates.OTHER, 0);
+    private final ReceiptStore receiptStore;
+    private final long version;
+    private final int maximumRetailers;
+
+    // Sweep state. sweepDue is set by evictions and kept set while a sweep is under way;
+    // the rest is only touched by the thread holding sweeping.
+    private volatile boolean sweepDue;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private Iterator<Postings> sweepLists = Collections.emptyIterator();
+    private int sweepIndex = SWEPT_INDEXES;
+    private long sweepEvictions;
+    private long sweepThreshold;
+
+    /**
+     * @param version the points version the receipts are scored under
+     * @param receiptStore the store the receipts are kept in, to drop those it evicted
+     */
+    public ReceiptIndex(long version, ReceiptStore receiptStore) {
+        this(version, receiptStore, MAXIMUM_RETAILERS);
+    }
+
+    /**
+     * @param version the points version the receipts are scored under
+     * @param receiptStore the store the receipts are kept in, to drop those it evicted
+     * @param maximumRetailers retailers with their own list before receipts share the OTHER list
+     */
+    public ReceiptIndex(long version, ReceiptStore receiptStore, int maximumRetailers) {
+        this.version = version;
+        this.receiptStore = receiptStore;
+        this.maximumRetailers = maximumRetailers;
+    }
+
+    /**
+     * getVersion(): The points version the receipts are scored under.
+     * @return
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * getEstimatedBytes(): Estimated heap held by the indexes.
+     * @return
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes.sum();
+    }
+
+    /**
+     * evicted(): To note that the store evicted a receipt, so lists are compacted as they grow or are swept.
+     */
+    public void evicted() {
+        evictions.increment();
+        sweepDue = true;
+    }
+
+    /**
+     * add(): To index one receipt under its retailer, purchase date and points.
+     * @param msb most significant bits of the receipt ID
+     * @param lsb least significant bits of the receipt ID
+     * @param retailer
+     * @param purchaseDate
+     * @param points
+     */
+    public void add(long msb, long lsb, String retailer, LocalDate purchaseDate, long points) {
+        if (retailer != null) {
+            append(byRetailer, retailer, otherRetailers, msb, lsb);
+        }
+        if (purchaseDate != null) {
+            append(byDate, purchaseDate, null, msb, lsb);
+        }
+        append(byPoints, points, null, msb, lsb);
+        if (sweepDue) {
+            sweep();
+        }
+    }
+
+    /**
+     * byRetailer(): The retailer's receipts, in the order they were saved. Those saved while
+     * MAXIMUM_RETAILERS other retailers had lists are picked out of the shared OTHER list, which
+     * takes its place before or after the retailer's own by name, and only when the store keeps
+     * receipts to tell their retailer by. ReceiptAggregates.OTHER lists the whole shared list.
+     * @param retailer
+     * @param cursor the previous page's next cursor, or null for the first page
+     * @param limit most receipts in the page
+     * @param reader
+     * @return
+     * @throws IllegalArgumentException when the cursor is malformed or from another points version
+     */
+    public Page byRetailer(String retailer, String cursor, int limit, RowReader reader) {
+        NavigableMap<String, Postings> range = new TreeMap<>();
+        Postings postings = byRetailer.get(retailer);
+        if (postings != null) {
+            range.put(retailer, postings);
+        }
+        if (otherRetailers.block.size > 0) {
+            range.putIfAbsent(ReceiptAggregates.OTHER, otherRetailers);
+        }
+        String other = retailer.equals(ReceiptAggregates.OTHER) ? null : retailer;
+        return page(range, cursor, Function.identity(),
+                key -> key.equals(retailer) || key.equals(ReceiptAggregates.OTHER),
+                key -> key.equals(ReceiptAggregates.OTHER) ? other : null, limit, reader);
+    }
+
+    /**
+     * byPurchaseDate(): The receipts purchased between the dates, oldest first, then in the order they were saved.
+     * @param from first date, or null for no lower bound
+     * @param to last date, or null for no upper bound
+     * @param cursor the previous page's next cursor, or null for the first page
+     * @param limit most receipts in the page
+     * @param reader
+     * @return
+     * @throws IllegalArgumentException when the cursor is malformed or from another points version
+     */
+    public Page byPurchaseDate(LocalDate from, LocalDate to, String cursor, int limit, RowReader reader) {
+        return page(range(byDate, from, to), cursor, LocalDate::parse, key -> within(key, from, to), key -> null,
+                limit, reader);
+    }
+
+    /**
+     * byPoints(): The receipts scoring between the points, fewest first, then in the order they were saved.
+     * @param min fewest points, or null for no lower bound
+     * @param max most points, or null for no upper bound
+     * @param cursor the previous page's next cursor, or null for the first page
+     * @param limit most receipts in the page
+     * @param reader
+     * @return
+     * @throws IllegalArgumentException when the cursor is malformed or from another points version
+     */
+    public Page byPoints(Long min, Long max, String cursor, int limit, RowReader reader) {
+        return page(range(byPoints, min, max), cursor, Long::valueOf, key -> within(key, min, max), key -> null,
+                limit, reader);
+    }
+
+    // Appends to the key's list, or to the overflow list once the index holds maximumRetailers keys.
+    // A list removed for being empty after it was looked up turns the append down, and is looked up again.
+    private <K> void append(Map<K, Postings> index, K key, Postings overflow, long msb, long lsb) {
+        Postings postings;
+        do {
+            postings = index.get(key);
+            if (postings == null) {
+                postings = overflow != null && index.size() >= maximumRetailers ? overflow
+                        : index.computeIfAbsent(key, k -> {
+                            estimatedBytes.add(KEY_BYTES);
+                            return new Postings(index, k, lists.incrementAndGet());
+                        });
+            }
+        } while (!postings.add(msb, lsb));
+    }
+
+    // Visits the next few lists of a round over all three indexes, compacting those that have missed
+    // evictions of half the store. A round starts once evictions are pending and none is under way.
+    private void sweep() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (sweepIndex == SWEPT_INDEXES && !sweepLists.hasNext()) {
+                // Cleared before the evictions are read, so any counted later starts another round.
+                sweepDue = false;
+                sweepEvictions = evictions.sum();
+                sweepThreshold = Math.max(1, receiptStore.size() / 2);
+                sweepIndex = 0;
+            }
+            for (int visited = 0; visited < SWEEP_LISTS; visited++) {
+                while (!sweepLists.hasNext()) {
+                    if (sweepIndex == SWEPT_INDEXES) {
+                        return;
+                    }
+                    int next = sweepIndex++;
+                    sweepLists = (next == 0 ? byRetailer : next == 1 ? byDate : byPoints).values().iterator();
+                }
+                Postings postings = sweepLists.next();
+                if (sweepEvictions - postings.compactedEvictions >= sweepThreshold) {
+                    postings.compact();
+                }
+            }
+            sweepDue = true;
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static <K extends Comparable<? super K>> boolean within(K key, K from, K to) {
+        return (from == null || key.compareTo(from) >= 0) && (to == null || key.compareTo(to) <= 0);
+    }
+
+    private static <K extends Comparable<? super K>> NavigableMap<K, Postings> range(
+            ConcurrentSkipListMap<K, Postings> index, K from, K to) {
+        if (from != null && to != null) {
+            return from.compareTo(to) > 0 ? Collections.emptyNavigableMap() : index.subMap(from, true, to, true);
+        }
+        if (from != null) {
+            return index.tailMap(from, true);
+        }
+        return to != null ? index.headMap(to, true) : index;
+    }
+
+    // Finds where the page starts and ends from the list sizes only; the receipts are read as the page is.
+    // inRange tells the keys a cursor from this query can name; filter gives the retailer a key's
+    // receipts must have to be listed, or null for all of them.
+    private <K> Page page(NavigableMap<K, Postings> range, String cursor, Function<String, K> parseKey,
+            Predicate<K> inRange, Function<K, String> filter, int limit, RowReader reader) {
+        NavigableMap<K, Postings> remaining = range;
+        K key = null;
+        long list = 0;
+        int after = -1;
+        if (cursor != null) {
+            String[] parts = decode(cursor);
+            try {
+                key = parseKey.apply(parts[1]);
+                list = Long.parseLong(parts[2]);
+                after = Integer.parseInt(parts[3]);
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
+            if (!inRange.test(key)) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
+            // The key's list may have been removed since; the page then goes on from the next key.
+            remaining = range.tailMap(key, true);
+        }
+
+        List<Block> blocks = new ArrayList<>();
+        List<int[]> spans = new ArrayList<>();
+        List<String> filters = new ArrayList<>();
+        String next = null;
+        int left = limit;
+        for (Map.Entry<K, Postings> entry : remaining.entrySet()) {
+            Postings postings = entry.getValue();
+            Block block = postings.block;
+            int size = block.size;
+            // A list that replaced the cursor's only holds receipts added after it.
+            int from = entry.getKey().equals(key) && postings.id == list ? block.indexAfter(after, size) : 0;
+            key = null;
+            int to = Math.min(size, from + left);
+            if (to > from) {
+                blocks.add(block);
+                spans.add(new int[] {from, to});
+                filters.add(filter.apply(entry.getKey()));
+                left -= to - from;
+            }
+            if (left == 0) {
+                if (to < size || remaining.higherKey(entry.getKey()) != null) {
+                    next = encode(entry.getKey().toString(), postings.id, block.ordinals[to - 1]);
+                }
+                break;
+            }
+        }
+        return new Page(blocks, spans, filters, next, reader);
+    }
+
+    private String encode(String key, long list, int ordinal) {
+        String cursor = version + "." + key + "." + list + "." + ordinal;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Splits a cursor into its version, key, list and ordinal, checking the version.
+    private String[] decode(String cursor) {
+        String text;
+        try {
+            text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+        int first = text.indexOf('.');
+        int last = text.lastIndexOf('.');
+        int middle = last < 0 ? -1 : text.lastIndexOf('.', last - 1);
+        if (first < 0 || middle <= first) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+        String versionText = text.substring(0, first);
+        if (!versionText.equals(Long.toString(version))) {
+            throw new IllegalArgumentException(versionText.matches("\\d+")
+                    ? "The cursor has expired because the points were rescored." : "Invalid cursor.");
+        }
+        return new String[] {versionText, text.substring(first + 1, middle), text.substring(middle + 1, last),
+                text.substring(last + 1)};
+    }
+
+    /**
+     * One page of receipts, read from the indexes one at a time.
+     */
+    public static final class Page {
+
+        private final List<Block> blocks;
+        private final List<int[]> spans;
+        private final List<String> filters;
+        private final String nextCursor;
+        private final RowReader reader;
+        private int block;
+        private int position = -1;
+
+        Page(List<Block> blocks, List<int[]> spans, List<String> filters, String nextCursor, RowReader reader) {
+            this.blocks = blocks;
+            this.spans = spans;
+            this.filters = filters;
+            this.nextCursor = nextCursor;
+            this.reader = reader;
+        }
+
+        /**
+         * getNextCursor(): The cursor of the page after this one, or null when this is the last.
+         * @return
+         */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        /**
+         * next(): The next receipt in the page, skipping any no longer stored or of another retailer.
+         * @return the receipt, or null at the end of the page
+         */
+        public Row next() {
+            while (block < blocks.size()) {
+                int[] span = spans.get(block);
+                position = position < 0 ? span[0] : position + 1;
+                if (position >= span[1]) {
+                    block++;
+                    position = -1;
+                    continue;
+                }
+                long[] ids = blocks.get(block).ids;
+                Row row = reader.read(ids[2 * position], ids[2 * position + 1]);
+                String retailer = filters.get(block);
+                if (row != null && (retailer == null || retailer.equals(row.getRetailer()))) {
+                    return row;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * One receipt in a page.
+     */
+    public static final class Row {
+
+        private final String id;
+        private final String retailer;
+        private final LocalDate purchaseDate;
+        private final long points;
+
+        public Row(String id, String retailer, LocalDate purchaseDate, long points) {
+            this.id = id;
+            this.retailer = retailer;
+            this.purchaseDate = purchaseDate;
+            this.points = points;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getRetailer() {
+            return retailer;
+        }
+
+        public LocalDate getPurchaseDate() {
+            return purchaseDate;
+        }
+
+        public long getPoints() {
+            return points;
+        }
+    }
+
+    // The receipts of one key. Appends fill the current block; a full one is replaced by a copy.
+    private final class Postings {
+
+        // The index and key the list is under, or null for the OTHER list, which is never removed.
+        final Map<?, Postings> index;
+        final Object key;
+        final long id;
+        volatile Block block = new Block(INITIAL_CAPACITY);
+        private int appended;
+        private boolean removed;
+        // Set by the append that grew the list while evictions were pending; cleared by compact().
+        private volatile boolean compactionDue;
+        // Index evictions already accounted for by the last compaction.
+        volatile long compactedEvictions;
+        private final AtomicBoolean compacting = new AtomicBoolean();
+
+        Postings(Map<?, Postings> index, Object key, long id) {
+            this.index = index;
+            this.key = key;
+            this.id = id;
+            this.compactedEvictions = evictions.sum();
+            estimatedBytes.add(INITIAL_CAPACITY * ENTRY_BYTES);
+        }
+
+        // False when the list has been removed for being empty.
+        boolean add(long msb, long lsb) {
+            if (!append(msb, lsb)) {
+                return false;
+            }
+            if (compactionDue) {
+                compact();
+            }
+            return true;
+        }
+
+        private synchronized boolean append(long msb, long lsb) {
+            if (removed) {
+                return false;
+            }
+            Block current = block;
+            int size = current.size;
+            if (size == current.ordinals.length) {
+                current = grow(current, size);
+                if (evictions.sum() > compactedEvictions) {
+                    compactionDue = true;
+                }
+            }
+            current.ids[2 * size] = msb;
+            current.ids[2 * size + 1] = lsb;
+            current.ordinals[size] = appended++;
+            current.size = size + 1;
+            return true;
+        }
+
+        private Block grow(Block current, int size) {
+            Block copy = new Block(size * 2);
+            System.arraycopy(current.ids, 0, copy.ids, 0, 2 * size);
+            System.arraycopy(current.ordinals, 0, copy.ordinals, 0, size);
+            copy.size = size;
+            estimatedBytes.add((copy.ordinals.length - current.ordinals.length) * ENTRY_BYTES);
+            block = copy;
+            return copy;
+        }
+
+        // Copies the receipts the store still holds without the lock, then swaps the copy in
+        // under it together with whatever was appended meanwhile, removing the list if that
+        // leaves it empty. One thread compacts a list at a time.
+        void compact() {
+            if (!compacting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                long seen = evictions.sum();
+                Block snapshot = block;
+                int size = snapshot.size;
+                long[] ids = new long[2 * size];
+                int[] ordinals = new int[size];
+                int live = 0;
+                for (int i = 0; i < size; i++) {
+                    long msb = snapshot.ids[2 * i];
+                    long lsb = snapshot.ids[2 * i + 1];
+                    if (receiptStore.contains(msb, lsb)) {
+                        ids[2 * live] = msb;
+                        ids[2 * live + 1] = lsb;
+                        ordinals[live++] = snapshot.ordinals[i];
+                    }
+                }
+                synchronized (this) {
+                    Block current = block;
+                    if (current != snapshot) {
+                        // Grown meanwhile, which leaves compactionDue set for the next append.
+                        return;
+                    }
+                    int since = current.size - size;
+                    Block copy = new Block(Math.max(INITIAL_CAPACITY, (live + since) * 2));
+                    System.arraycopy(ids, 0, copy.ids, 0, 2 * live);
+                    System.arraycopy(ordinals, 0, copy.ordinals, 0, live);
+                    System.arraycopy(current.ids, 2 * size, copy.ids, 2 * live, 2 * since);
+                    System.arraycopy(current.ordinals, size, copy.ordinals, live, since);
+                    copy.size = live + since;
+                    estimatedBytes.add((copy.ordinals.length - current.ordinals.length) * ENTRY_BYTES);
+                    block = copy;
+                    compactedEvictions = seen;
+                    compactionDue = false;
+                    if (copy.size == 0 && index != null) {
+                        removed = true;
+                        index.remove(key, this);
+                        estimatedBytes.add(-KEY_BYTES - copy.ordinals.length * ENTRY_BYTES);
+                    }
+                }
+            } finally {
+                compacting.set(false);
+            }
+        }
+    }
+
+    // Receipt IDs as msb, lsb pairs with their ordinals, ascending; entries below size are final.
+    private static final class Block {
+
+        final long[] ids;
+        final int[] ordinals;
+        volatile int size;
+
+        Block(int capacity) {
+            ids = new long[2 * capacity];
+            ordinals = new int[capacity];
+        }
+
+        // Index of the first entry with an ordinal above the given one.
+        int indexAfter(int ordinal, int size) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ordinals[mid] <= ordinal) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.fetch.api.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fetch.api.store.ReceiptIds;
+import com.fetch.api.store.ReceiptStore;
+
+/**
+ * The highest-scoring receipts overall and per retailer, added to on every save so that
+ * reading a leaderboard costs O(SIZE) rather than a pass over the store.
+ *
+ * Each board is a min-heap of at most SIZE entries in parallel arrays, with its lowest
+ * score published in a volatile field once it is full. A receipt that does not beat that
+ * score, which is most of them once the boards have filled, is rejected with one volatile
+ * read and no lock; only receipts that make a board take its lock. On equal points the
+ * receipt already on the board keeps its place. Boards are created once per retailer, up
+ * to MAXIMUM_RETAILERS; receipts of later retailers are on the overall board only.
+ *
+ * Receipts the store evicts or expires are dropped from the boards. The eviction listener
+ * only counts them. A board drops its evicted receipts before every read, and on a save
+ * once the store has evicted 1/SIZE of its receipts since the board last checked, which is
+ * when the board probably holds one of them. Dropping receipts frees places, so the board
+ * takes every receipt again until it is full. A receipt turned away while evicted ones held
+ * the board's places does not come back, so a board may list fewer than SIZE receipts, or
+ * miss some of the highest live scores, until it refills.
+ */
+public final class ReceiptLeaderboard {
+
+    // Entries kept per board; the most a read can return.
+    public static final int SIZE = 100;
+
+    // Retailers with their own board; at SIZE entries of 32 bytes each, at most about 32 MB.
+    public static final int MAXIMUM_RETAILERS = 10_000;
+
+    // Receipts the store has evicted; each board drops its own as it catches up on them.
+    private final LongAdder evictions = new LongAdder();
+
+    private final Board overall = new Board();
+    private final ConcurrentHashMap<String, Board> byRetailer = new ConcurrentHashMap<>();
+    private final long version;
+    private final ReceiptStore receiptStore;
+
+    /**
+     * @param version the points version the receipts are scored under
+     * @param receiptStore the store the receipts are kept in, to drop those it evicted
+     */
+    public ReceiptLeaderboard(long version, ReceiptStore receiptStore) {
+        this.version = version;
+        this.receiptStore = receiptStore;
+    }
+
+    /**
+     * getVersion(): The points version the receipts are scored under.
+     * @return
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * evicted(): To note that the store evicted a receipt, so the boards drop it.
+     */
+    public void evicted() {
+        evictions.increment();
+    }
+
+    /**
+     * add(): To offer one receipt to the overall board and its retailer's.
+     * @param msb most significant bits of the receipt ID
+     * @param lsb least significant bits of the receipt ID
+     * @param retailer
+     * @param points
+     */
+    public void add(long msb, long lsb, String retailer, long points) {
+        overall.offer(msb, lsb, retailer, points);
+        if (retailer == null) {
+            return;
+        }
+        Board board = byRetailer.get(retailer);
+        if (board == null) {
+            if (byRetailer.size() >= MAXIMUM_RETAILERS) {
+                return;
+            }
+            board = byRetailer.computeIfAbsent(retailer, key -> new Board());
+        }
+        board.offer(msb, lsb, retailer, points);
+    }
+
+    /**
+     * top(): The highest-scoring receipts, most points first.
+     * @param limit at most SIZE
+     * @return
+     */
+    public List<Entry> top(int limit) {
+        return overall.top(limit);
+    }
+
+    /**
+     * top(): The retailer's highest-scoring receipts, most points first; empty for a retailer
+     * with no receipts or beyond MAXIMUM_RETAILERS.
+     * @param retailer
+     * @param limit at most SIZE
+     * @return
+     */
+    public List<Entry> top(String retailer, int limit) {
+        Board board = byRetailer.get(retailer);
+        return board == null ? Collections.emptyList() : board.top(limit);
+    }
+
+    /**
+     * One receipt on a leaderboard, as read.
+     */
+    public static final class Entry {
+
+        private final String id;
+        private final String retailer;
+        private final long points;
+
+        Entry(String id, String retailer, long points) {
+            this.id = id;
+            this.retailer = retailer;
+            this.points = points;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getRetailer() {
+            return retailer;
+        }
+
+        public long getPoints() {
+            return points;
+        }
+    }
+
+    // A bounded min-heap on points, grown on demand so a retailer with few receipts stays small.
+    private final class Board {
+
+        private static final Comparator<Entry> MOST_POINTS = Comparator.comparingLong(Entry::getPoints).reversed();
+
+        // Lowest score on the board once it holds SIZE entries; until then every receipt is taken.
+        private volatile long threshold = Long.MIN_VALUE;
+
+        private long[] msbs = new long[4];
+        private long[] lsbs = new long[4];
+        private long[] points = new long[4];
+        private String[] retailers = new String[4];
+        private int size;
+
+        // Store evictions already checked against the board's receipts.
+        private volatile long checkedEvictions = evictions.sum();
+
+        void offer(long msb, long lsb, String retailer, long receiptPoints) {
+            if (receiptPoints <= threshold && !dropDue()) {
+                return;
+            }
+            synchronized (this) {
+                if (dropDue()) {
+                    dropEvicted();
+                }
+                if (size < SIZE) {
+                    if (size == points.length) {
+                        grow();
+                    }
+                    set(size, msb, lsb, retailer, receiptPoints);
+                    siftUp(size++);
+                    if (size == SIZE) {
+                        threshold = points[0];
+                    }
+                } else if (receiptPoints > points[0]) {
+                    set(0, msb, lsb, retailer, receiptPoints);
+                    siftDown(0);
+                    threshold = points[0];
+                }
+            }
+        }
+
+        List<Entry> top(int limit) {
+            List<Entry> entries;
+            synchronized (this) {
+                if (evictions.sum() != checkedEvictions) {
+                    dropEvicted();
+                }
+                entries = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    entries.add(new Entry(ReceiptIds.toString(msbs[i], lsbs[i]), retailers[i], points[i]));
+                }
+            }
+            entries.sort(MOST_POINTS);
+            return entries.size() > limit ? entries.subList(0, limit) : entries;
+        }
+
+        // Whether the store has evicted enough receipts since the last check that the board
+        // probably holds one: 1/SIZE of the store, each board receipt being one of that many.
+        private boolean dropDue() {
+            long missed = evictions.sum() - checkedEvictions;
+            return missed > 0 && missed >= Math.max(1, receiptStore.size() / SIZE);
+        }
+
+        // Keeps the receipts the store still holds and rebuilds the heap from them.
+        private void dropEvicted() {
+            checkedEvictions = evictions.sum();
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (receiptStore.contains(msbs[i], lsbs[i])) {
+                    set(kept++, msbs[i], lsbs[i], retailers[i], points[i]);
+                }
+            }
+            Arrays.fill(retailers, kept, size, null);
+            size = kept;
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+            threshold = size == SIZE ? points[0] : Long.MIN_VALUE;
+        }
+
+        private void grow() {
+            int capacity = Math.min(SIZE, points.length * 2);
+            msbs = Arrays.copyOf(msbs, capacity);
+            lsbs = Arrays.copyOf(lsbs, capacity);
+            points = Arrays.copyOf(points, capacity);
+            retailers = Arrays.copyOf(retailers, capacity);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (points[parent] <= points[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && points[left] < points[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && points[right] < points[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void set(int i, long msb, long lsb, String retailer, long receiptPoints) {
+            msbs[i] = msb;
+            lsbs[i] = lsb;
+            retailers[i] = retailer;
+            points[i] = receiptPoints;
+        }
+
+        private void swap(int i, int j) {
+            long msb = msbs[i];
+            long lsb = lsbs[i];
+            String retailer = retailers[i];
+            long receiptPoints = points[i];
+            set(i, msbs[j], lsbs[j], retailers[j], points[j]);
+            set(j, msb, lsb, retailer, receiptPoints);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.fetch.api.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Newline-delimited ReceiptListing objects for one page of GET /receipts. Each receipt is
+ * looked up and written only when the previous line has been read, so a page is never held
+ * in memory as a whole.
+ */
+final class ReceiptPageResults extends InputStream {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final ReceiptIndex.Page page;
+    private final LineBuffer out = new LineBuffer();
+    private int pos;
+
+    ReceiptPageResults(ReceiptIndex.Page page) {
+        this.page = page;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return out.bytes()[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, out.size() - pos);
+        System.arraycopy(out.bytes(), pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    private boolean fill() throws IOException {
+        if (pos < out.size()) {
+            return true;
+        }
+        out.reset();
+        pos = 0;
+        ReceiptIndex.Row row = page.next();
+        if (row == null) {
+            return false;
+        }
+        try (JsonGenerator generator = JSON.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("id", row.getId());
+            if (row.getRetailer() != null) {
+                generator.writeStringField("retailer", row.getRetailer());
+            }
+            if (row.getPurchaseDate() != null) {
+                generator.writeStringField("purchaseDate", row.getPurchaseDate().toString());
+            }
+            generator.writeNumberField("points", row.getPoints());
+            generator.writeEndObject();
+        }
+        out.write('\n');
+        return true;
+    }
+
+    private static final class LineBuffer extends ByteArrayOutputStream {
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
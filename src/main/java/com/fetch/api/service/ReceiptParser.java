@@ -0,0 +1,230 @@
+package com.fetch.api.service;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fetch.api.model.Money;
+import com.fetch.api.model.ParsedReceipt;
+
+/**
+ * Streaming decoder for the Receipt schema in api.yml.
+ *
+ * Prices and the total are decoded into cents, the purchase date into a LocalDate
+ * and the purchase time into minutes, straight from the parser's character buffer.
+ * Only the retailer and item descriptions become Strings. Unknown fields are skipped.
+ *
+ * Not thread-safe: use one parser per thread or per stream.
+ */
+public class ReceiptParser {
+
+	private static final long NO_LIMIT = Long.MAX_VALUE;
+
+	private final JsonFactory jsonFactory;
+
+	// Reused to hand the parser's characters to the CharSequence decoders.
+	private final StringBuilder text = new StringBuilder(32);
+
+	private String[] descriptions = new String[16];
+	private long[] priceCents = new long[16];
+
+	public ReceiptParser(JsonFactory jsonFactory) {
+		this.jsonFactory = jsonFactory;
+	}
+
+	/**
+	 * parse(): To decode one receipt object from the bytes.
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @return
+	 */
+	public ParsedReceipt parse(byte[] bytes, int offset, int length) throws IOException {
+		try (JsonParser parser = jsonFactory.createParser(bytes, offset, length)) {
+			parser.nextToken();
+			ParsedReceipt receipt = parse(parser);
+			if (parser.nextToken() != null) {
+				throw new JsonParseException(parser, "Unexpected content after the receipt");
+			}
+			return receipt;
+		}
+	}
+
+	/**
+	 * parse(): To decode the receipt object at the parser's current token.
+	 * @param parser positioned on START_OBJECT; left on the matching END_OBJECT
+	 * @return
+	 */
+	public ParsedReceipt parse(JsonParser parser) throws IOException {
+		return parse(parser, NO_LIMIT);
+	}
+
+	/**
+	 * parse(): To decode the receipt object at the parser's current token, giving up once it runs
+	 * past maxBytes. The size is checked between fields and items, so a receipt that is too large
+	 * is rejected before its items are all held, provided the parser limits the length of one string.
+	 * @param parser positioned on START_OBJECT; left inside the receipt when it is too large
+	 * @param maxBytes
+	 * @return
+	 * @throws ReceiptTooLargeException when the receipt runs past maxBytes
+	 */
+	public ParsedReceipt parse(JsonParser parser, long maxBytes) throws IOException {
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			throw new JsonParseException(parser, "Expected a receipt object");
+		}
+		long end = maxBytes == NO_LIMIT ? NO_LIMIT : parser.currentTokenLocation().getByteOffset() + maxBytes;
+		String retailer = null;
+		LocalDate purchaseDate = null;
+		int purchaseMinutes = ParsedReceipt.INVALID_TIME;
+		long totalCents = Money.INVALID;
+		int itemCount = 0;
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			checkSize(parser, end);
+			String field = parser.currentName();
+			JsonToken value = parser.nextToken();
+			switch (field) {
+				case "retailer":
+					retailer = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+					break;
+				case "purchaseDate":
+					purchaseDate = value == JsonToken.VALUE_STRING ? parseDate(text(parser)) : null;
+					break;
+				case "purchaseTime":
+					purchaseMinutes = value == JsonToken.VALUE_STRING ? parseMinutes(text(parser)) : ParsedReceipt.INVALID_TIME;
+					break;
+				case "total":
+					totalCents = value == JsonToken.VALUE_STRING ? ReceiptValidator.SPEC.totalCents(text(parser)) : Money.INVALID;
+					break;
+				case "items":
+					itemCount = value == JsonToken.START_ARRAY ? parseItems(parser, end) : 0;
+					if (value != JsonToken.START_ARRAY) {
+						parser.skipChildren();
+					}
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+		checkSize(parser, end);
+		return new ParsedReceipt(retailer, purchaseDate, purchaseMinutes, totalCents, itemCount,
+				Arrays.copyOf(descriptions, itemCount), Arrays.copyOf(priceCents, itemCount));
+	}
+
+	// Reads the items array into the scratch arrays; returns the number of items.
+	private int parseItems(JsonParser parser, long end) throws IOException {
+		int count = 0;
+		JsonToken token;
+		while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+			checkSize(parser, end);
+			if (count == descriptions.length) {
+				descriptions = Arrays.copyOf(descriptions, count * 2);
+				priceCents = Arrays.copyOf(priceCents, count * 2);
+			}
+			String description = null;
+			long price = Money.INVALID;
+			if (token == JsonToken.START_OBJECT) {
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					checkSize(parser, end);
+					String field = parser.currentName();
+					JsonToken value = parser.nextToken();
+					if ("shortDescription".equals(field) && value == JsonToken.VALUE_STRING) {
+						description = parser.getText();
+					} else if ("price".equals(field) && value == JsonToken.VALUE_STRING) {
+						price = ReceiptValidator.SPEC.priceCents(text(parser));
+					} else {
+						parser.skipChildren();
+					}
+				}
+			} else {
+				parser.skipChildren();
+			}
+			descriptions[count] = description;
+			priceCents[count] = price;
+			count++;
+		}
+		return count;
+	}
+
+	private static void checkSize(JsonParser parser, long end) throws ReceiptTooLargeException {
+		if (end != NO_LIMIT && parser.currentLocation().getByteOffset() > end) {
+			throw new ReceiptTooLargeException(parser);
+		}
+	}
+
+	private CharSequence text(JsonParser parser) throws IOException {
+		text.setLength(0);
+		text.append(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+		return text;
+	}
+
+	/**
+	 * parseDate(): To decode a yyyy-MM-dd date.
+	 * @param date
+	 * @return the date, or null when it is malformed or does not exist
+	 */
+	public static LocalDate parseDate(CharSequence date) {
+		if (date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+			return null;
+		}
+		int year = digits(date, 0, 4);
+		int month = digits(date, 5, 7);
+		int day = digits(date, 8, 10);
+		if (year < 0 || month < 0 || day < 0) {
+			return null;
+		}
+		try {
+			return LocalDate.of(year, month, day);
+		} catch (DateTimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * parseMinutes(): To decode a 24-hour H:MM or HH:MM time into minutes after midnight.
+	 * Accepts exactly what ReceiptService.isValidTime() accepts.
+	 * @param time
+	 * @return minutes, or ParsedReceipt.INVALID_TIME
+	 */
+	public static int parseMinutes(CharSequence time) {
+		int length = time.length();
+		if (length < 4 || length > 5 || time.charAt(length - 3) != ':') {
+			return ParsedReceipt.INVALID_TIME;
+		}
+		int hours = digits(time, 0, length - 3);
+		int minutes = digits(time, length - 2, length);
+		if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+			return ParsedReceipt.INVALID_TIME;
+		}
+		return hours * 60 + minutes;
+	}
+
+	// Decimal value of the characters in [from, to), or -1 if any is not a digit.
+	private static int digits(CharSequence s, int from, int to) {
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			int digit = s.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Thrown when a receipt runs past the byte limit it was parsed with. The parser is
+	 * still in step with the input, so the rest of the receipt can be skipped.
+	 */
+	public static final class ReceiptTooLargeException extends JsonParseException {
+
+		ReceiptTooLargeException(JsonParser parser) {
+			super(parser, "Receipt is too large");
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package com.fetch.api.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service to run ReceiptService.rescore() in the background for the admin API and
+ * report its progress. One rescore runs at a time.
+ */
+@Service
+public class ReceiptRescorer {
+
+	private static final Logger log = LoggerFactory.getLogger(ReceiptRescorer.class);
+
+	private final ReceiptService receiptService;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "receipt-rescore");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// The running or last finished rescore, or null before the first one.
+	private volatile Job job;
+
+	@Autowired
+	public ReceiptRescorer(ReceiptService receiptService) {
+		this.receiptService = receiptService;
+	}
+
+	/**
+	 * start(): To compile the rules and start rescoring every stored receipt with them.
+	 * @param spec PointsRules spec; empty for the README rules
+	 * @return the started job
+	 * @throws IllegalArgumentException when the spec does not compile
+	 * @throws IllegalStateException when a rescore is already running
+	 */
+	public synchronized Job start(String spec) {
+		PointsRules rules = spec == null || spec.isBlank() ? PointsRules.defaults() : PointsRules.compile(spec);
+		if (job != null && job.state == State.RUNNING) {
+			throw new IllegalStateException("A rescore is already running.");
+		}
+		Job started = new Job(rules.toString(), receiptService.countReceipts());
+		job = started;
+		executor.execute(() -> run(started, rules));
+		return started;
+	}
+
+	/**
+	 * getJob(): The running or last finished rescore.
+	 * @return the job, or null when no rescore has been started
+	 */
+	public Job getJob() {
+		return job;
+	}
+
+	private void run(Job job, PointsRules rules) {
+		try {
+			job.version = receiptService.rescore(rules, job.rescored);
+			job.finish(State.DONE, null);
+			log.info("Rescored {} receipts as version {} in {} ms ({} receipts/s)", job.getRescored(),
+					job.getVersion(), job.getElapsedMillis(), Math.round(job.getReceiptsPerSecond()));
+		} catch (RuntimeException e) {
+			job.finish(State.FAILED, e.getMessage());
+			log.warn("Rescore failed", e);
+		}
+	}
+
+	public enum State {
+		RUNNING, DONE, FAILED
+	}
+
+	/**
+	 * Progress of one rescore. Counters are read while the rescore updates them.
+	 */
+	public static final class Job {
+
+		private final String rules;
+		private final long total;
+		private final long startedNanos = System.nanoTime();
+		private final LongAdder rescored = new LongAdder();
+		private volatile State state = State.RUNNING;
+		private volatile long version;
+		private volatile long finishedNanos;
+		private volatile String error;
+
+		Job(String rules, long total) {
+			this.rules = rules;
+			this.total = total;
+		}
+
+		void finish(State state, String error) {
+			this.finishedNanos = System.nanoTime();
+			this.error = error;
+			this.state = state;
+		}
+
+		public String getRules() {
+			return rules;
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		/**
+		 * getVersion(): The version published by the rescore, or 0 until it is done.
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		public long getRescored() {
+			return rescored.sum();
+		}
+
+		/**
+		 * getTotal(): Receipts in the store when the rescore started; receipts saved meanwhile are rescored too.
+		 */
+		public long getTotal() {
+			return total;
+		}
+
+		public long getElapsedMillis() {
+			return ((state == State.RUNNING ? System.nanoTime() : finishedNanos) - startedNanos) / 1_000_000;
+		}
+
+		public double getReceiptsPerSecond() {
+			long elapsed = getElapsedMillis();
+			return elapsed == 0 ? 0 : getRescored() * 1000.0 / elapsed;
+		}
+
+		public String getError() {
+			return error;
+		}
+	}
+}
@@ -1,16 +1,30 @@
 package com.fetch.api.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.fetch.api.jfr.ReceiptSaveEvent;
+import com.fetch.api.jfr.ReceiptValidationEvent;
+import com.fetch.api.model.Money;
+import com.fetch.api.model.ParsedReceipt;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.api.store.MapReceiptStore;
+import com.fetch.api.store.ReceiptCodec;
+import com.fetch.api.store.ReceiptIdGenerator;
+import com.fetch.api.store.ReceiptIds;
+import com.fetch.api.store.ReceiptStore;
+import com.fetch.api.store.StringDictionary;
 import com.fetch.model.Item;
 import com.fetch.model.Receipt;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
 import java.util.regex.Pattern;
 
 /**
@@ -19,20 +33,233 @@ import java.util.regex.Pattern;
 @Service
 public class ReceiptService {
 	
-	private static final String TIME_24HOUR_PATTERN = "^([01]?[0-9]|2[0-3]):[0-5][0-9]$";
+	private static final Logger log = LoggerFactory.getLogger(ReceiptService.class);
 	
-	// To save the receipts in-memory.
-    private Map<String, Receipt> receiptStore = new ConcurrentHashMap<>();
+	private static final Pattern TIME_24HOUR_PATTERN = Pattern.compile("^([01]?[0-9]|2[0-3]):[0-5][0-9]$");
+	
+	// To save the receipts along with their points.
+    private final ReceiptStore receiptStore;
+
+    // To assign the receipt IDs.
+    private final ReceiptIdGenerator receiptIdGenerator;
+
+    // Shared retailer and description strings, with their cached scoring facts.
+    private final StringDictionary stringDictionary;
+
+    // Rules in force, their aggregates, leaderboard and indexes and, once a rescore has been published, the points they gave every stored receipt.
+    private volatile Scoring scoring;
+
+    // Rescore in progress, if any. Saves also score into its overlay, so none is missed.
+    private volatile Scoring pending;
+
+    // Stage timers and validation error counters.
+    private final ReceiptMetrics metrics;
+
+    public ReceiptService() {
+        this(new MapReceiptStore());
+    }
+
+    public ReceiptService(ReceiptStore receiptStore) {
+        this(receiptStore, PointsRules.defaults());
+    }
+
+    public ReceiptService(ReceiptStore receiptStore, PointsRules pointsRules) {
+        this(receiptStore, pointsRules, ReceiptIdGenerator.random());
+    }
+
+    public ReceiptService(ReceiptStore receiptStore, PointsRules pointsRules, ReceiptIdGenerator receiptIdGenerator) {
+        this(receiptStore, pointsRules, receiptIdGenerator, new StringDictionary(StringDictionary.DEFAULT_MAXIMUM_ENTRIES));
+    }
+
+    public ReceiptService(ReceiptStore receiptStore, PointsRules pointsRules, ReceiptIdGenerator receiptIdGenerator,
+            StringDictionary stringDictionary) {
+        this(receiptStore, pointsRules, receiptIdGenerator, stringDictionary, new ReceiptMetrics());
+    }
+
+    @Autowired
+    public ReceiptService(ReceiptStore receiptStore, PointsRules pointsRules, ReceiptIdGenerator receiptIdGenerator,
+            StringDictionary stringDictionary, ReceiptMetrics metrics) {
+        this.receiptStore = receiptStore;
+        this.receiptIdGenerator = receiptIdGenerator;
+        this.stringDictionary = stringDictionary;
+        this.metrics = metrics;
+        this.scoring = new Scoring(1, pointsRules, null, receiptStore);
+        countStored(receiptStore, scoring);
+        receiptStore.setEvictionListener(this::evicted);
+    }
 
     /**
-     * save(): To save the receipt in the receiptStore map with its ID as key.
+     * save(): To score the receipt and save it in the receiptStore with its ID as key.
+     * The points are calculated before the entry is published, so a lookup that
+     * follows save() on any thread always sees the final score. Scoring and the
+     * whole save are timed as the SCORING and INGEST stages, and recorded as a
+     * ReceiptSaveEvent when they take longer than its JFR threshold.
      * @param receipt
      * @return
      */
     public String save(Receipt receipt) {
-        String id = UUID.randomUUID().toString();
-        receiptStore.put(id, receipt);
-        return id;
+        ReceiptSaveEvent event = new ReceiptSaveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Scoring current = scoring;
+        long points = calculatePoints(receipt, current.rules);
+        long scored = metrics.record(ReceiptMetrics.Timer.SCORING, start);
+        UUID id = receiptIdGenerator.next();
+        String value = id.toString();
+        receiptStore.put(value, receipt, points);
+        current.count(id.getMostSignificantBits(), id.getLeastSignificantBits(), receipt.getRetailer(),
+                receipt.getPurchaseDate(), points);
+        if (pending != null || scoring != current) {
+            scoreOverlays(current, id, receipt.getRetailer(), receipt.getPurchaseDate(),
+                    rules -> calculatePoints(receipt, rules));
+        }
+        event.finish(value, receipt.getItems().size(), current.version, start, scored,
+                metrics.record(ReceiptMetrics.Timer.INGEST, start));
+        return value;
+    }
+
+    /**
+     * save(): To save the receipt with points scored from the amounts and time parseReceipt() converted,
+     * so they are not parsed a second time.
+     * @param receipt
+     * @param parsed the result of parseReceipt(receipt)
+     * @return
+     */
+    public String save(Receipt receipt, ParsedReceipt parsed) {
+        ReceiptSaveEvent event = new ReceiptSaveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Scoring current = scoring;
+        long points = calculatePoints(parsed, current.rules);
+        long scored = metrics.record(ReceiptMetrics.Timer.SCORING, start);
+        UUID id = receiptIdGenerator.next();
+        String value = id.toString();
+        receiptStore.put(value, receipt, points);
+        current.count(id.getMostSignificantBits(), id.getLeastSignificantBits(), parsed.getRetailer(),
+                parsed.getPurchaseDate(), points);
+        if (pending != null || scoring != current) {
+            scoreOverlays(current, id, parsed.getRetailer(), parsed.getPurchaseDate(),
+                    rules -> calculatePoints(parsed, rules));
+        }
+        event.finish(value, parsed.getItemCount(), current.version, start, scored,
+                metrics.record(ReceiptMetrics.Timer.INGEST, start));
+        return value;
+    }
+
+    /**
+     * save(): To score a streamed receipt and save its encoded form without building the generated model.
+     * @param receipt a receipt that passed validateReceipt(ParsedReceipt)
+     * @return
+     */
+    public String save(ParsedReceipt receipt) {
+        ReceiptSaveEvent event = new ReceiptSaveEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Scoring current = scoring;
+        long points = calculatePoints(receipt, current.rules);
+        long scored = metrics.record(ReceiptMetrics.Timer.SCORING, start);
+        UUID id = receiptIdGenerator.next();
+        receiptStore.putEncoded(id.getMostSignificantBits(), id.getLeastSignificantBits(), points,
+                ReceiptCodec.encode(receipt));
+        current.count(id.getMostSignificantBits(), id.getLeastSignificantBits(), receipt.getRetailer(),
+                receipt.getPurchaseDate(), points);
+        if (pending != null || scoring != current) {
+            scoreOverlays(current, id, receipt.getRetailer(), receipt.getPurchaseDate(),
+                    rules -> calculatePoints(receipt, rules));
+        }
+        long stored = metrics.record(ReceiptMetrics.Timer.INGEST, start);
+        String value = id.toString();
+        event.finish(value, receipt.getItemCount(), current.version, start, scored, stored);
+        return value;
+    }
+
+    /**
+     * rescore(): To score every stored receipt again with new rules, using all cores, and publish
+     * the new points as the next version in one step. Readers see either every old or every new
+     * score, never a mix. Saves carry on while it runs and are scored under both versions.
+     * The rescored points are kept in memory only, in an overlay that drops receipts as the store evicts
+     * them; stored and journaled points are not rewritten.
+     * The aggregates, leaderboard and indexes are rebuilt in the same pass and published with the points.
+     * @param rules
+     * @param progress incremented once per receipt rescored
+     * @return the published version
+     * @throws UnsupportedOperationException when the store keeps points only
+     */
+    public synchronized long rescore(PointsRules rules, LongAdder progress) {
+        Scoring next = new Scoring(scoring.version + 1, rules, new CompactReceiptStore(false), receiptStore);
+        // Saves that miss this write stored their receipt before the pass below starts, so it visits them.
+        pending = next;
+        try {
+            receiptStore.forEachReceipt((id, receipt) -> {
+                long points = calculatePoints(receipt, rules);
+                // A save running alongside may have added the receipt already; only the first adds it.
+                long msb = ReceiptIds.mostSignificantBits(id);
+                long lsb = ReceiptIds.leastSignificantBits(id);
+                if (next.overlay.putPoints(msb, lsb, points)) {
+                    next.count(msb, lsb, receipt.getRetailer(), receipt.getPurchaseDate(), points);
+                }
+                // Evicted after it was visited, before the overlay held it for the listener to drop.
+                if (receiptStore.findPoints(id) < 0) {
+                    next.overlay.removePoints(msb, lsb);
+                }
+                progress.increment();
+            });
+            scoring = next;
+        } finally {
+            pending = null;
+        }
+        return next.version;
+    }
+
+    /**
+     * getScoringVersion(): The version of the points being served; 1 until the first rescore.
+     * @return
+     */
+    public long getScoringVersion() {
+        return scoring.version;
+    }
+
+    // Scores a saved receipt into the overlays of the versions being built or published since the save began.
+    // current already counted it and the store holds its points; the rescore pass may have counted it in the others.
+    private void scoreOverlays(Scoring current, UUID id, String retailer, LocalDate purchaseDate,
+            ToLongFunction<PointsRules> scorer) {
+        for (Scoring next : overlays(current)) {
+            long nextPoints = scorer.applyAsLong(next.rules);
+            if (next.overlay.putPoints(id.getMostSignificantBits(), id.getLeastSignificantBits(), nextPoints)) {
+                next.count(id.getMostSignificantBits(), id.getLeastSignificantBits(), retailer, purchaseDate, nextPoints);
+            }
+        }
+    }
+
+    // Versions other than current with an overlay that a save must also score into, read after the store write.
+    private List<Scoring> overlays(Scoring current) {
+        List<Scoring> overlays = new ArrayList<>(2);
+        Scoring next = pending;
+        if (next != null) {
+            overlays.add(next);
+        }
+        Scoring published = scoring;
+        if (published.overlay != null && published != next && published != current) {
+            overlays.add(published);
+        }
+        return overlays;
+    }
+
+    // Drops an evicted receipt's rescored points, so the overlays stay within the store's bound,
+    // has the indexes compact their lists as they grow and the leaderboards drop the receipt.
+    private void evicted(long msb, long lsb) {
+        Scoring next = pending;
+        if (next != null) {
+            next.overlay.removePoints(msb, lsb);
+            next.index.evicted();
+            next.leaderboard.evicted();
+        }
+        Scoring published = scoring;
+        if (published.overlay != null) {
+            published.overlay.removePoints(msb, lsb);
+        }
+        published.index.evicted();
+        published.leaderboard.evicted();
     }
 
     /**
@@ -41,115 +268,344 @@ public class ReceiptService {
      * @return
      */
     public Receipt findById(String id) {
-        return receiptStore.get(id);
+        return receiptStore.findReceipt(id);
     }
-    
+
+    /**
+     * findPointsById(): To find the points calculated at ingest for the receipt ID.
+     * @param id
+     * @return points, or null when there is no receipt for the ID
+     */
+    public Long findPointsById(String id) {
+        long points = lookupPoints(id);
+        return points < 0 ? null : points;
+    }
+
+    /**
+     * isStored(): To check whether the store still holds a receipt for the ID, without timing it as a lookup.
+     * @param id
+     * @return
+     */
+    public boolean isStored(String id) {
+        return receiptStore.findPoints(id) >= 0;
+    }
+
+    /**
+     * lookupPoints(): To find the points for the receipt ID, telling an evicted receipt from an unknown one in the same lookup.
+     * @param id
+     * @return points, or ReceiptStore.MISSING or ReceiptStore.EXPIRED
+     */
+    public long lookupPoints(String id) {
+        long start = System.nanoTime();
+        long points = findPoints(scoring, id);
+        metrics.record(ReceiptMetrics.Timer.LOOKUP, start);
+        return points;
+    }
+
+    /**
+     * findPointsByIds(): To look up the points for many IDs in one pass over the store.
+     * @param ids
+     * @return points per ID in the same order, with ReceiptStore.MISSING or ReceiptStore.EXPIRED for misses
+     */
+    public long[] findPointsByIds(List<String> ids) {
+        Scoring current = scoring;
+        long[] points = new long[ids.size()];
+        int i = 0;
+        for (String id : ids) {
+            points[i++] = findPoints(current, id);
+        }
+        return points;
+    }
+
+    // Points under one version: the rescored points when there are any, else the stored ones.
+    private long findPoints(Scoring version, String id) {
+        long points = receiptStore.findPoints(id);
+        if (points < 0 || version.overlay == null) {
+            return points;
+        }
+        long rescored = version.overlay.findPoints(id);
+        return rescored == ReceiptStore.MISSING ? points : rescored;
+    }
+
+    /**
+     * countReceipts(): Number of receipts in the store.
+     * @return
+     */
+    public long countReceipts() {
+        return receiptStore.size();
+    }
+
+    /**
+     * getEstimatedBytes(): Rough heap held by the receipt store.
+     * @return
+     */
+    public long getEstimatedBytes() {
+        return receiptStore.getEstimatedBytes();
+    }
+
+    /**
+     * getSizeEvictionCount(): Receipts the store evicted to stay within its size or byte bound.
+     * @return
+     */
+    public long getSizeEvictionCount() {
+        return receiptStore.getSizeEvictionCount();
+    }
+
+    /**
+     * getExpirationCount(): Receipts the store removed because their time-to-live passed.
+     * @return
+     */
+    public long getExpirationCount() {
+        return receiptStore.getExpirationCount();
+    }
+
+    /**
+     * getAggregates(): Receipts and points per retailer and per purchase date, under the points being served.
+     * @return
+     */
+    public ReceiptAggregates getAggregates() {
+        return scoring.aggregates;
+    }
+
+    /**
+     * getLeaderboard(): The highest-scoring receipts, overall and per retailer, under the points being served.
+     * @return
+     */
+    public ReceiptLeaderboard getLeaderboard() {
+        return scoring.leaderboard;
+    }
+
+    /**
+     * getIndexEstimatedBytes(): Estimated heap held by the retailer, purchase date and points indexes.
+     * @return
+     */
+    public long getIndexEstimatedBytes() {
+        return scoring.index.getEstimatedBytes();
+    }
+
+    /**
+     * listByRetailer(): A page of the retailer's receipts, in the order they were saved, with the points being served.
+     * @param retailer
+     * @param cursor the previous page's next cursor, or null for the first page
+     * @param limit most receipts in the page
+     * @return the page, read as it is streamed
+     * @throws IllegalArgumentException when the cursor is malformed or the points were rescored since
+     */
+    public ReceiptIndex.Page listByRetailer(String retailer, String cursor, int limit) {
+        Scoring current = scoring;
+        return current.index.byRetailer(retailer, cursor, limit, (msb, lsb) -> row(current, msb, lsb));
+    }
+
+    /**
+     * listByPurchaseDate(): A page of the receipts purchased between the dates, oldest first.
+     * @param from first date, or null for no lower bound
+     * @param to last date, or null for no upper bound
+     * @param cursor the previous page's next cursor, or null for the first page
+     * @param limit most receipts in the page
+     * @return the page, read as it is streamed
+     * @throws IllegalArgumentException when the cursor is malformed or the points were rescored since
+     */
+    public ReceiptIndex.Page listByPurchaseDate(LocalDate from, LocalDate to, String cursor, int limit) {
+        Scoring current = scoring;
+        return current.index.byPurchaseDate(from, to, cursor, limit, (msb, lsb) -> row(current, msb, lsb));
+    }
+
+    /**
+     * listByPoints(): A page of the receipts scoring between the points, fewest first.
+     * @param min fewest points, or null for no lower bound
+     * @param max most points, or null for no upper bound
+     * @param cursor the previous page's next cursor, or null for the first page
+     * @param limit most receipts in the page
+     * @return the page, read as it is streamed
+     * @throws IllegalArgumentException when the cursor is malformed or the points were rescored since
+     */
+    public ReceiptIndex.Page listByPoints(Long min, Long max, String cursor, int limit) {
+        Scoring current = scoring;
+        return current.index.byPoints(min, max, cursor, limit, (msb, lsb) -> row(current, msb, lsb));
+    }
+
+    // The listed form of an indexed receipt, or null once it has been evicted.
+    private ReceiptIndex.Row row(Scoring version, long msb, long lsb) {
+        String id = ReceiptIds.toString(msb, lsb);
+        long points = findPoints(version, id);
+        if (points < 0) {
+            return null;
+        }
+        Receipt receipt = receiptStore.findReceipt(id);
+        return receipt == null ? new ReceiptIndex.Row(id, null, null, points)
+                : new ReceiptIndex.Row(id, receipt.getRetailer(), receipt.getPurchaseDate(), points);
+    }
+
+    /**
+     * getMetrics(): The stage timers and validation error counters this service records into.
+     * @return
+     */
+    public ReceiptMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * isValidTime(): To check whether the time format is correct using regular expression.
      * @param time
      * @return
      */
     public static boolean isValidTime(String time) {
-        Pattern pattern = Pattern.compile(TIME_24HOUR_PATTERN);
-        Matcher matcher = pattern.matcher(time);
-        return matcher.matches();
+        return TIME_24HOUR_PATTERN.matcher(time).matches();
     }
     
     /**
-     * validateReceipt(): To validate the receipt before saving it to the in-memory map.
+     * validateReceipt(): To validate the receipt against api.yml before saving it to the in-memory map.
      * @param receipt
      * @return
      */
     public List<String> validateReceipt(Receipt receipt) {
-    	
     	List<String> errors = new ArrayList<>();
-    	
-    	if(receipt.getRetailer() == null || receipt.getRetailer().isEmpty()) {
-    		errors.add("Invalid Retailer name");
-    	}
-    	
-    	if(receipt.getPurchaseTime() == null || !isValidTime(receipt.getPurchaseTime())) {
-    		errors.add("Invalid Purchase time");
-    	}
-    	
-    	if(receipt.getPurchaseDate() == null) {
-    		errors.add("Invalid Purchased Date");
+    	parseReceipt(receipt, errors);
+    	return errors;
+    }
+    
+    /**
+     * parseReceipt(): To validate the receipt against api.yml and, in the same pass, convert the
+     * amounts and time for save(Receipt, ParsedReceipt).
+     * @param receipt
+     * @param errors receives the validateReceipt() messages
+     * @return the converted receipt, or null when it is invalid
+     */
+    public ParsedReceipt parseReceipt(Receipt receipt, List<String> errors) {
+    	ReceiptValidationEvent event = new ReceiptValidationEvent();
+    	event.begin();
+    	long start = System.nanoTime();
+    	int before = errors.size();
+    	ParsedReceipt parsed = ReceiptValidator.SPEC.validate(receipt, errors);
+    	recordValidation(start, errors, before);
+    	event.finish(receipt.getItems() == null ? 0 : receipt.getItems().size(), errors, before);
+    	return parsed;
+    }
+    
+    /**
+     * validateReceipt(): To validate a streamed receipt, with the same messages as for the model.
+     * Amounts that are present but not in api.yml's "digits.dd" form are reported as invalid here.
+     * @param receipt
+     * @return
+     */
+    public List<String> validateReceipt(ParsedReceipt receipt) {
+    	ReceiptValidationEvent event = new ReceiptValidationEvent();
+    	event.begin();
+    	long start = System.nanoTime();
+    	List<String> errors = new ArrayList<>();
+    	ReceiptValidator.SPEC.validate(receipt, errors);
+    	recordValidation(start, errors, 0);
+    	event.finish(receipt.getItemCount(), errors, 0);
+    	return errors;
+    }
+    
+    private void recordValidation(long start, List<String> errors, int before) {
+    	metrics.record(ReceiptMetrics.Timer.VALIDATION, start);
+    	if (errors.size() != before) {
+    		metrics.countValidationErrors(errors, before);
     	}
+    }
+    
+    /**
+     * calculatePoints(): To Calculate points for the receipt with the configured PointsRules.
+     * Amounts are scored as whole cents, so no rule depends on floating-point rounding.
+     * @param receipt
+     * @return
+     * @throws NumberFormatException when the total or a price is not a plain decimal amount
+     */
+    public long calculatePoints(Receipt receipt) {
+    	return calculatePoints(receipt, scoring.rules);
+    }
+    
+    // Character counts come from the dictionary, so a retailer or description seen before is not rescanned.
+    private long calculatePoints(Receipt receipt, PointsRules pointsRules) {
     	
-    	if(receipt.getItems().size() == 0) {
-    		errors.add("List of items are empty");
-    	}else {
-    		for(Item item: receipt.getItems()) {
-    			if(item.getShortDescription() == null || item.getShortDescription().isEmpty()) {
-    				errors.add("Invalid Item Description");
-    				break;
-    			}
-    			if(item.getPrice() == null || item.getPrice().isEmpty()) {
-    				errors.add("Invalid Item Price");
-    				break;
-    			}
-    		}
-    	}
+    	List<Item> items = receipt.getItems();
+    	long points = pointsRules.scoreReceipt(stringDictionary.letterOrDigitCount(receipt.getRetailer()),
+    			cents(receipt.getTotal()), items.size(), receipt.getPurchaseDate().getDayOfMonth(),
+    			ReceiptParser.parseMinutes(receipt.getPurchaseTime()));
     	
-    	if(receipt.getTotal() == "" || receipt.getTotal() == null) {
-    		errors.add("Invalid Total");
+    	for(int i = 0; i < items.size(); i++) {
+    		Item item = items.get(i);
+    		points += pointsRules.scoreItem(stringDictionary.trimmedLength(item.getShortDescription()), cents(item.getPrice()));
     	}
     	
-    	return errors;
+    	return points;
     }
     
     /**
-     * calculatePoints(): To Calculate points for the receipt based on the id.
-     * @param id
+     * calculatePoints(): To Calculate points for a streamed receipt using whole cents and minutes.
+     * @param receipt
      * @return
      */
-    public long calculatePoints(String id) {
+    public long calculatePoints(ParsedReceipt receipt) {
+    	return calculatePoints(receipt, scoring.rules);
+    }
+    
+    private long calculatePoints(ParsedReceipt receipt, PointsRules pointsRules) {
+    	
+    	long points = pointsRules.scoreReceipt(stringDictionary.letterOrDigitCount(receipt.getRetailer()),
+    			receipt.getTotalCents(), receipt.getItemCount(), receipt.getPurchaseDate().getDayOfMonth(),
+    			receipt.getPurchaseMinutes());
     	
-    	Receipt receipt = receiptStore.get(id);
+    	for(int i = 0; i < receipt.getItemCount(); i++) {
+    		points += pointsRules.scoreItem(stringDictionary.trimmedLength(receipt.getDescription(i)), receipt.getPriceCents(i));
+    	}
     	
-    	long points = 0;
-		
-    	//To calculate points based on length of the retailer's name
-		for (char c : receipt.getRetailer().toCharArray()) {
-            if (Character.isLetterOrDigit(c)) {
-                points++;
+    	return points;
+    }
+    
+    // Whole cents of an amount, for scoring the generated model.
+    private static long cents(String amount) {
+    	long cents = Money.parseCents(amount);
+    	if (cents == Money.INVALID) {
+    		throw new NumberFormatException("Invalid amount: " + amount);
+    	}
+    	return cents;
+    }
+    
+    // Counts the receipts already in the store, such as those replayed from the journal.
+    private static void countStored(ReceiptStore receiptStore, Scoring scoring) {
+        if (receiptStore.size() > 0) {
+            try {
+                receiptStore.forEachReceipt((id, receipt) -> scoring.count(ReceiptIds.mostSignificantBits(id),
+                        ReceiptIds.leastSignificantBits(id), receipt.getRetailer(), receipt.getPurchaseDate(),
+                        receiptStore.findPoints(id)));
+            } catch (UnsupportedOperationException ex) {
+                log.warn("The receipt store keeps points only, so the aggregates, leaderboard and indexes start without its {} receipts",
+                        receiptStore.size());
             }
         }
-				
-		double total = Double.parseDouble(receipt.getTotal());
-		
-		//To check if the total is a round amount.
-		if(total % 1 == 0) {
-			points += 50;
-		}
-				
-		//To check if the total is divisible by 0.25
-		if(total % 0.25 == 0) {
-			points += 25;
-		}
-				
-		//To calculate points for every 2 items in the receipt.
-		points += (long) ((receipt.getItems().size())/2) * 5; 
-		
-		//To calculate points based on the description.
-		for(Item item: receipt.getItems()) {
-			if(item.getShortDescription().trim().length() % 3 == 0) {
-				Double price = Double.parseDouble(item.getPrice()) *  0.2;
-				points += Math.ceil(price);
-			}
-		}
-		
-		//To check if the day of the purchase date is odd or not.
-		if(receipt.getPurchaseDate().getDayOfMonth() % 2 != 0) {
-			points += 6;
-		}
-		
-		//To check if the purchase time is between 2pm to 4pm.
-		int hours = Integer.parseInt(receipt.getPurchaseTime().substring(0, 2));
-		if(hours >= 14 && hours < 16) {
-			points += 10;
-		}
-		
-		return points;
+    }
+    
+    /**
+     * One version of the points: its rules, the aggregates, leaderboard and indexes of the points
+     * they gave and, for rescored versions, an overlay of the points they gave each receipt.
+     * Version 1 reads the points stored at ingest.
+     */
+    private static final class Scoring {
+
+        final long version;
+        final PointsRules rules;
+        final CompactReceiptStore overlay;
+        final ReceiptAggregates aggregates;
+        final ReceiptLeaderboard leaderboard;
+        final ReceiptIndex index;
+
+        Scoring(long version, PointsRules rules, CompactReceiptStore overlay, ReceiptStore receiptStore) {
+            this.version = version;
+            this.rules = rules;
+            this.overlay = overlay;
+            this.aggregates = new ReceiptAggregates(version);
+            this.leaderboard = new ReceiptLeaderboard(version, receiptStore);
+            this.index = new ReceiptIndex(version, receiptStore);
+        }
+
+        // Counts a receipt, once, in this version's aggregates, leaderboard and indexes.
+        void count(long msb, long lsb, String retailer, LocalDate purchaseDate, long points) {
+            aggregates.add(retailer, purchaseDate, points);
+            leaderboard.add(msb, lsb, retailer, points);
+            index.add(msb, lsb, retailer, purchaseDate, points);
+        }
     }
 }
@@ -0,0 +1,310 @@
+package com.fetch.api.service;
+
+import java.util.List;
+
+import javax.validation.constraints.Pattern;
+
+import com.fetch.api.model.Money;
+import com.fetch.api.model.ParsedReceipt;
+import com.fetch.model.Item;
+import com.fetch.model.Receipt;
+
+/**
+ * Checks receipts against the constraints api.yml puts on Receipt and Item, in one pass
+ * that also converts the amounts and purchase time for scoring.
+ *
+ * The patterns are read from the javax.validation annotations that openapi-generator puts
+ * on the generated models, so they change with api.yml. Spring Boot 3 validates with
+ * jakarta.validation and never applies those annotations itself. Each pattern is compiled
+ * once: "[...]+" character classes become a lookup table, the "\d+\.\d{2}" amount a digit
+ * scanner that also yields the cents, and any other pattern a precompiled regex.
+ */
+public final class ReceiptValidator {
+
+    static final String AMOUNT_PATTERN = "^\\d+\\.\\d{2}$";
+
+    private static final Scanner AMOUNT = amount -> amountCents(amount) != Money.INVALID;
+    private static final Scanner NOT_EMPTY = s -> s != null && s.length() > 0;
+    private static final long MAX_WHOLE = (Long.MAX_VALUE - 99) / 100;
+
+    // Validator for the models generated from api.yml; declared after the scanners it uses.
+    public static final ReceiptValidator SPEC = new ReceiptValidator(Receipt.class, Item.class);
+
+    private final Scanner retailer;
+    private final Scanner total;
+    private final Scanner shortDescription;
+    private final Scanner price;
+
+    /**
+     * @param receiptModel the generated Receipt model
+     * @param itemModel the generated Item model
+     */
+    ReceiptValidator(Class<?> receiptModel, Class<?> itemModel) {
+        this.retailer = scanner(receiptModel, "retailer");
+        this.total = scanner(receiptModel, "total");
+        this.shortDescription = scanner(itemModel, "shortDescription");
+        this.price = scanner(itemModel, "price");
+    }
+
+    /**
+     * A compiled pattern, matched against the whole string. Null never matches.
+     */
+    @FunctionalInterface
+    public interface Scanner {
+        boolean matches(CharSequence s);
+    }
+
+    /**
+     * validate(): To validate the receipt and convert it for scoring, reporting the same messages
+     * as ReceiptService always has. Only the first bad item is reported.
+     * @param receipt
+     * @param errors receives one message per invalid field
+     * @return the receipt with amounts in cents and the time in minutes, or null when it is invalid
+     */
+    public ParsedReceipt validate(Receipt receipt, List<String> errors) {
+        int before = errors.size();
+        if (!retailer.matches(receipt.getRetailer())) {
+            errors.add("Invalid Retailer name");
+        }
+        int purchaseMinutes = receipt.getPurchaseTime() == null ? ParsedReceipt.INVALID_TIME
+                : ReceiptParser.parseMinutes(receipt.getPurchaseTime());
+        if (purchaseMinutes == ParsedReceipt.INVALID_TIME) {
+            errors.add("Invalid Purchase time");
+        }
+        if (receipt.getPurchaseDate() == null) {
+            errors.add("Invalid Purchased Date");
+        }
+
+        List<Item> items = receipt.getItems();
+        int itemCount = items == null ? 0 : items.size();
+        String[] descriptions = new String[itemCount];
+        long[] priceCents = new long[itemCount];
+        if (itemCount == 0) {
+            errors.add("List of items are empty");
+        }
+        for (int i = 0; i < itemCount; i++) {
+            Item item = items.get(i);
+            descriptions[i] = item.getShortDescription();
+            if (!shortDescription.matches(descriptions[i])) {
+                errors.add("Invalid Item Description");
+                break;
+            }
+            priceCents[i] = cents(price, item.getPrice());
+            if (priceCents[i] == Money.INVALID) {
+                errors.add("Invalid Item Price");
+                break;
+            }
+        }
+
+        long totalCents = cents(total, receipt.getTotal());
+        if (totalCents == Money.INVALID) {
+            errors.add("Invalid Total");
+        }
+        return errors.size() != before ? null : new ParsedReceipt(receipt.getRetailer(), receipt.getPurchaseDate(),
+                purchaseMinutes, totalCents, itemCount, descriptions, priceCents);
+    }
+
+    /**
+     * validate(): To validate a streamed receipt, with the same messages as for the model.
+     * ReceiptParser has already converted the amounts with amountCents() and the time.
+     * @param receipt
+     * @param errors receives one message per invalid field
+     */
+    public void validate(ParsedReceipt receipt, List<String> errors) {
+        if (!retailer.matches(receipt.getRetailer())) {
+            errors.add("Invalid Retailer name");
+        }
+        if (receipt.getPurchaseMinutes() == ParsedReceipt.INVALID_TIME) {
+            errors.add("Invalid Purchase time");
+        }
+        if (receipt.getPurchaseDate() == null) {
+            errors.add("Invalid Purchased Date");
+        }
+        if (receipt.getItemCount() == 0) {
+            errors.add("List of items are empty");
+        }
+        for (int i = 0; i < receipt.getItemCount(); i++) {
+            if (!shortDescription.matches(receipt.getDescription(i))) {
+                errors.add("Invalid Item Description");
+                break;
+            }
+            if (receipt.getPriceCents(i) == Money.INVALID) {
+                errors.add("Invalid Item Price");
+                break;
+            }
+        }
+        if (receipt.getTotalCents() == Money.INVALID) {
+            errors.add("Invalid Total");
+        }
+    }
+
+    /**
+     * totalCents(): To convert a total that matches the total pattern into cents.
+     * @param amount
+     * @return cents, or Money.INVALID
+     */
+    public long totalCents(CharSequence amount) {
+        return cents(total, amount);
+    }
+
+    /**
+     * priceCents(): To convert a price that matches the price pattern into cents.
+     * @param amount
+     * @return cents, or Money.INVALID
+     */
+    public long priceCents(CharSequence amount) {
+        return cents(price, amount);
+    }
+
+    /**
+     * compile(): To compile a pattern into a scanner that accepts exactly what the regex accepts.
+     * @param regex
+     * @return
+     */
+    public static Scanner compile(String regex) {
+        if (AMOUNT_PATTERN.equals(regex)) {
+            return AMOUNT;
+        }
+        boolean[] table = characterClass(regex);
+        if (table != null) {
+            boolean allowEmpty = regex.charAt(regex.length() - (regex.endsWith("$") ? 2 : 1)) == '*';
+            return s -> scan(table, allowEmpty, s);
+        }
+        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(regex);
+        return s -> s != null && pattern.matcher(s).matches();
+    }
+
+    /**
+     * amountCents(): To convert an amount in "digits.dd" form, as api.yml requires, into cents in one pass.
+     * @param amount
+     * @return cents, or Money.INVALID
+     */
+    public static long amountCents(CharSequence amount) {
+        if (amount == null) {
+            return Money.INVALID;
+        }
+        int dot = amount.length() - 3;
+        if (dot < 1 || amount.charAt(dot) != '.') {
+            return Money.INVALID;
+        }
+        long whole = 0;
+        for (int i = 0; i < dot; i++) {
+            int digit = amount.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || whole > (MAX_WHOLE - digit) / 10) {
+                return Money.INVALID;
+            }
+            whole = whole * 10 + digit;
+        }
+        int tens = amount.charAt(dot + 1) - '0';
+        int ones = amount.charAt(dot + 2) - '0';
+        if (tens < 0 || tens > 9 || ones < 0 || ones > 9) {
+            return Money.INVALID;
+        }
+        return whole * 100 + tens * 10 + ones;
+    }
+
+    // The amount's cents when it matches the scanner; plain decimals only, whatever the pattern allows.
+    private static long cents(Scanner scanner, CharSequence amount) {
+        if (scanner == AMOUNT) {
+            return amountCents(amount);
+        }
+        return scanner.matches(amount) ? Money.parseCents(amount) : Money.INVALID;
+    }
+
+    private static boolean scan(boolean[] table, boolean allowEmpty, CharSequence s) {
+        if (s == null || (!allowEmpty && s.length() == 0)) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= table.length || !table[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The ASCII lookup table for "^[...]+$" or "^[...]*$" made of \w, \s, \d, escaped or plain
+    // ASCII characters and ranges; null for any other pattern, which is then left to java.util.regex.
+    private static boolean[] characterClass(String regex) {
+        int from = regex.startsWith("^") ? 1 : 0;
+        int to = regex.endsWith("$") && !regex.endsWith("\\$") ? regex.length() - 1 : regex.length();
+        if (to - from < 4 || regex.charAt(from) != '[' || regex.charAt(from + 1) == '^'
+                || regex.charAt(to - 2) != ']' || (regex.charAt(to - 1) != '+' && regex.charAt(to - 1) != '*')) {
+            return null;
+        }
+        boolean[] table = new boolean[128];
+        int end = to - 2;
+        int previous = -1;
+        for (int i = from + 1; i < end; i++) {
+            char c = regex.charAt(i);
+            int literal;
+            if (c == '\\') {
+                if (++i == end) {
+                    return null;
+                }
+                char escaped = regex.charAt(i);
+                if (escaped == 'w') {
+                    mark(table, 'a', 'z');
+                    mark(table, 'A', 'Z');
+                    mark(table, '0', '9');
+                    table['_'] = true;
+                } else if (escaped == 's') {
+                    for (char space : new char[] {' ', '\t', '\n', '\u000B', '\f', '\r'}) {
+                        table[space] = true;
+                    }
+                } else if (escaped == 'd') {
+                    mark(table, '0', '9');
+                } else if (escaped < 128 && !Character.isLetterOrDigit(escaped)) {
+                    table[escaped] = true;
+                    previous = escaped;
+                    continue;
+                } else {
+                    return null;
+                }
+                previous = -1;
+                continue;
+            } else if (c == '-' && previous >= 0 && i + 1 < end) {
+                char next = regex.charAt(++i);
+                if (next == '\\' || next == '[' || next == ']' || next >= 128 || next < previous) {
+                    return null;
+                }
+                mark(table, (char) previous, next);
+                previous = -1;
+                continue;
+            } else if (c == '[' || c == ']' || c >= 128 || (c == '&' && i + 1 < end && regex.charAt(i + 1) == '&')) {
+                return null;
+            } else {
+                literal = c;
+            }
+            table[literal] = true;
+            previous = literal;
+        }
+        return table;
+    }
+
+    private static void mark(boolean[] table, char first, char last) {
+        for (char c = first; c <= last; c++) {
+            table[c] = true;
+        }
+    }
+
+    // The property's @Pattern from the generated model, compiled; any non-empty string when it has none.
+    private static Scanner scanner(Class<?> model, String property) {
+        String getter = "get" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        Pattern pattern;
+        try {
+            pattern = model.getMethod(getter).getAnnotation(Pattern.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("The generated " + model.getSimpleName() + " has no " + property, e);
+        }
+        if (pattern == null) {
+            try {
+                pattern = model.getDeclaredField(property).getAnnotation(Pattern.class);
+            } catch (NoSuchFieldException e) {
+                pattern = null;
+            }
+        }
+        return pattern == null ? NOT_EMPTY : compile(pattern.regexp());
+    }
+}
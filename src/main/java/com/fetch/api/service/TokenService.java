@@ -0,0 +1,220 @@
+package com.fetch.api.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service to issue and verify signed bearer tokens, so clients can authenticate once
+ * with Basic credentials and then skip the password check on every request.
+ *
+ * A token is "expiry.username.signature": the expiry in epoch seconds, the username,
+ * and the unpadded base64url HMAC-SHA256 of everything before the last dot. Verifying
+ * one is a single HMAC over the header's characters with a per-thread Mac and scratch
+ * buffers, and a constant-time comparison; apart from the username it allocates nothing.
+ * Tokens cannot be revoked before they expire, so the TTL should stay short.
+ */
+@Service
+public class TokenService {
+
+	private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+
+	private static final String ALGORITHM = "HmacSHA256";
+	private static final String BEARER = "Bearer ";
+	// Unpadded base64url length of a 32 byte HMAC-SHA256.
+	private static final int SIGNATURE_CHARS = 43;
+	private static final int MAX_TOKEN_CHARS = 512;
+	private static final int[] BASE64URL = new int[128];
+
+	static {
+		Arrays.fill(BASE64URL, -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+		for (int i = 0; i < alphabet.length(); i++) {
+			BASE64URL[alphabet.charAt(i)] = i;
+		}
+	}
+
+	private final boolean enabled;
+	private final Duration ttl;
+	private final Clock clock;
+	private final SecretKeySpec key;
+	private final ThreadLocal<Scratch> scratch;
+
+	public TokenService() {
+		this(false, "", Duration.ofMinutes(15), Clock.systemUTC());
+	}
+
+	@Autowired
+	public TokenService(@Value("${receipts.security.token.enabled:false}") boolean enabled,
+			@Value("${receipts.security.token.secret:}") String secret,
+			@Value("${receipts.security.token.ttl:15m}") Duration ttl) {
+		this(enabled, secret, ttl, Clock.systemUTC());
+	}
+
+	/**
+	 * @param enabled whether tokens are issued and accepted
+	 * @param secret base64 HMAC key of at least 32 bytes; blank for a random key that lasts until restart
+	 * @param ttl how long an issued token is valid
+	 * @param clock
+	 */
+	public TokenService(boolean enabled, String secret, Duration ttl, Clock clock) {
+		this.enabled = enabled;
+		this.ttl = ttl;
+		this.clock = clock;
+		byte[] keyBytes;
+		if (secret == null || secret.isBlank()) {
+			keyBytes = new byte[32];
+			new SecureRandom().nextBytes(keyBytes);
+			if (enabled) {
+				log.warn("receipts.security.token.secret is not set; tokens are signed with a random key and stop working on restart");
+			}
+		} else {
+			keyBytes = Base64.getDecoder().decode(secret.trim());
+			if (keyBytes.length < 32) {
+				throw new IllegalArgumentException("receipts.security.token.secret must decode to at least 32 bytes");
+			}
+		}
+		this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+		this.scratch = ThreadLocal.withInitial(() -> new Scratch(key));
+	}
+
+	/**
+	 * isEnabled(): Whether bearer tokens are issued and accepted.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * getTtl(): How long an issued token is valid.
+	 */
+	public Duration getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * issue(): To sign a token for the user, valid for the TTL.
+	 * @param username letters, digits and . _ @ - only
+	 * @return the token, without the "Bearer " prefix
+	 * @throws IllegalArgumentException when the username has other characters
+	 */
+	public String issue(String username) {
+		for (int i = 0; i < username.length(); i++) {
+			char c = username.charAt(i);
+			if (c >= 128 || BASE64URL[c] < 0 && c != '.' && c != '@') {
+				throw new IllegalArgumentException("Username cannot be put in a token: " + username);
+			}
+		}
+		String payload = (clock.millis() / 1000 + ttl.getSeconds()) + "." + username;
+		Scratch s = scratch.get();
+		byte[] signature = s.mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+		return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+	}
+
+	/**
+	 * verify(): To check a "Bearer" Authorization header.
+	 * @param authorization the header value
+	 * @return the username, or null when the header is not a valid, unexpired token
+	 */
+	public String verify(String authorization) {
+		if (!enabled || authorization == null || authorization.length() > BEARER.length() + MAX_TOKEN_CHARS
+				|| !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+			return null;
+		}
+		int start = BEARER.length();
+		int lastDot = authorization.lastIndexOf('.');
+		int firstDot = authorization.indexOf('.', start);
+		if (firstDot <= start || lastDot <= firstDot + 1 || authorization.length() - lastDot - 1 != SIGNATURE_CHARS) {
+			return null;
+		}
+		long expiry = 0;
+		for (int i = start; i < firstDot; i++) {
+			int digit = authorization.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || i - start >= 18) {
+				return null;
+			}
+			expiry = expiry * 10 + digit;
+		}
+
+		Scratch s = scratch.get();
+		for (int from = start; from < lastDot; from += s.chars.length) {
+			int count = Math.min(s.chars.length, lastDot - from);
+			for (int i = 0; i < count; i++) {
+				char c = authorization.charAt(from + i);
+				if (c >= 128) {
+					s.mac.reset();
+					return null;
+				}
+				s.chars[i] = (byte) c;
+			}
+			s.mac.update(s.chars, 0, count);
+		}
+		try {
+			s.mac.doFinal(s.expected, 0);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+		boolean signed = decodeSignature(authorization, lastDot + 1, s.actual)
+				&& MessageDigest.isEqual(s.expected, s.actual);
+		if (!signed || expiry <= clock.millis() / 1000) {
+			return null;
+		}
+		return authorization.substring(firstDot + 1, lastDot);
+	}
+
+	// Decodes 43 base64url characters into 32 bytes; the 2 unused bits must be zero so each signature has one spelling.
+	private static boolean decodeSignature(String value, int from, byte[] out) {
+		int bits = 0;
+		int buffered = 0;
+		int pos = 0;
+		for (int i = from; i < from + SIGNATURE_CHARS; i++) {
+			char c = value.charAt(i);
+			int sextet = c < 128 ? BASE64URL[c] : -1;
+			if (sextet < 0) {
+				return false;
+			}
+			bits = bits << 6 | sextet;
+			buffered += 6;
+			if (buffered >= 8) {
+				buffered -= 8;
+				out[pos++] = (byte) (bits >> buffered);
+			}
+		}
+		return (bits & ((1 << buffered) - 1)) == 0;
+	}
+
+	/**
+	 * One Mac and set of buffers per thread.
+	 */
+	private static final class Scratch {
+
+		final Mac mac;
+		final byte[] chars = new byte[128];
+		final byte[] expected = new byte[32];
+		final byte[] actual = new byte[32];
+
+		Scratch(SecretKeySpec key) {
+			try {
+				mac = Mac.getInstance(ALGORITHM);
+				mac.init(key);
+			} catch (GeneralSecurityException e) {
+				// Every Java platform is required to provide HmacSHA256.
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+}
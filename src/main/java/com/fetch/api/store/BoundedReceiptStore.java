@@ -0,0 +1,271 @@
+package com.fetch.api.store;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fetch.model.Receipt;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * Store bounded by entry count or by an estimated byte budget, with an optional
+ * time-to-live after write. Eviction uses Caffeine's W-TinyLFU policy, so a burst
+ * of one-off receipts does not flush the ones that are still being polled.
+ *
+ * IDs of evicted receipts are remembered in a second bounded cache, which lets
+ * findPoints() answer EXPIRED instead of MISSING for them. An expired receipt reads as
+ * MISSING until Caffeine's maintenance, run on writes and as reads accumulate, has
+ * passed it to the eviction listener. With a StringDictionary,
+ * kept receipts hold dictionary codes for the retailer and descriptions.
+ */
+public class BoundedReceiptStore implements ReceiptStore {
+
+    // Rough heap cost of an entry without the encoded receipt: key, value and cache node.
+    static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final Cache<UUID, Entry> receipts;
+    // Time-to-live in nanoseconds, or 0 for none.
+    private final long expireAfterWriteNanos;
+    private final Cache<UUID, Boolean> evicted;
+    private final boolean keepReceipts;
+    private final StringDictionary dictionary;
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private volatile EvictionListener evictionListener;
+
+    /**
+     * @param maximumSize maximum number of receipts, or 0 when bounded by bytes
+     * @param maximumBytes estimated byte budget, or 0 when bounded by count
+     * @param expireAfterWrite time-to-live, or zero for none
+     * @param keepReceipts whether to keep an encoded copy of each receipt
+     * @param evictedIds how many evicted IDs to remember for EXPIRED answers
+     */
+    public BoundedReceiptStore(long maximumSize, long maximumBytes, Duration expireAfterWrite,
+            boolean keepReceipts, long evictedIds) {
+        this(maximumSize, maximumBytes, expireAfterWrite, keepReceipts, evictedIds, (StringDictionary) null);
+    }
+
+    /**
+     * Same as above, coding the retailer and descriptions of kept receipts with the dictionary when it is not null.
+     */
+    public BoundedReceiptStore(long maximumSize, long maximumBytes, Duration expireAfterWrite,
+            boolean keepReceipts, long evictedIds, StringDictionary dictionary) {
+        this(maximumSize, maximumBytes, expireAfterWrite, keepReceipts, evictedIds, dictionary, Ticker.systemTicker());
+    }
+
+    /**
+     * Same as above, reading time from the given ticker.
+     */
+    public BoundedReceiptStore(long maximumSize, long maximumBytes, Duration expireAfterWrite,
+            boolean keepReceipts, long evictedIds, Ticker ticker) {
+        this(maximumSize, maximumBytes, expireAfterWrite, keepReceipts, evictedIds, null, ticker);
+    }
+
+    /**
+     * Same as above, with a dictionary and a ticker.
+     */
+    public BoundedReceiptStore(long maximumSize, long maximumBytes, Duration expireAfterWrite,
+            boolean keepReceipts, long evictedIds, StringDictionary dictionary, Ticker ticker) {
+        if ((maximumSize > 0) == (maximumBytes > 0)) {
+            throw new IllegalArgumentException("Exactly one of maximumSize and maximumBytes must be set");
+        }
+        this.keepReceipts = keepReceipts;
+        this.dictionary = dictionary;
+        this.evicted = Caffeine.newBuilder()
+                .maximumSize(evictedIds)
+                .executor(Runnable::run)
+                .build();
+
+        Caffeine<UUID, Entry> builder = Caffeine.newBuilder()
+                .ticker(ticker)
+                .executor(Runnable::run)
+                .evictionListener((UUID key, Entry value, RemovalCause cause) -> onEviction(key, cause));
+        if (maximumSize > 0) {
+            builder.maximumSize(maximumSize);
+        } else {
+            builder.maximumWeight(maximumBytes).weigher((UUID key, Entry value) -> value.weight());
+        }
+        this.expireAfterWriteNanos = expireAfterWrite.toNanos();
+        if (expireAfterWriteNanos > 0) {
+            // Expiry after write, set per entry so restore() can give a receipt what is left of its time.
+            builder.expireAfter(new Expiry<UUID, Entry>() {
+                @Override
+                public long expireAfterCreate(UUID key, Entry value, long currentTime) {
+                    return expireAfterWriteNanos;
+                }
+
+                @Override
+                public long expireAfterUpdate(UUID key, Entry value, long currentTime, long currentDuration) {
+                    return expireAfterWriteNanos;
+                }
+
+                @Override
+                public long expireAfterRead(UUID key, Entry value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            });
+        }
+        this.receipts = builder.build();
+    }
+
+    @Override
+    public void put(String id, Receipt receipt, long points) {
+        if (!ReceiptIds.isUuid(id)) {
+            throw new IllegalArgumentException("Receipt ID is not a UUID: " + id);
+        }
+        UUID key = new UUID(ReceiptIds.mostSignificantBits(id), ReceiptIds.leastSignificantBits(id));
+        receipts.put(key, new Entry(points, keepReceipts ? ReceiptCodec.encode(receipt, dictionary) : null));
+    }
+
+    @Override
+    public void putEncoded(long msb, long lsb, long points, byte[] encoded) {
+        receipts.put(new UUID(msb, lsb), entry(points, encoded));
+    }
+
+    /**
+     * restore(): To put back a journaled receipt for what is left of its time-to-live, or skip
+     * it when none is left.
+     */
+    @Override
+    public boolean restore(long msb, long lsb, long points, byte[] encoded, long writtenMillis) {
+        if (expireAfterWriteNanos == 0) {
+            putEncoded(msb, lsb, points, encoded);
+            return true;
+        }
+        long age = TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - writtenMillis));
+        if (age >= expireAfterWriteNanos) {
+            return false;
+        }
+        receipts.policy().expireVariably().orElseThrow()
+                .put(new UUID(msb, lsb), entry(points, encoded), expireAfterWriteNanos - age, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    @Override
+    public long findPoints(String id) {
+        if (!ReceiptIds.isUuid(id)) {
+            return MISSING;
+        }
+        UUID key = new UUID(ReceiptIds.mostSignificantBits(id), ReceiptIds.leastSignificantBits(id));
+        Entry entry = receipts.getIfPresent(key);
+        if (entry != null) {
+            return entry.points;
+        }
+        return evicted.getIfPresent(key) == null ? MISSING : EXPIRED;
+    }
+
+    // Reads the map view, which sees expired entries as absent without recording an access.
+    @Override
+    public boolean contains(long msb, long lsb) {
+        return receipts.asMap().containsKey(new UUID(msb, lsb));
+    }
+
+    @Override
+    public Receipt findReceipt(String id) {
+        if (!keepReceipts || !ReceiptIds.isUuid(id)) {
+            return null;
+        }
+        Entry entry = receipts.getIfPresent(new UUID(ReceiptIds.mostSignificantBits(id), ReceiptIds.leastSignificantBits(id)));
+        return entry == null ? null : ReceiptCodec.decode(entry.encoded, dictionary);
+    }
+
+    @Override
+    public void forEachReceipt(ReceiptVisitor visitor) {
+        if (!keepReceipts) {
+            throw new UnsupportedOperationException("The store keeps points only");
+        }
+        receipts.asMap().entrySet().parallelStream()
+                .filter(entry -> entry.getValue().encoded != null)
+                .forEach(entry -> visitor.visit(
+                        ReceiptIds.toString(entry.getKey().getMostSignificantBits(), entry.getKey().getLeastSignificantBits()),
+                        ReceiptCodec.decode(entry.getValue().encoded, dictionary)));
+    }
+
+    @Override
+    public long size() {
+        return receipts.estimatedSize();
+    }
+
+    /**
+     * getSizeEvictionCount(): Receipts evicted to stay within the size or byte bound.
+     * @return
+     */
+    @Override
+    public long getSizeEvictionCount() {
+        return sizeEvictions.sum();
+    }
+
+    /**
+     * getExpirationCount(): Receipts removed because their time-to-live passed.
+     * @return
+     */
+    @Override
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * getEstimatedBytes(): Estimated bytes held, as counted against the byte budget.
+     * @return
+     */
+    @Override
+    public long getEstimatedBytes() {
+        return receipts.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(size() * ENTRY_OVERHEAD_BYTES))
+                .orElse(size() * ENTRY_OVERHEAD_BYTES);
+    }
+
+    /**
+     * cleanUp(): To run pending evictions and expirations now.
+     */
+    public void cleanUp() {
+        receipts.cleanUp();
+    }
+
+    private Entry entry(long points, byte[] encoded) {
+        if (!keepReceipts) {
+            encoded = null;
+        } else if (encoded != null && dictionary != null) {
+            encoded = ReceiptCodec.intern(encoded, dictionary);
+        }
+        return new Entry(points, encoded);
+    }
+
+    private void onEviction(UUID key, RemovalCause cause) {
+        if (cause == RemovalCause.EXPIRED) {
+            expirations.increment();
+        } else {
+            sizeEvictions.increment();
+        }
+        evicted.put(key, Boolean.TRUE);
+        EvictionListener listener = evictionListener;
+        if (listener != null) {
+            listener.evicted(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        }
+    }
+
+    private static final class Entry {
+
+        final long points;
+        final byte[] encoded;
+
+        Entry(long points, byte[] encoded) {
+            this.points = points;
+            this.encoded = encoded;
+        }
+
+        int weight() {
+            return ENTRY_OVERHEAD_BYTES + (encoded == null ? 0 : encoded.length);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.fetch.api.store;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+import com.fetch.model.Receipt;
+
+/**
+ * Store keyed by the two longs of the receipt UUID, using open addressing over
+ * primitive arrays. Only the points are kept, plus an optional encoded copy of
+ * the receipt from ReceiptCodec, so an entry costs a few dozen bytes instead of
+ * the full String key and Receipt/Item object graph. With a StringDictionary,
+ * the encoded copy holds dictionary codes for the retailer and descriptions.
+ *
+ * The table is split into segments; writes take the segment's write lock and
+ * reads are optimistic, falling back to the read lock only when they race a write.
+ */
+public class CompactReceiptStore implements ReceiptStore {
+
+    private static final int SEGMENT_SHIFT = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_SHIFT;
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final boolean keepReceipts;
+    private final StringDictionary dictionary;
+
+    /**
+     * @param keepReceipts whether to keep an encoded copy of each receipt for findReceipt()
+     */
+    public CompactReceiptStore(boolean keepReceipts) {
+        this(keepReceipts, null);
+    }
+
+    /**
+     * @param keepReceipts whether to keep an encoded copy of each receipt for findReceipt()
+     * @param dictionary dictionary for the retailer and descriptions of kept receipts, or null to keep them inline
+     */
+    public CompactReceiptStore(boolean keepReceipts, StringDictionary dictionary) {
+        this.keepReceipts = keepReceipts;
+        this.dictionary = dictionary;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(INITIAL_SEGMENT_CAPACITY, keepReceipts);
+        }
+    }
+
+    @Override
+    public void put(String id, Receipt receipt, long points) {
+        if (!ReceiptIds.isUuid(id)) {
+            throw new IllegalArgumentException("Receipt ID is not a UUID: " + id);
+        }
+        putEncoded(ReceiptIds.mostSignificantBits(id), ReceiptIds.leastSignificantBits(id), points,
+                keepReceipts ? ReceiptCodec.encode(receipt, dictionary) : null);
+    }
+
+    @Override
+    public void putEncoded(long msb, long lsb, long points, byte[] encoded) {
+        if (msb == 0 && lsb == 0) {
+            throw new IllegalArgumentException("The nil UUID cannot be stored");
+        }
+        if (encoded != null && dictionary != null) {
+            encoded = ReceiptCodec.intern(encoded, dictionary);
+        }
+        long hash = hash(msb, lsb);
+        segmentFor(hash).put(msb, lsb, (int) hash, points, encoded);
+    }
+
+    /**
+     * putPoints(): To store points without a receipt under the primitive key, as for overlays of points.
+     * @param msb
+     * @param lsb
+     * @param points
+     * @return true when nothing was stored under the key before
+     */
+    public boolean putPoints(long msb, long lsb, long points) {
+        if (msb == 0 && lsb == 0) {
+            throw new IllegalArgumentException("The nil UUID cannot be stored");
+        }
+        long hash = hash(msb, lsb);
+        return segmentFor(hash).put(msb, lsb, (int) hash, points, null);
+    }
+
+    /**
+     * removePoints(): To remove whatever is stored under the primitive key.
+     * @param msb
+     * @param lsb
+     * @return true when something was stored under the key
+     */
+    public boolean removePoints(long msb, long lsb) {
+        long hash = hash(msb, lsb);
+        return segmentFor(hash).remove(msb, lsb, (int) hash);
+    }
+
+    @Override
+    public long findPoints(String id) {
+        if (!ReceiptIds.isUuid(id)) {
+            return MISSING;
+        }
+        return findPoints(ReceiptIds.mostSignificantBits(id), ReceiptIds.leastSignificantBits(id));
+    }
+
+    /**
+     * findPoints(): To find the points stored under the primitive key.
+     * @param msb
+     * @param lsb
+     * @return points, or MISSING
+     */
+    public long findPoints(long msb, long lsb) {
+        long hash = hash(msb, lsb);
+        return segmentFor(hash).findPoints(msb, lsb, (int) hash);
+    }
+
+    @Override
+    public boolean contains(long msb, long lsb) {
+        return findPoints(msb, lsb) != MISSING;
+    }
+
+    @Override
+    public Receipt findReceipt(String id) {
+        if (!keepReceipts || !ReceiptIds.isUuid(id)) {
+            return null;
+        }
+        long msb = ReceiptIds.mostSignificantBits(id);
+        long lsb = ReceiptIds.leastSignificantBits(id);
+        long hash = hash(msb, lsb);
+        byte[] encoded = segmentFor(hash).findEncoded(msb, lsb, (int) hash);
+        return encoded == null ? null : ReceiptCodec.decode(encoded, dictionary);
+    }
+
+    @Override
+    public void forEachReceipt(ReceiptVisitor visitor) {
+        if (!keepReceipts) {
+            throw new UnsupportedOperationException("The store keeps points only");
+        }
+        Arrays.stream(segments).parallel().forEach(segment -> segment.forEach(visitor, dictionary));
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * getEstimatedBytes(): The segments' arrays at their current capacity, plus the encoded receipts.
+     * @return
+     */
+    @Override
+    public long getEstimatedBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_SHIFT))];
+    }
+
+    // Murmur3 finaliser, so time-ordered IDs spread as well as random ones.
+    private static long hash(long msb, long lsb) {
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Arrays of one segment, replaced as a whole when the segment grows.
+     * keys holds msb/lsb pairs; an all-zero pair marks an empty slot.
+     */
+    private static final class Table {
+
+        final long[] keys;
+        final long[] points;
+        final byte[][] receipts;
+
+        Table(int capacity, boolean keepReceipts) {
+            keys = new long[capacity * 2];
+            points = new long[capacity];
+            receipts = keepReceipts ? new byte[capacity][] : null;
+        }
+
+        // Slot holding the key, or the empty slot where it would be inserted.
+        int slot(long msb, long lsb, int hash) {
+            int mask = points.length - 1;
+            int slot = hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long k0 = keys[slot * 2];
+                long k1 = keys[slot * 2 + 1];
+                if ((k0 == msb && k1 == lsb) || (k0 == 0 && k1 == 0)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        boolean holds(int slot, long msb, long lsb) {
+            return slot >= 0 && keys[slot * 2] == msb && keys[slot * 2 + 1] == lsb;
+        }
+    }
+
+    private static final class Segment {
+
+        private final StampedLock lock = new StampedLock();
+        private final boolean keepReceipts;
+        private Table table;
+        private int size;
+        private long encodedBytes;
+
+        Segment(int capacity, boolean keepReceipts) {
+            this.keepReceipts = keepReceipts;
+            this.table = new Table(capacity, keepReceipts);
+        }
+
+        // True when the key was not stored before.
+        boolean put(long msb, long lsb, int hash, long points, byte[] encoded) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = table.slot(msb, lsb, hash);
+                boolean added = !table.holds(slot, msb, lsb);
+                if (added) {
+                    if ((size + 1) * 4L > table.points.length * 3L) {
+                        resize();
+                        slot = table.slot(msb, lsb, hash);
+                    }
+                    table.keys[slot * 2] = msb;
+                    table.keys[slot * 2 + 1] = lsb;
+                    size++;
+                }
+                table.points[slot] = points;
+                if (keepReceipts) {
+                    encodedBytes += encodedBytes(encoded) - encodedBytes(table.receipts[slot]);
+                    table.receipts[slot] = encoded;
+                }
+                return added;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        // True when the key was stored. Later keys of the probe run are shifted back into the hole,
+        // so lookups never need tombstones.
+        boolean remove(long msb, long lsb, int hash) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int slot = t.slot(msb, lsb, hash);
+                if (!t.holds(slot, msb, lsb)) {
+                    return false;
+                }
+                if (keepReceipts) {
+                    encodedBytes -= encodedBytes(t.receipts[slot]);
+                }
+                int mask = t.points.length - 1;
+                int hole = slot;
+                for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+                    long k0 = t.keys[next * 2];
+                    long k1 = t.keys[next * 2 + 1];
+                    if (k0 == 0 && k1 == 0) {
+                        break;
+                    }
+                    int home = (int) hash(k0, k1) & mask;
+                    // The key may fill the hole unless its home slot lies after the hole.
+                    if (((next - home) & mask) >= ((next - hole) & mask)) {
+                        t.keys[hole * 2] = k0;
+                        t.keys[hole * 2 + 1] = k1;
+                        t.points[hole] = t.points[next];
+                        if (keepReceipts) {
+                            t.receipts[hole] = t.receipts[next];
+                        }
+                        hole = next;
+                    }
+                }
+                t.keys[hole * 2] = 0;
+                t.keys[hole * 2 + 1] = 0;
+                t.points[hole] = 0;
+                if (keepReceipts) {
+                    t.receipts[hole] = null;
+                }
+                size--;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        long findPoints(long msb, long lsb, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            Table t = table;
+            int slot = t.slot(msb, lsb, hash);
+            long points = t.holds(slot, msb, lsb) ? t.points[slot] : MISSING;
+            if (lock.validate(stamp)) {
+                return points;
+            }
+            stamp = lock.readLock();
+            try {
+                t = table;
+                slot = t.slot(msb, lsb, hash);
+                return t.holds(slot, msb, lsb) ? t.points[slot] : MISSING;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        byte[] findEncoded(long msb, long lsb, int hash) {
+            long stamp = lock.readLock();
+            try {
+                int slot = table.slot(msb, lsb, hash);
+                return table.holds(slot, msb, lsb) ? table.receipts[slot] : null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // Copies the slots under the read lock, then decodes and visits without holding it.
+        void forEach(ReceiptVisitor visitor, StringDictionary dictionary) {
+            long[] keys;
+            byte[][] receipts;
+            long stamp = lock.readLock();
+            try {
+                keys = table.keys.clone();
+                receipts = table.receipts.clone();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            for (int i = 0; i < receipts.length; i++) {
+                if (receipts[i] != null) {
+                    visitor.visit(ReceiptIds.toString(keys[i * 2], keys[i * 2 + 1]), ReceiptCodec.decode(receipts[i], dictionary));
+                }
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // Array headers are left out; a kept receipt's reference is counted as four bytes.
+        long estimatedBytes() {
+            long stamp = lock.readLock();
+            try {
+                long capacity = table.points.length;
+                return capacity * (Long.BYTES * 3 + (keepReceipts ? 4 : 0)) + encodedBytes;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private static long encodedBytes(byte[] encoded) {
+            return encoded == null ? 0 : 16 + encoded.length;
+        }
+
+        private void resize() {
+            Table old = table;
+            Table grown = new Table(old.points.length * 2, keepReceipts);
+            for (int i = 0; i < old.points.length; i++) {
+                long msb = old.keys[i * 2];
+                long lsb = old.keys[i * 2 + 1];
+                if (msb == 0 && lsb == 0) {
+                    continue;
+                }
+                int slot = grown.slot(msb, lsb, (int) hash(msb, lsb));
+                grown.keys[slot * 2] = msb;
+                grown.keys[slot * 2 + 1] = lsb;
+                grown.points[slot] = old.points[i];
+                if (keepReceipts) {
+                    grown.receipts[slot] = old.receipts[i];
+                }
+            }
+            table = grown;
+        }
+    }
+}
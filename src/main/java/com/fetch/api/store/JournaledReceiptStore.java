@@ -0,0 +1,179 @@
+package com.fetch.api.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fetch.model.Receipt;
+
+/**
+ * Store that appends every receipt to a ReceiptJournal as it hands it to the
+ * in-memory store, so an ID is only returned once its receipt is on disk.
+ *
+ * Records carry the time the receipt was saved, and recover() restores them with it,
+ * so a store with a time-to-live skips receipts that expired while the service was
+ * down and keeps the others only for the rest of their lifetime. Whenever the journal
+ * seals a segment after the store has evicted or expired receipts, and once after
+ * recovery, the journal is compacted in the background against the store's contents.
+ * Receipts evicted for size in a segment that is still mostly live are replayed, and
+ * evicted again, until compaction drops them.
+ */
+public class JournaledReceiptStore implements ReceiptStore, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(JournaledReceiptStore.class);
+
+    private final ReceiptStore delegate;
+    private final ReceiptJournal journal;
+
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "receipt-journal-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    // Journal rollovers and store evictions the last compaction started from.
+    private volatile long compactedRollovers;
+    private volatile long compactedEvictions;
+
+    public JournaledReceiptStore(ReceiptStore delegate, ReceiptJournal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    /**
+     * recover(): To rebuild the in-memory store from the journal, then compact the journal in the
+     * background when it holds receipts the store did not take back.
+     * @return number of receipts restored
+     */
+    public long recover() throws IOException {
+        LongAdder restored = new LongAdder();
+        long records = journal.replay((msb, lsb, points, writtenMillis, encoded) -> {
+            if (delegate.restore(msb, lsb, points, encoded, writtenMillis)) {
+                restored.increment();
+            }
+        });
+        if (restored.sum() < records || evictions() > 0) {
+            startCompaction(journal.getRolloverCount(), evictions());
+        }
+        return restored.sum();
+    }
+
+    @Override
+    public void put(String id, Receipt receipt, long points) {
+        if (!ReceiptIds.isUuid(id)) {
+            throw new IllegalArgumentException("Receipt ID is not a UUID: " + id);
+        }
+        byte[] encoded = receipt == null ? null : ReceiptCodec.encode(receipt);
+        putEncoded(ReceiptIds.mostSignificantBits(id), ReceiptIds.leastSignificantBits(id), points, encoded);
+    }
+
+    // Stored before it is journaled, so compaction never finds a sealed record whose receipt is
+    // still on its way into the store. The ID is only returned once the append has returned.
+    @Override
+    public void putEncoded(long msb, long lsb, long points, byte[] encoded) {
+        delegate.putEncoded(msb, lsb, points, encoded);
+        journal.append(msb, lsb, points, System.currentTimeMillis(), encoded);
+        compactIfDue();
+    }
+
+    @Override
+    public long findPoints(String id) {
+        return delegate.findPoints(id);
+    }
+
+    @Override
+    public boolean contains(long msb, long lsb) {
+        return delegate.contains(msb, lsb);
+    }
+
+    @Override
+    public Receipt findReceipt(String id) {
+        return delegate.findReceipt(id);
+    }
+
+    @Override
+    public void forEachReceipt(ReceiptVisitor visitor) {
+        delegate.forEachReceipt(visitor);
+    }
+
+    @Override
+    public long size() {
+        return delegate.size();
+    }
+
+    @Override
+    public long getEstimatedBytes() {
+        return delegate.getEstimatedBytes();
+    }
+
+    @Override
+    public long getSizeEvictionCount() {
+        return delegate.getSizeEvictionCount();
+    }
+
+    @Override
+    public long getExpirationCount() {
+        return delegate.getExpirationCount();
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener listener) {
+        delegate.setEvictionListener(listener);
+    }
+
+    // Lets a running compaction finish before the journal closes.
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+    }
+
+    // A sealed segment can only have records to drop once the store has evicted some receipts.
+    private void compactIfDue() {
+        long rollovers = journal.getRolloverCount();
+        if (rollovers == compactedRollovers) {
+            return;
+        }
+        long evictions = evictions();
+        if (evictions == compactedEvictions) {
+            compactedRollovers = rollovers;
+            return;
+        }
+        startCompaction(rollovers, evictions);
+    }
+
+    private void startCompaction(long rollovers, long evictions) {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        compactedRollovers = rollovers;
+        compactedEvictions = evictions;
+        compactor.execute(() -> {
+            try {
+                long dropped = journal.compact(delegate::contains);
+                log.info("Compacted the receipt journal, dropping {} records", dropped);
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Receipt journal compaction failed", e);
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+
+    private long evictions() {
+        return delegate.getSizeEvictionCount() + delegate.getExpirationCount();
+    }
+}
@@ -0,0 +1,98 @@
+package com.fetch.api.store;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fetch.api.model.ScoredReceipt;
+import com.fetch.model.Item;
+import com.fetch.model.Receipt;
+
+/**
+ * Reference store keeping every receipt object graph in a ConcurrentHashMap.
+ * With a StringDictionary, the retailer and descriptions of stored receipts are
+ * replaced by the dictionary's shared copies, so repeated values are kept once.
+ */
+public class MapReceiptStore implements ReceiptStore {
+
+    // Rough heap cost of an entry: map node, ID string, ScoredReceipt and Receipt, and of each Item.
+    static final int ENTRY_BYTES = 320;
+    static final int ITEM_BYTES = 120;
+
+    private final ConcurrentHashMap<String, ScoredReceipt> receipts = new ConcurrentHashMap<>();
+    private final StringDictionary dictionary;
+    private final LongAdder estimatedBytes = new LongAdder();
+
+    public MapReceiptStore() {
+        this(null);
+    }
+
+    /**
+     * @param dictionary dictionary to share the retailer and descriptions through, or null
+     */
+    public MapReceiptStore(StringDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public void put(String id, Receipt receipt, long points) {
+        if (receipt != null && dictionary != null) {
+            receipt.setRetailer(dictionary.intern(receipt.getRetailer()));
+            if (receipt.getItems() != null) {
+                for (Item item : receipt.getItems()) {
+                    item.setShortDescription(dictionary.intern(item.getShortDescription()));
+                }
+            }
+        }
+        ScoredReceipt previous = receipts.put(id, new ScoredReceipt(receipt, points));
+        estimatedBytes.add(estimateBytes(receipt) - (previous == null ? 0 : estimateBytes(previous.getReceipt())));
+    }
+
+    @Override
+    public long findPoints(String id) {
+        ScoredReceipt scored = receipts.get(id);
+        return scored == null ? MISSING : scored.getPoints();
+    }
+
+    @Override
+    public Receipt findReceipt(String id) {
+        ScoredReceipt scored = receipts.get(id);
+        return scored == null ? null : scored.getReceipt();
+    }
+
+    @Override
+    public void forEachReceipt(ReceiptVisitor visitor) {
+        receipts.forEach(1, (id, scored) -> {
+            if (scored.getReceipt() != null) {
+                visitor.visit(id, scored.getReceipt());
+            }
+        });
+    }
+
+    @Override
+    public long size() {
+        return receipts.size();
+    }
+
+    @Override
+    public long getEstimatedBytes() {
+        return estimatedBytes.sum();
+    }
+
+    // Strings are counted at two bytes a character, whether or not the dictionary shares them.
+    private static long estimateBytes(Receipt receipt) {
+        if (receipt == null) {
+            return ENTRY_BYTES;
+        }
+        long bytes = ENTRY_BYTES + 2L * length(receipt.getRetailer());
+        if (receipt.getItems() != null) {
+            for (Item item : receipt.getItems()) {
+                bytes += ITEM_BYTES + 2L * length(item.getShortDescription());
+            }
+        }
+        return bytes;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+}
@@ -0,0 +1,326 @@
+package com.fetch.api.store;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fetch.api.model.Money;
+import com.fetch.api.model.ParsedReceipt;
+import com.fetch.model.Item;
+import com.fetch.model.Receipt;
+
+/**
+ * Compact binary encoding of a receipt: UTF-8 strings and varint numbers,
+ * with the purchase date as an epoch day and amounts as cents.
+ * Amounts are decoded with two decimals, so "2.2" comes back as "2.20".
+ *
+ * Version 1 is self-contained and is what the journal writes. Version 2 replaces
+ * the retailer and item descriptions with StringDictionary codes, for stores that
+ * keep receipts in memory; it can only be decoded with the same dictionary.
+ */
+public final class ReceiptCodec {
+
+    private static final byte VERSION = 1;
+    private static final byte DICTIONARY_VERSION = 2;
+
+    private ReceiptCodec() {
+    }
+
+    /**
+     * encode(): To encode the receipt into a byte array.
+     * @param receipt
+     * @return
+     */
+    public static byte[] encode(Receipt receipt) {
+        return encode(receipt, null);
+    }
+
+    /**
+     * encode(): To encode the receipt with its retailer and descriptions as dictionary codes.
+     * @param receipt
+     * @param dictionary the dictionary to code strings with, or null for the self-contained version
+     * @return
+     */
+    public static byte[] encode(Receipt receipt, StringDictionary dictionary) {
+        Writer out = new Writer(dictionary);
+        out.buf[out.pos++] = dictionary == null ? VERSION : DICTIONARY_VERSION;
+        out.text(receipt.getRetailer());
+        LocalDate date = receipt.getPurchaseDate();
+        out.varint(date == null ? 0 : zigzag(date.toEpochDay()) + 1);
+        out.string(receipt.getPurchaseTime());
+        out.amount(receipt.getTotal());
+        List<Item> items = receipt.getItems();
+        if (items == null) {
+            out.varint(0);
+        } else {
+            out.varint(items.size() + 1L);
+            for (Item item : items) {
+                out.text(item.getShortDescription());
+                out.amount(item.getPrice());
+            }
+        }
+        return Arrays.copyOf(out.buf, out.pos);
+    }
+
+    /**
+     * encode(): To encode a streamed receipt into the same format, writing the time as HH:MM.
+     * @param receipt
+     * @return
+     */
+    public static byte[] encode(ParsedReceipt receipt) {
+        Writer out = new Writer(null);
+        out.buf[out.pos++] = VERSION;
+        out.string(receipt.getRetailer());
+        LocalDate date = receipt.getPurchaseDate();
+        out.varint(date == null ? 0 : zigzag(date.toEpochDay()) + 1);
+        out.time(receipt.getPurchaseMinutes());
+        out.cents(receipt.getTotalCents());
+        out.varint(receipt.getItemCount() + 1L);
+        for (int i = 0; i < receipt.getItemCount(); i++) {
+            out.string(receipt.getDescription(i));
+            out.cents(receipt.getPriceCents(i));
+        }
+        return Arrays.copyOf(out.buf, out.pos);
+    }
+
+    /**
+     * intern(): To re-encode a self-contained receipt with dictionary codes, without building the model.
+     * @param bytes an encoding of either version
+     * @param dictionary
+     * @return
+     */
+    public static byte[] intern(byte[] bytes, StringDictionary dictionary) {
+        if (bytes[0] == DICTIONARY_VERSION) {
+            return bytes;
+        }
+        Reader in = new Reader(bytes, null);
+        in.version();
+        Writer out = new Writer(dictionary);
+        out.buf[out.pos++] = DICTIONARY_VERSION;
+        out.text(in.string());
+        out.varint(in.varint());
+        out.string(in.string());
+        out.amount(in);
+        long count = in.varint();
+        out.varint(count);
+        for (long i = 1; i < count; i++) {
+            out.text(in.string());
+            out.amount(in);
+        }
+        return Arrays.copyOf(out.buf, out.pos);
+    }
+
+    /**
+     * decode(): To rebuild the receipt from its encoded bytes.
+     * @param bytes
+     * @return
+     */
+    public static Receipt decode(byte[] bytes) {
+        return decode(bytes, null);
+    }
+
+    /**
+     * decode(): To rebuild the receipt from either version, resolving codes with the dictionary.
+     * @param bytes
+     * @param dictionary the dictionary the receipt was encoded with, or null for version 1 only
+     * @return
+     */
+    public static Receipt decode(byte[] bytes, StringDictionary dictionary) {
+        Reader in = new Reader(bytes, dictionary);
+        in.version();
+        Receipt receipt = new Receipt();
+        receipt.setRetailer(in.text());
+        long date = in.varint();
+        receipt.setPurchaseDate(date == 0 ? null : LocalDate.ofEpochDay(unzigzag(date - 1)));
+        receipt.setPurchaseTime(in.string());
+        receipt.setTotal(in.amount());
+        long count = in.varint();
+        if (count == 0) {
+            receipt.setItems(null);
+        } else {
+            List<Item> items = new ArrayList<>((int) count - 1);
+            for (long i = 1; i < count; i++) {
+                Item item = new Item();
+                item.setShortDescription(in.text());
+                item.setPrice(in.amount());
+                items.add(item);
+            }
+            receipt.setItems(items);
+        }
+        return receipt;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Writer {
+
+        final StringDictionary dictionary;
+        byte[] buf = new byte[128];
+        int pos;
+
+        Writer(StringDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+
+        void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        // 0 = null, otherwise byte length + 1 followed by UTF-8 bytes.
+        void string(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1L);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        // A dictionary string: as string() in version 1; in version 2, 0 = null,
+        // 1 = no code, followed by string(), otherwise code + 2.
+        void text(String value) {
+            if (dictionary == null) {
+                string(value);
+                return;
+            }
+            int code = dictionary.code(value);
+            if (code == StringDictionary.NO_CODE) {
+                varint(value == null ? 0 : 1);
+                if (value != null) {
+                    string(value);
+                }
+            } else {
+                varint(code + 2L);
+            }
+        }
+
+        // Copies an amount as written by amount(String).
+        void amount(Reader in) {
+            long value = in.varint();
+            varint(value);
+            if (value == 1) {
+                string(in.string());
+            }
+        }
+
+        // 0 = null, 1 = unparseable amount kept as a string, otherwise cents + 2.
+        void amount(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            long cents = Money.parseCents(value);
+            if (cents == Money.INVALID) {
+                varint(1);
+                string(value);
+            } else {
+                varint(cents + 2);
+            }
+        }
+
+        // Minutes after midnight as a 5 byte "HH:MM" string, or null when invalid.
+        void time(int minutes) {
+            if (minutes == ParsedReceipt.INVALID_TIME) {
+                varint(0);
+                return;
+            }
+            varint(6);
+            ensure(5);
+            int hours = minutes / 60;
+            minutes %= 60;
+            buf[pos++] = (byte) ('0' + hours / 10);
+            buf[pos++] = (byte) ('0' + hours % 10);
+            buf[pos++] = ':';
+            buf[pos++] = (byte) ('0' + minutes / 10);
+            buf[pos++] = (byte) ('0' + minutes % 10);
+        }
+
+        void cents(long cents) {
+            varint(cents == Money.INVALID ? 0 : cents + 2);
+        }
+    }
+
+    private static final class Reader {
+
+        final byte[] buf;
+        final StringDictionary dictionary;
+        int pos;
+        boolean coded;
+
+        Reader(byte[] buf, StringDictionary dictionary) {
+            this.buf = buf;
+            this.dictionary = dictionary;
+        }
+
+        void version() {
+            byte version = buf[pos++];
+            coded = version == DICTIONARY_VERSION && dictionary != null;
+            if (version != VERSION && !coded) {
+                throw new IllegalArgumentException("Unknown receipt encoding version " + version);
+            }
+        }
+
+        long varint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        String string() {
+            int length = (int) varint();
+            if (length == 0) {
+                return null;
+            }
+            String value = new String(buf, pos, length - 1, StandardCharsets.UTF_8);
+            pos += length - 1;
+            return value;
+        }
+
+        String text() {
+            if (!coded) {
+                return string();
+            }
+            long value = varint();
+            if (value == 0) {
+                return null;
+            }
+            return value == 1 ? string() : dictionary.string((int) (value - 2));
+        }
+
+        String amount() {
+            long value = varint();
+            if (value == 0) {
+                return null;
+            }
+            return value == 1 ? string() : Money.format(value - 2);
+        }
+    }
+}
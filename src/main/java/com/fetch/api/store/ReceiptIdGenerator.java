@@ -0,0 +1,24 @@
+package com.fetch.api.store;
+
+import java.util.UUID;
+
+/**
+ * Source of receipt IDs. Every generator produces canonical UUIDs, so IDs match the
+ * api.yml pattern and ReceiptIds can parse them back into the two longs the stores key on.
+ */
+public interface ReceiptIdGenerator {
+
+    /**
+     * next(): To generate a new, unique receipt ID. Safe to call from any thread.
+     * @return
+     */
+    UUID next();
+
+    /**
+     * random(): Version 4 IDs from UUID.randomUUID(), drawn from one shared SecureRandom.
+     * @return
+     */
+    static ReceiptIdGenerator random() {
+        return UUID::randomUUID;
+    }
+}
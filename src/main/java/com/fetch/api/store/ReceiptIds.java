@@ -0,0 +1,104 @@
+package com.fetch.api.store;
+
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Conversions between canonical UUID strings and their two long halves,
+ * without the exceptions UUID.fromString() throws for malformed input.
+ * Canonical IDs are lower case, as UUID.toString() writes them, so every store
+ * keys a receipt under one spelling; IDs from requests go through canonical() first.
+ */
+public final class ReceiptIds {
+
+    private static final int UUID_LENGTH = 36;
+
+    private ReceiptIds() {
+    }
+
+    /**
+     * canonical(): The ID with upper-case letters lowered, as clients may send a UUID in either case.
+     * @param id
+     * @return the same string when it has no upper-case letters
+     */
+    public static String canonical(String id) {
+        if (id == null) {
+            return null;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                return id.toLowerCase(Locale.ROOT);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * isUuid(): To check whether the ID is a canonical 8-4-4-4-12 lower-case hex UUID.
+     * @param id
+     * @return
+     */
+    public static boolean isUuid(String id) {
+        if (id == null || id.length() != UUID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (hex(c) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * mostSignificantBits(): The first 64 bits of a canonical UUID string.
+     * @param id
+     * @return
+     */
+    public static long mostSignificantBits(String id) {
+        return parseHex(id, 0, 8) << 32 | parseHex(id, 9, 13) << 16 | parseHex(id, 14, 18);
+    }
+
+    /**
+     * leastSignificantBits(): The last 64 bits of a canonical UUID string.
+     * @param id
+     * @return
+     */
+    public static long leastSignificantBits(String id) {
+        return parseHex(id, 19, 23) << 48 | parseHex(id, 24, 36);
+    }
+
+    /**
+     * toString(): To format the two halves back into the canonical string.
+     * @param msb
+     * @param lsb
+     * @return
+     */
+    public static String toString(long msb, long lsb) {
+        return new UUID(msb, lsb).toString();
+    }
+
+    private static long parseHex(String id, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value << 4 | hex(id.charAt(i));
+        }
+        return value;
+    }
+
+    private static int hex(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+}
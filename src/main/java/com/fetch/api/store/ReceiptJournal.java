@@ -0,0 +1,447 @@
+package com.fetch.api.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of scored receipts, split into numbered segment files.
+ *
+ * Each record is [int length][int crc32c][long msb][long lsb][long points][long written millis]
+ * [encoded receipt], where length and the checksum cover everything after the checksum, and
+ * written millis is the Unix time the receipt was saved at, so replay can tell how old it is.
+ *
+ * Appends use group commit: the first writer to find no flush in progress takes
+ * every record queued so far, writes them with one FileChannel write and one
+ * force(), and wakes the writers whose records it covered. Concurrent POSTs
+ * therefore share the cost of an fsync. Once a segment reaches segmentBytes the
+ * next batch starts a new one, and the full segment is sealed.
+ *
+ * replay() must run before the first append. It replays the segments in parallel,
+ * truncating a torn record at the end of the last one. Segments are read through
+ * read-only mappings of at most windowBytes, so a segment may be larger than the
+ * 2 GB a single mapping can hold.
+ *
+ * compact() drops the records of receipts that are no longer live from sealed
+ * segments, so the journal stays proportional to the receipts still stored.
+ */
+public class ReceiptJournal implements Closeable {
+
+    static final int HEADER_BYTES = 8;
+    static final int FIXED_BODY_BYTES = 32;
+
+    // Bytes mapped at a time when reading a segment, unless one record is larger.
+    static final int WINDOW_BYTES = 256 << 20;
+
+    private static final String SEGMENT_PREFIX = "receipts-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    // A segment being rewritten by compact(); renamed over the segment once complete.
+    private static final String COMPACTING_SUFFIX = ".compacting";
+
+    /**
+     * Receives replayed records; called from several threads at once.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long msb, long lsb, long points, long writtenMillis, byte[] encoded);
+    }
+
+    /**
+     * Tells compact() which receipts are still live.
+     */
+    @FunctionalInterface
+    public interface RecordFilter {
+        boolean isLive(long msb, long lsb);
+    }
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final int windowBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long appendedSeq;
+    private long durableSeq;
+    private boolean flushing;
+    private IOException failure;
+
+    // Only touched by the thread that holds the flushing flag.
+    private long nextSegment;
+    private FileChannel channel;
+
+    // Segments numbered below this one are sealed: appends only go to it or later ones.
+    private volatile long sealedBelow;
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder rollovers = new LongAdder();
+
+    /**
+     * @param directory directory holding the segment files; created when missing
+     * @param segmentBytes size after which a new segment is started
+     * @param fsync whether each group commit forces the data to disk
+     */
+    public ReceiptJournal(Path directory, long segmentBytes, boolean fsync) throws IOException {
+        this(directory, segmentBytes, fsync, WINDOW_BYTES);
+    }
+
+    /**
+     * Same as above, mapping at most windowBytes of a segment at a time when reading it.
+     */
+    public ReceiptJournal(Path directory, long segmentBytes, boolean fsync, int windowBytes) throws IOException {
+        if (windowBytes < HEADER_BYTES + FIXED_BODY_BYTES) {
+            throw new IllegalArgumentException("windowBytes must hold at least one record: " + windowBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        this.windowBytes = windowBytes;
+        Files.createDirectories(directory);
+        deleteUnfinishedCompactions();
+        List<Path> segments = segments();
+        this.nextSegment = segments.isEmpty() ? 1 : segmentNumber(segments.get(segments.size() - 1)) + 1;
+        // Appends start a new segment, so every existing one is sealed.
+        this.sealedBelow = nextSegment;
+    }
+
+    /**
+     * append(): To add a record and wait until it is written, and forced when fsync is on.
+     * @param msb
+     * @param lsb
+     * @param points
+     * @param writtenMillis Unix time the receipt was saved at
+     * @param encoded encoded receipt, may be null
+     */
+    public void append(long msb, long lsb, long points, long writtenMillis, byte[] encoded) {
+        int payload = encoded == null ? 0 : encoded.length;
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw new UncheckedIOException("Receipt journal is unusable after a write failure", failure);
+            }
+            writeRecord(msb, lsb, points, writtenMillis, encoded, payload);
+            long seq = ++appendedSeq;
+            while (durableSeq < seq) {
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                } else {
+                    flushBatch();
+                }
+                if (failure != null) {
+                    throw new UncheckedIOException("Receipt journal write failed", failure);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * replay(): To feed every record in the journal to the consumer, one segment per task.
+     * @param consumer
+     * @return number of records replayed
+     */
+    public long replay(RecordConsumer consumer) throws IOException {
+        List<Path> segments = segments();
+        LongAdder records = new LongAdder();
+        Path last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        try {
+            segments.parallelStream().forEach(segment -> {
+                try {
+                    records.add(replaySegment(segment, segment.equals(last), consumer));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return records.sum();
+    }
+
+    /**
+     * compact(): To drop the records the filter finds no longer live from the sealed segments.
+     * A segment with no live records is deleted, and one with at most half its records live is
+     * rewritten with only those, in a file renamed over the segment once it is forced, so a
+     * crash leaves one version or the other. Sealed segments therefore hold at most twice their
+     * live records. May run alongside appends, but not alongside replay() or another compact().
+     * @param filter
+     * @return number of records dropped
+     */
+    public long compact(RecordFilter filter) throws IOException {
+        long sealed = sealedBelow;
+        long dropped = 0;
+        for (Path segment : segments()) {
+            if (segmentNumber(segment) >= sealed) {
+                break;
+            }
+            dropped += compactSegment(segment, filter);
+        }
+        return dropped;
+    }
+
+    /**
+     * getFlushCount(): Number of group commits, for comparing against the number of appends.
+     * @return
+     */
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    /**
+     * getRolloverCount(): Number of segments sealed since the journal was opened; each one is
+     * a chance for compact() to reclaim space.
+     * @return
+     */
+    public long getRolloverCount() {
+        return rollovers.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            while (flushing) {
+                flushed.awaitUninterruptibly();
+            }
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held; copies the record into the pending batch.
+    private void writeRecord(long msb, long lsb, long points, long writtenMillis, byte[] encoded, int payload) {
+        int length = FIXED_BODY_BYTES + payload;
+        if (pending.remaining() < HEADER_BYTES + length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER_BYTES + length));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        int start = pending.position();
+        pending.putInt(length);
+        pending.putInt(0);
+        pending.putLong(msb);
+        pending.putLong(lsb);
+        pending.putLong(points);
+        pending.putLong(writtenMillis);
+        if (payload > 0) {
+            pending.put(encoded);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(pending.array(), start + HEADER_BYTES, length);
+        pending.putInt(start + 4, (int) crc.getValue());
+    }
+
+    // Called with the lock held; releases it while writing the batch.
+    private void flushBatch() {
+        flushing = true;
+        ByteBuffer batch = pending;
+        pending = spare;
+        long batchSeq = appendedSeq;
+        lock.unlock();
+        IOException error = null;
+        try {
+            batch.flip();
+            writeBatch(batch);
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            lock.lock();
+        }
+        batch.clear();
+        spare = batch;
+        flushing = false;
+        if (error != null) {
+            failure = error;
+        } else {
+            durableSeq = batchSeq;
+            flushes.increment();
+        }
+        flushed.signalAll();
+    }
+
+    private void writeBatch(ByteBuffer batch) throws IOException {
+        if (channel == null || channel.position() >= segmentBytes) {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+                rollovers.increment();
+            }
+            long number = nextSegment++;
+            Path segment = directory.resolve(segmentName(number));
+            channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            sealedBelow = number;
+        }
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    private long replaySegment(Path segment, boolean last, RecordConsumer consumer) throws IOException {
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = file.size();
+            LongAdder records = new LongAdder();
+            long end = scan(file, size, record -> {
+                byte[] encoded = null;
+                if (record.limit() > HEADER_BYTES + FIXED_BODY_BYTES) {
+                    encoded = new byte[record.limit() - HEADER_BYTES - FIXED_BODY_BYTES];
+                    record.get(HEADER_BYTES + FIXED_BODY_BYTES, encoded);
+                }
+                consumer.accept(record.getLong(HEADER_BYTES), record.getLong(HEADER_BYTES + 8),
+                        record.getLong(HEADER_BYTES + 16), record.getLong(HEADER_BYTES + 24), encoded);
+                records.increment();
+            });
+            if (end < size) {
+                if (!last) {
+                    throw new IOException("Corrupt record at offset " + end + " of " + segment);
+                }
+                // A torn write at the tail of the newest segment: drop it.
+                file.truncate(end);
+            }
+            return records.sum();
+        }
+    }
+
+    private long compactSegment(Path segment, RecordFilter filter) throws IOException {
+        try (FileChannel file = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long size = file.size();
+            long[] counts = new long[2];
+            long end = scan(file, size, record -> {
+                counts[0]++;
+                if (filter.isLive(record.getLong(HEADER_BYTES), record.getLong(HEADER_BYTES + 8))) {
+                    counts[1]++;
+                }
+            });
+            if (end < size || counts[1] * 2 > counts[0]) {
+                // Left for replay() to report if corrupt; not worth rewriting if mostly live.
+                return 0;
+            }
+            if (counts[1] == 0) {
+                Files.delete(segment);
+                return counts[0];
+            }
+
+            Path compacted = segment.resolveSibling(segment.getFileName() + COMPACTING_SUFFIX);
+            long[] kept = new long[1];
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                scan(file, size, record -> {
+                    if (filter.isLive(record.getLong(HEADER_BYTES), record.getLong(HEADER_BYTES + 8))) {
+                        while (record.hasRemaining()) {
+                            out.write(record);
+                        }
+                        kept[0]++;
+                    }
+                });
+                out.force(false);
+            }
+            Files.move(compacted, segment, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return counts[0] - kept[0];
+        }
+    }
+
+    /**
+     * Receives each intact record of a segment as a buffer from its header to its end.
+     */
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void visit(ByteBuffer record) throws IOException;
+    }
+
+    // Visits the intact records of a segment through mappings of at most windowBytes, mapping
+    // one record whole when it is larger. Returns the offset after the last intact record.
+    private long scan(FileChannel file, long size, RecordVisitor visitor) throws IOException {
+        CRC32C crc = new CRC32C();
+        long offset = 0;
+        long want = windowBytes;
+        while (offset < size) {
+            long mapped = Math.min(size - offset, want);
+            MappedByteBuffer window = file.map(FileChannel.MapMode.READ_ONLY, offset, mapped);
+            boolean atEnd = offset + mapped == size;
+            want = windowBytes;
+            int position = 0;
+            while (true) {
+                int remaining = window.limit() - position;
+                if (remaining < HEADER_BYTES) {
+                    if (atEnd) {
+                        return offset + position;
+                    }
+                    break;
+                }
+                int length = window.getInt(position);
+                if (length < FIXED_BODY_BYTES || length > size - offset - position - HEADER_BYTES) {
+                    return offset + position;
+                }
+                if (length > remaining - HEADER_BYTES) {
+                    // The record runs past the window: map again from its start.
+                    want = Math.max(windowBytes, (long) HEADER_BYTES + length);
+                    break;
+                }
+                crc.reset();
+                crc.update(window.slice(position + HEADER_BYTES, length));
+                if ((int) crc.getValue() != window.getInt(position + 4)) {
+                    return offset + position;
+                }
+                visitor.visit(window.slice(position, HEADER_BYTES + length));
+                position += HEADER_BYTES + length;
+            }
+            offset += position;
+        }
+        return offset;
+    }
+
+    private void deleteUnfinishedCompactions() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(COMPACTING_SUFFIX)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static String segmentName(long number) {
+        return String.format("%s%012d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
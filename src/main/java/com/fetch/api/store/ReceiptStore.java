@@ -0,0 +1,137 @@
+package com.fetch.api.store;
+
+import com.fetch.model.Receipt;
+
+/**
+ * Storage for scored receipts, keyed by the receipt ID handed out by ReceiptService.
+ */
+public interface ReceiptStore {
+
+    // Returned by findPoints() when there is no receipt for the ID.
+    long MISSING = -1L;
+
+    // Returned by findPoints() when the receipt was stored but has since been evicted.
+    long EXPIRED = -2L;
+
+    /**
+     * Receives the receipts visited by forEachReceipt(); called from several threads at once.
+     */
+    @FunctionalInterface
+    interface ReceiptVisitor {
+        void visit(String id, Receipt receipt);
+    }
+
+    /**
+     * Told about receipts a bounded store evicted or expired, on the thread that ran the store's maintenance.
+     */
+    @FunctionalInterface
+    interface EvictionListener {
+        void evicted(long msb, long lsb);
+    }
+
+    /**
+     * put(): To store the receipt and its points under the ID.
+     * @param id
+     * @param receipt
+     * @param points
+     */
+    void put(String id, Receipt receipt, long points);
+
+    /**
+     * putEncoded(): To store points and a ReceiptCodec encoding under the two halves of a UUID ID.
+     * Stores that keep encoded receipts override this to skip decoding.
+     * @param msb
+     * @param lsb
+     * @param points
+     * @param encoded encoded receipt, or null
+     */
+    default void putEncoded(long msb, long lsb, long points, byte[] encoded) {
+        put(ReceiptIds.toString(msb, lsb), encoded == null ? null : ReceiptCodec.decode(encoded), points);
+    }
+
+    /**
+     * restore(): To put back a receipt saved at writtenMillis, as replayed from a journal, the same
+     * way as putEncoded(). Stores with a time-to-live skip a receipt whose time has passed and keep
+     * the others only for what is left of it.
+     * @param msb
+     * @param lsb
+     * @param points
+     * @param encoded encoded receipt, or null
+     * @param writtenMillis Unix time the receipt was saved at
+     * @return whether the receipt was stored
+     */
+    default boolean restore(long msb, long lsb, long points, byte[] encoded, long writtenMillis) {
+        putEncoded(msb, lsb, points, encoded);
+        return true;
+    }
+
+    /**
+     * findPoints(): To find the points stored for the ID.
+     * @param id
+     * @return points, MISSING or EXPIRED
+     */
+    long findPoints(String id);
+
+    /**
+     * contains(): To check whether a receipt is stored under the two halves of a UUID ID, without
+     * running the store's maintenance or counting as a use of the receipt.
+     * @param msb
+     * @param lsb
+     * @return
+     */
+    default boolean contains(long msb, long lsb) {
+        return findPoints(ReceiptIds.toString(msb, lsb)) >= 0;
+    }
+
+    /**
+     * findReceipt(): To find the receipt stored for the ID.
+     * @param id
+     * @return receipt, or null when it is unknown or the store does not keep receipts
+     */
+    Receipt findReceipt(String id);
+
+    /**
+     * forEachReceipt(): To visit every stored receipt, split across the common ForkJoinPool.
+     * Weakly consistent: receipts stored while it runs may or may not be visited, but every
+     * receipt stored before it started is visited once. IDs stored without a receipt are skipped.
+     * @param visitor
+     * @throws UnsupportedOperationException when the store keeps points only
+     */
+    void forEachReceipt(ReceiptVisitor visitor);
+
+    /**
+     * size(): Number of receipts in the store.
+     * @return
+     */
+    long size();
+
+    /**
+     * getEstimatedBytes(): Rough heap held by the stored receipts, for monitoring.
+     * @return
+     */
+    long getEstimatedBytes();
+
+    /**
+     * getSizeEvictionCount(): Receipts evicted to stay within a size or byte bound, for monitoring.
+     * @return 0 for stores that are not bounded
+     */
+    default long getSizeEvictionCount() {
+        return 0;
+    }
+
+    /**
+     * getExpirationCount(): Receipts removed because their time-to-live passed, for monitoring.
+     * @return 0 for stores without a time-to-live
+     */
+    default long getExpirationCount() {
+        return 0;
+    }
+
+    /**
+     * setEvictionListener(): To be told about every receipt the store evicts from now on.
+     * Stores that never evict ignore it.
+     * @param listener
+     */
+    default void setEvictionListener(EvictionListener listener) {
+    }
+}
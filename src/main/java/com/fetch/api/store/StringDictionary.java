@@ -0,0 +1,166 @@
+package com.fetch.api.store;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared table of the retailer names and item descriptions seen so far, giving each
+ * distinct string a small integer code. Stores keep the code instead of another copy
+ * of the string, and scoring reads the cached letter-or-digit count and trimmed length
+ * instead of scanning the characters again.
+ *
+ * The table is bounded: once maximumEntries strings have codes, new strings get none
+ * and callers keep them inline. Codes are never reassigned, since stored receipts
+ * refer to them, so the table only grows. Lookups are lock-free; assigning a code
+ * takes a lock, which only happens the first time a string is seen.
+ */
+public final class StringDictionary {
+
+    // Returned by code() when the string is null or the table is full.
+    public static final int NO_CODE = -1;
+
+    // Room for a few thousand retailers and a catalog of common item descriptions.
+    public static final int DEFAULT_MAXIMUM_ENTRIES = 1 << 16;
+
+    private final int maximumEntries;
+    private final ConcurrentHashMap<String, Entry> codes = new ConcurrentHashMap<>();
+    // Entries by code. A reader only holds a code published after its entry was written.
+    private volatile Entry[] entries = new Entry[256];
+    private int size;
+
+    public StringDictionary(int maximumEntries) {
+        if (maximumEntries < 0) {
+            throw new IllegalArgumentException("maximumEntries must not be negative");
+        }
+        this.maximumEntries = maximumEntries;
+    }
+
+    /**
+     * code(): To find the code of the string, assigning one if there is room.
+     * @param value
+     * @return the code, or NO_CODE
+     */
+    public int code(String value) {
+        Entry entry = entry(value);
+        return entry == null ? NO_CODE : entry.code;
+    }
+
+    /**
+     * string(): The string with the code.
+     * @param code a code returned by code()
+     * @return
+     */
+    public String string(int code) {
+        return entries[code].value;
+    }
+
+    /**
+     * intern(): The dictionary's copy of the string, so equal strings share one instance.
+     * @param value
+     * @return the shared copy, or value itself when it has no code
+     */
+    public String intern(String value) {
+        Entry entry = entry(value);
+        return entry == null ? value : entry.value;
+    }
+
+    /**
+     * letterOrDigitCount(): The number of letters and digits in the string, cached when it has a code.
+     * @param value
+     * @return
+     */
+    public int letterOrDigitCount(String value) {
+        Entry entry = entry(value);
+        return entry == null ? countLettersOrDigits(value) : entry.letterOrDigitCount;
+    }
+
+    /**
+     * trimmedLength(): The length of value.trim(), cached when it has a code.
+     * @param value
+     * @return
+     */
+    public int trimmedLength(String value) {
+        Entry entry = entry(value);
+        return entry == null ? trim(value) : entry.trimmedLength;
+    }
+
+    /**
+     * size(): The number of strings with a code.
+     */
+    public int size() {
+        return codes.size();
+    }
+
+    /**
+     * countLettersOrDigits(): To count the letters and digits in the string.
+     * @param value
+     * @return
+     */
+    public static int countLettersOrDigits(String value) {
+        int count = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isLetterOrDigit(value.charAt(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * trim(): The length of value.trim() without creating the trimmed string.
+     * @param value
+     * @return
+     */
+    public static int trim(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end - start;
+    }
+
+    private Entry entry(String value) {
+        if (value == null) {
+            return null;
+        }
+        Entry entry = codes.get(value);
+        if (entry != null || codes.size() >= maximumEntries) {
+            return entry;
+        }
+        return codes.computeIfAbsent(value, this::assign);
+    }
+
+    // Called once per new string, inside computeIfAbsent; returns null when the table is full.
+    private synchronized Entry assign(String value) {
+        if (size >= maximumEntries) {
+            return null;
+        }
+        Entry[] table = entries;
+        if (size == table.length) {
+            table = Arrays.copyOf(table, Math.min(table.length * 2, Math.max(maximumEntries, table.length + 1)));
+        }
+        Entry entry = new Entry(size, value);
+        table[size++] = entry;
+        entries = table;
+        return entry;
+    }
+
+    private static final class Entry {
+
+        final int code;
+        final String value;
+        final int letterOrDigitCount;
+        final int trimmedLength;
+
+        Entry(int code, String value) {
+            this.code = code;
+            this.value = value;
+            this.letterOrDigitCount = countLettersOrDigits(value);
+            this.trimmedLength = trim(value);
+        }
+    }
+}
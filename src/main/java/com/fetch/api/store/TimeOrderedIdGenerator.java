@@ -0,0 +1,72 @@
+package com.fetch.api.store;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Version 7 (RFC 9562) IDs: a 48-bit Unix millisecond timestamp, then a 12-bit
+ * per-stripe sequence, then a 16-bit stripe shard and 46 random bits.
+ *
+ * The timestamp and sequence come from one of a fixed set of stripes, each a
+ * counter of millis << 12 | sequence in its own cache line, advanced by CAS. A
+ * thread always uses the stripe its thread ID hashes to, so threads rarely share
+ * a counter, and a thread per request, as in the virtual-thread server mode, costs
+ * no per-thread state. A stripe's counter only increases, and the stripe index is
+ * the shard, so IDs are unique without relying on the random bits. IDs from one
+ * thread are strictly increasing; a stripe that issues more than 4096 IDs in a
+ * millisecond moves on to the next one. IDs sort by creation time across threads.
+ *
+ * The random bits are not from a SecureRandom, and the timestamp is readable, so
+ * these IDs are easier to guess than version 4 IDs.
+ */
+public final class TimeOrderedIdGenerator implements ReceiptIdGenerator {
+
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT_RFC = 0x8000_0000_0000_0000L;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long RANDOM_MASK = (1L << 46) - 1;
+
+    // Longs per stripe, so each counter has a 64-byte cache line to itself.
+    private static final int PAD = 8;
+
+    // Four stripes per processor, rounded up to a power of two and within the 16 shard bits.
+    private static final int STRIPES = Math.min(1 << 16,
+            Integer.highestOneBit(Math.max(1, 4 * Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+    private final AtomicLongArray stripes = new AtomicLongArray(STRIPES * PAD);
+
+    @Override
+    public UUID next() {
+        int stripe = stripe(Thread.currentThread().getId());
+        int slot = stripe * PAD;
+        long previous;
+        long next;
+        do {
+            previous = stripes.get(slot);
+            long now = System.currentTimeMillis();
+            // A full sequence carries into the next millisecond rather than repeat or go backwards.
+            next = previous >>> SEQUENCE_BITS < now ? now << SEQUENCE_BITS : previous + 1;
+        } while (!stripes.compareAndSet(slot, previous, next));
+
+        long msb = (next >>> SEQUENCE_BITS) << 16 | VERSION_7 | (next & SEQUENCE_MASK);
+        long lsb = VARIANT_RFC | (long) stripe << 46 | (ThreadLocalRandom.current().nextLong() & RANDOM_MASK);
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * timestampMillis(): The Unix millisecond timestamp a version 7 ID was created at.
+     * @param msb
+     * @return
+     */
+    public static long timestampMillis(long msb) {
+        return msb >>> 16;
+    }
+
+    // Spreads consecutive thread IDs over the stripes.
+    private static int stripe(long threadId) {
+        long h = threadId * 0x9E37_79B9_7F4A_7C15L;
+        return (int) (h >>> 32) & (STRIPES - 1);
+    }
+}
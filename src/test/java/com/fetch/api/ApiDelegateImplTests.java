@@ -1,7 +1,9 @@
 package com.fetch.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -10,6 +12,7 @@ import java.time.OffsetDateTime;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.hibernate.validator.internal.constraintvalidators.hv.UUIDValidator;
@@ -24,8 +27,12 @@ import org.springframework.http.ResponseEntity;
 import com.fetch.api.model.CustomError;
 import com.fetch.api.service.ApiDelegateImpl;
 import com.fetch.api.service.ReceiptService;
+import com.fetch.model.ErrorResponse;
 import com.fetch.model.InlineResponse200;
 import com.fetch.model.InlineResponse2001;
+import com.fetch.model.PointsBatchRequest;
+import com.fetch.model.PointsBatchResponse;
+import com.fetch.model.PointsBatchResult;
 import com.fetch.model.Item;
 import com.fetch.model.Receipt;
 
@@ -55,6 +62,27 @@ public class ApiDelegateImplTests {
         return matcher.matches();
     }
     
+    /**
+     * errorMessage(): The message of an error response.
+     */
+    static String errorMessage(ResponseEntity<?> response) {
+    	return ((ErrorResponse) response.getBody()).getMessage();
+    }
+    
+    /**
+     * receiptId(): The ID in a receipts/process response.
+     */
+    static String receiptId(ResponseEntity<?> response) {
+    	return ((InlineResponse200) response.getBody()).getId();
+    }
+    
+    /**
+     * points(): The points in a receipts/{id}/points response.
+     */
+    static Long points(ResponseEntity<?> response) {
+    	return ((InlineResponse2001) response.getBody()).getPoints();
+    }
+    
     /**
      * setup():To insert a test receipt before test run.
      */
@@ -64,7 +92,7 @@ public class ApiDelegateImplTests {
 		Receipt validReceipt = new Receipt();
 		Item item = new Item();
 		item.setShortDescription("testProduct");
-		item.setPrice("2.2");
+		item.setPrice("2.20");
 		items.add(item);
         validReceipt.setRetailer("RetailerName");
         validReceipt.setPurchaseDate(LocalDate.now());
@@ -72,8 +100,8 @@ public class ApiDelegateImplTests {
         validReceipt.setItems(items);
         validReceipt.setTotal("6.49");
 
-        ResponseEntity<InlineResponse200> response = apiDelegate.receiptsProcessPost(validReceipt);
-        testID = response.getBody().getId();
+        ResponseEntity<?> response = apiDelegate.receiptsProcessPost(validReceipt);
+        testID = receiptId(response);
     }
 
     /**
@@ -86,18 +114,18 @@ public class ApiDelegateImplTests {
 		Receipt validReceipt = new Receipt();
 		Item item = new Item();
 		item.setShortDescription("testProduct");
-		item.setPrice("2.2");
+		item.setPrice("2.20");
 		items.add(item);
         validReceipt.setRetailer("RetailerName");
         validReceipt.setPurchaseDate(LocalDate.now());
         validReceipt.setPurchaseTime("13:01");
         validReceipt.setItems(items);
         validReceipt.setTotal("6.49");
-        ResponseEntity<InlineResponse200> response = apiDelegate.receiptsProcessPost(validReceipt);
+        ResponseEntity<?> response = apiDelegate.receiptsProcessPost(validReceipt);
         
         assertEquals(HttpStatus.CREATED, response.getStatusCode());
         assertNotNull(response.getBody());
-        assertTrue(isValidUUID(response.getBody().getId()));
+        assertTrue(isValidUUID(receiptId(response)));
 	}
     
     /**
@@ -107,12 +135,10 @@ public class ApiDelegateImplTests {
 	public void testReceiptProcessEmptyArray() {
 		
 		Receipt validReceipt = new Receipt();
-		CustomError thrownError = assertThrows(CustomError.class, () -> {
-			 ResponseEntity<InlineResponse200> response = apiDelegate.receiptsProcessPost(validReceipt);
-        });
-        
-        assertEquals("Invalid Retailer name, Invalid Purchase time, Invalid Purchased Date, List of items are empty, Invalid Total", thrownError.getMessage());
-        assertEquals(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()), thrownError.getCode());
+		ResponseEntity<?> response = apiDelegate.receiptsProcessPost(validReceipt);
+		
+		assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+		assertEquals("Invalid Retailer name, Invalid Purchase time, Invalid Purchased Date, List of items are empty, Invalid Total", errorMessage(response));
 	}
     
     /**
@@ -124,19 +150,17 @@ public class ApiDelegateImplTests {
 		Receipt validReceipt = new Receipt();
 		Item item = new Item();
 		item.setShortDescription("testProduct");
-		item.setPrice("2.2");
+		item.setPrice("2.20");
 		items.add(item);
         validReceipt.setPurchaseDate(LocalDate.now());
         validReceipt.setPurchaseTime("13:01");
         validReceipt.setItems(items);
         validReceipt.setTotal("6.49");
         
-        CustomError thrownError = assertThrows(CustomError.class, () -> {
-			 ResponseEntity<InlineResponse200> response = apiDelegate.receiptsProcessPost(validReceipt);
-       });
+        ResponseEntity<?> response = apiDelegate.receiptsProcessPost(validReceipt);
         
-        assertEquals("Invalid Retailer name", thrownError.getMessage());
-        assertEquals(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()), thrownError.getCode());
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid Retailer name", errorMessage(response));
     }
     
     /**
@@ -148,19 +172,17 @@ public class ApiDelegateImplTests {
 		Receipt validReceipt = new Receipt();
 		Item item = new Item();
 		item.setShortDescription("testProduct");
-		item.setPrice("2.2");
+		item.setPrice("2.20");
 		items.add(item);
         validReceipt.setRetailer("TestRetailer");
         validReceipt.setPurchaseDate(LocalDate.now());
         validReceipt.setItems(items);
         validReceipt.setTotal("6.49");
         
-        CustomError thrownError = assertThrows(CustomError.class, () -> {
-			 ResponseEntity<InlineResponse200> response = apiDelegate.receiptsProcessPost(validReceipt);
-       });
+        ResponseEntity<?> response = apiDelegate.receiptsProcessPost(validReceipt);
         
-        assertEquals("Invalid Purchase time", thrownError.getMessage());
-        assertEquals(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()), thrownError.getCode());
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid Purchase time", errorMessage(response));
     }
     
     /**
@@ -172,7 +194,7 @@ public class ApiDelegateImplTests {
 		Receipt validReceipt = new Receipt();
 		Item item = new Item();
 		item.setShortDescription("testProduct");
-		item.setPrice("2.2");
+		item.setPrice("2.20");
 		items.add(item);
         validReceipt.setRetailer("TestRetailer");
         validReceipt.setPurchaseDate(LocalDate.now());
@@ -180,12 +202,10 @@ public class ApiDelegateImplTests {
         validReceipt.setItems(items);
         validReceipt.setTotal("6.49");
         
-        CustomError thrownError = assertThrows(CustomError.class, () -> {
-			 ResponseEntity<InlineResponse200> response = apiDelegate.receiptsProcessPost(validReceipt);
-       });
+        ResponseEntity<?> response = apiDelegate.receiptsProcessPost(validReceipt);
         
-        assertEquals("Invalid Purchase time", thrownError.getMessage());
-        assertEquals(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()), thrownError.getCode());
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid Purchase time", errorMessage(response));
     }
     
     /**
@@ -197,19 +217,17 @@ public class ApiDelegateImplTests {
 		Receipt validReceipt = new Receipt();
 		Item item = new Item();
 		item.setShortDescription("testProduct");
-		item.setPrice("2.2");
+		item.setPrice("2.20");
 		items.add(item);
         validReceipt.setRetailer("TestRetailer");
         validReceipt.setPurchaseTime("13:01");
         validReceipt.setItems(items);
         validReceipt.setTotal("6.49");
         
-        CustomError thrownError = assertThrows(CustomError.class, () -> {
-			 ResponseEntity<InlineResponse200> response = apiDelegate.receiptsProcessPost(validReceipt);
-       });
+        ResponseEntity<?> response = apiDelegate.receiptsProcessPost(validReceipt);
         
-        assertEquals("Invalid Purchased Date", thrownError.getMessage());
-        assertEquals(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()), thrownError.getCode());
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid Purchased Date", errorMessage(response));
     }
     
     /**
@@ -225,12 +243,10 @@ public class ApiDelegateImplTests {
         validReceipt.setItems(items);
         validReceipt.setTotal("6.49");
         
-        CustomError thrownError = assertThrows(CustomError.class, () -> {
-			 ResponseEntity<InlineResponse200> response = apiDelegate.receiptsProcessPost(validReceipt);
-       });
+        ResponseEntity<?> response = apiDelegate.receiptsProcessPost(validReceipt);
         
-        assertEquals("List of items are empty", thrownError.getMessage());
-        assertEquals(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()), thrownError.getCode());
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("List of items are empty", errorMessage(response));
     }
     
     /**
@@ -241,7 +257,7 @@ public class ApiDelegateImplTests {
     	List<Item> items = new ArrayList<>();
 		Receipt validReceipt = new Receipt();
 		Item item = new Item();
-		item.setPrice("2.2");
+		item.setPrice("2.20");
 		items.add(item);
         validReceipt.setRetailer("TestRetailer");
         validReceipt.setPurchaseDate(LocalDate.now());
@@ -249,12 +265,10 @@ public class ApiDelegateImplTests {
         validReceipt.setItems(items);
         validReceipt.setTotal("6.49");
         
-        CustomError thrownError = assertThrows(CustomError.class, () -> {
-			 ResponseEntity<InlineResponse200> response = apiDelegate.receiptsProcessPost(validReceipt);
-       });
+        ResponseEntity<?> response = apiDelegate.receiptsProcessPost(validReceipt);
         
-        assertEquals("Invalid Item Description", thrownError.getMessage());
-        assertEquals(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()), thrownError.getCode());
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid Item Description", errorMessage(response));
     }
     
     /**
@@ -273,12 +287,10 @@ public class ApiDelegateImplTests {
         validReceipt.setItems(items);
         validReceipt.setTotal("6.49");
         
-        CustomError thrownError = assertThrows(CustomError.class, () -> {
-			 ResponseEntity<InlineResponse200> response = apiDelegate.receiptsProcessPost(validReceipt);
-       });
+        ResponseEntity<?> response = apiDelegate.receiptsProcessPost(validReceipt);
         
-        assertEquals("Invalid Item Price", thrownError.getMessage());
-        assertEquals(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()), thrownError.getCode());
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid Item Price", errorMessage(response));
     }
     
     /**
@@ -290,19 +302,17 @@ public class ApiDelegateImplTests {
 		Receipt validReceipt = new Receipt();
 		Item item = new Item();
 		item.setShortDescription("testProduct");
-		item.setPrice("2.2");
+		item.setPrice("2.20");
 		items.add(item);
         validReceipt.setRetailer("TestRetailer");
         validReceipt.setPurchaseDate(LocalDate.now());
         validReceipt.setPurchaseTime("13:01");
         validReceipt.setItems(items);
         
-        CustomError thrownError = assertThrows(CustomError.class, () -> {
-			 ResponseEntity<InlineResponse200> response = apiDelegate.receiptsProcessPost(validReceipt);
-       });
+        ResponseEntity<?> response = apiDelegate.receiptsProcessPost(validReceipt);
         
-        assertEquals("Invalid Total", thrownError.getMessage());
-        assertEquals(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()), thrownError.getCode());
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Invalid Total", errorMessage(response));
     }
     
     /**
@@ -310,11 +320,13 @@ public class ApiDelegateImplTests {
      */
     @Test
     public void testReceiptsPoints() {
-    	ResponseEntity<InlineResponse2001> response = apiDelegate.receiptsIdPointsGet(testID);
+    	ResponseEntity<?> response = apiDelegate.receiptsIdPointsGet(testID);
     	
-    	assertEquals(HttpStatus.CREATED, response.getStatusCode());
+    	assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
-        assertNotNull(response.getBody().getPoints());
+        assertNotNull(points(response));
+        assertEquals("\"" + testID + "-1\"", response.getHeaders().getETag());
+        assertEquals("public, max-age=60, s-maxage=600, must-revalidate", response.getHeaders().getCacheControl());
     	
     }
     
@@ -324,13 +336,46 @@ public class ApiDelegateImplTests {
     @Test
     public void testReceiptsPointsInvalidID() {
     	
+    	ResponseEntity<?> response = apiDelegate.receiptsIdPointsGet("1233");
+    	
+    	assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    	assertEquals("Invalid Receipt ID.", errorMessage(response));
+    	
+    }
+    
+    /**
+     * testReceiptsPointsBatch(): To test bulk points lookup keeps the request order.
+     */
+    @Test
+    public void testReceiptsPointsBatch() {
+    	PointsBatchRequest request = new PointsBatchRequest();
+    	request.setIds(Arrays.asList("1233", testID, testID));
+    	ResponseEntity<PointsBatchResponse> response = apiDelegate.receiptsPointsBatchPost(request);
+    	
+    	assertEquals(HttpStatus.OK, response.getStatusCode());
+    	List<PointsBatchResult> results = response.getBody().getResults();
+    	assertEquals(3, results.size());
+    	assertEquals("1233", results.get(0).getId());
+    	assertFalse(results.get(0).getFound());
+    	assertNull(results.get(0).getPoints());
+    	assertTrue(results.get(1).getFound());
+    	assertEquals(points(apiDelegate.receiptsIdPointsGet(testID)), results.get(1).getPoints());
+    	assertEquals(results.get(1).getPoints(), results.get(2).getPoints());
+    }
+    
+    /**
+     * testReceiptsPointsBatchEmpty(): To test bulk points lookup without IDs.
+     */
+    @Test
+    public void testReceiptsPointsBatchEmpty() {
+    	PointsBatchRequest request = new PointsBatchRequest();
+    	request.setIds(new ArrayList<>());
+    	
     	CustomError thrownError = assertThrows(CustomError.class, () -> {
-    		ResponseEntity<InlineResponse2001> response = apiDelegate.receiptsIdPointsGet("1233");
+    		apiDelegate.receiptsPointsBatchPost(request);
       });
     	
-    	assertEquals("Invalid Receipt ID.", thrownError.getMessage());
-        assertEquals(Integer.toString(HttpStatus.INTERNAL_SERVER_ERROR.value()), thrownError.getCode());
-    	
+    	assertEquals(Integer.toString(HttpStatus.BAD_REQUEST.value()), thrownError.getCode());
     }
     
     /**
@@ -361,12 +406,12 @@ public class ApiDelegateImplTests {
     	validReceipt.setPurchaseTime("13:01");
     	validReceipt.setItems(items);
     	validReceipt.setTotal("35.35");
-    	ResponseEntity<InlineResponse200> processResponse = apiDelegate.receiptsProcessPost(validReceipt);
-    	ResponseEntity<InlineResponse2001> pointsResponse = apiDelegate.receiptsIdPointsGet(processResponse.getBody().getId());
+    	ResponseEntity<?> processResponse = apiDelegate.receiptsProcessPost(validReceipt);
+    	ResponseEntity<?> pointsResponse = apiDelegate.receiptsIdPointsGet(receiptId(processResponse));
     	
-    	assertEquals(HttpStatus.CREATED, pointsResponse.getStatusCode());
+    	assertEquals(HttpStatus.OK, pointsResponse.getStatusCode());
         assertNotNull(pointsResponse.getBody());
-        assertEquals("28", String.valueOf(pointsResponse.getBody().getPoints()));
+        assertEquals("28", String.valueOf(points(pointsResponse)));
     
     }
     
@@ -397,12 +442,12 @@ public class ApiDelegateImplTests {
     	validReceipt.setPurchaseTime("14:33");
     	validReceipt.setItems(items);
     	validReceipt.setTotal("9.00");
-    	ResponseEntity<InlineResponse200> processResponse = apiDelegate.receiptsProcessPost(validReceipt);
-    	ResponseEntity<InlineResponse2001> pointsResponse = apiDelegate.receiptsIdPointsGet(processResponse.getBody().getId());
+    	ResponseEntity<?> processResponse = apiDelegate.receiptsProcessPost(validReceipt);
+    	ResponseEntity<?> pointsResponse = apiDelegate.receiptsIdPointsGet(receiptId(processResponse));
     	
-    	assertEquals(HttpStatus.CREATED, pointsResponse.getStatusCode());
+    	assertEquals(HttpStatus.OK, pointsResponse.getStatusCode());
         assertNotNull(pointsResponse.getBody());
-        assertEquals("109", String.valueOf(pointsResponse.getBody().getPoints()));
+        assertEquals("109", String.valueOf(points(pointsResponse)));
     
     }
 }
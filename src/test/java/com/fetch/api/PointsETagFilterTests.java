@@ -0,0 +1,95 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.fetch.api.service.ApiDelegateImpl;
+import com.fetch.api.service.PointsRules;
+import com.fetch.api.service.ReceiptService;
+
+/**
+ * Test Class for PointsETagFilter
+ */
+public class PointsETagFilterTests {
+
+	private final ReceiptService receiptService = new ReceiptService();
+	private final PointsETagFilter filter = new PointsETagFilter(receiptService);
+
+	/**
+	 * testNotModified(): The ETag from a points GET answers a conditional GET with 304 and no body.
+	 */
+	@Test
+	public void testNotModified() throws Exception {
+		String id = receiptService.save(ReceiptServiceTests.readmeReceipt());
+		String etag = new ApiDelegateImpl(receiptService).receiptsIdPointsGet(id).getHeaders().getETag();
+
+		MockFilterChain chain = new MockFilterChain();
+		MockHttpServletResponse response = get("/receipts/" + id + "/points", "\"other\", " + etag, chain);
+		assertEquals(304, response.getStatus());
+		assertEquals(etag, response.getHeader(HttpHeaders.ETAG));
+		assertEquals(ApiDelegateImpl.POINTS_CACHE_CONTROL, response.getHeader(HttpHeaders.CACHE_CONTROL));
+		assertEquals(0, response.getContentLength());
+		assertNull(chain.getRequest());
+
+		assertEquals(304, get("/receipts/" + id + "/points", "W/" + etag, new MockFilterChain()).getStatus());
+		assertEquals(304, get("/receipts/" + id + "/points", "*", new MockFilterChain()).getStatus());
+	}
+
+	/**
+	 * testPassesThrough(): Unconditional, mismatched, unknown-ID and other requests reach the handler.
+	 */
+	@Test
+	public void testPassesThrough() throws Exception {
+		String id = receiptService.save(ReceiptServiceTests.readmeReceipt());
+		String etag = ApiDelegateImpl.pointsETag(id, receiptService.getScoringVersion());
+		String unknown = "7fb1377b-b223-49d9-a31a-5a02701dd310";
+
+		String[][] requests = {
+			{"/receipts/" + id + "/points", null},
+			{"/receipts/" + id + "/points", "\"" + id + "-2\""},
+			{"/receipts/" + unknown + "/points", "*"},
+			{"/receipts/" + unknown + "/points", ApiDelegateImpl.pointsETag(unknown, 1)},
+			{"/receipts/points/batch", etag},
+		};
+		for (String[] request : requests) {
+			MockFilterChain chain = new MockFilterChain();
+			assertEquals(request[0], 200, get(request[0], request[1], chain).getStatus());
+			assertTrue(request[0], chain.getRequest() != null);
+		}
+	}
+
+	/**
+	 * testRescoreChangesETag(): Publishing new points changes the tag, so cached points are fetched again.
+	 */
+	@Test
+	public void testRescoreChangesETag() throws Exception {
+		String id = receiptService.save(ReceiptServiceTests.readmeReceipt());
+		String before = ApiDelegateImpl.pointsETag(id, receiptService.getScoringVersion());
+		receiptService.rescore(PointsRules.compile("item-group:1=3"), new LongAdder());
+		String after = ApiDelegateImpl.pointsETag(id, receiptService.getScoringVersion());
+
+		assertFalse(before.equals(after));
+		assertEquals(200, get("/receipts/" + id + "/points", before, new MockFilterChain()).getStatus());
+		assertEquals(304, get("/receipts/" + id + "/points", after, new MockFilterChain()).getStatus());
+	}
+
+	private MockHttpServletResponse get(String path, String ifNoneMatch, MockFilterChain chain) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+		if (ifNoneMatch != null) {
+			request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, chain);
+		return response;
+	}
+}
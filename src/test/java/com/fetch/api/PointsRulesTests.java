@@ -0,0 +1,71 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.fetch.api.service.PointsRules;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.MapReceiptStore;
+import com.fetch.model.Receipt;
+
+/**
+ * Test Class for PointsRules
+ */
+public class PointsRulesTests {
+
+	/**
+	 * testDefaultsMatchReadme(): The compiled default spec scores the README examples.
+	 */
+	@Test
+	public void testDefaultsMatchReadme() {
+		ReceiptService receiptService = new ReceiptService(new MapReceiptStore(), PointsRules.compile(PointsRules.DEFAULT_SPEC));
+		assertEquals(28, receiptService.calculatePoints(ReceiptServiceTests.readmeReceipt()));
+		for (Receipt receipt : ReceiptServiceTests.fixtureReceipts()) {
+			assertEquals(new ReceiptService().calculatePoints(receipt), receiptService.calculatePoints(receipt));
+		}
+	}
+
+	/**
+	 * testCustomRules(): A changed rule set scores without code changes.
+	 */
+	@Test
+	public void testCustomRules() {
+		// README receipt: Target, 2022-01-01 13:01, 5 items, total 35.35
+		PointsRules rules = PointsRules.compile("retailer-alphanumeric=2, total-multiple:0.05=7, item-group:5=100, "
+				+ "time-window:13:00-13:30=3, time-window:0:00-24:00=1");
+		ReceiptService receiptService = new ReceiptService(new MapReceiptStore(), rules);
+
+		assertEquals(12 + 7 + 100 + 3 + 1, receiptService.calculatePoints(ReceiptServiceTests.readmeReceipt()));
+		assertEquals(0, new ReceiptService(new MapReceiptStore(), PointsRules.compile(""))
+				.calculatePoints(ReceiptServiceTests.readmeReceipt()));
+	}
+
+	/**
+	 * testPricePercent(): Percent-of-price points round up, including on prices near Long.MAX_VALUE cents.
+	 */
+	@Test
+	public void testPricePercent() {
+		PointsRules rules = PointsRules.compile("description-length-multiple:1=15%");
+		assertEquals(0, rules.scoreItem("a", 0));
+		assertEquals(1, rules.scoreItem("a", 1));
+		assertEquals(3, rules.scoreItem("a", 2000));
+		assertEquals(4, rules.scoreItem("a", 2001));
+		assertEquals(Long.MAX_VALUE / 10_000 * 15 + (Long.MAX_VALUE % 10_000 * 15 + 9_999) / 10_000,
+				rules.scoreItem("a", Long.MAX_VALUE));
+	}
+
+	/**
+	 * testInvalidSpecs(): Unknown, malformed and repeated entries are rejected when compiled.
+	 */
+	@Test
+	public void testInvalidSpecs() {
+		String[] specs = {"bogus=1", "odd-day", "odd-day=x", "odd-day=-1", "odd-day:2=1", "odd-day=1, odd-day=2",
+			"total-multiple=5", "total-multiple:0=5", "item-group:0=5", "description-length-multiple:3=20",
+			"time-window:16:00-14:00=10", "time-window:14:00=10"};
+		for (String spec : specs) {
+			assertThrows(spec, IllegalArgumentException.class, () -> PointsRules.compile(spec));
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+import com.fetch.api.service.ApiDelegateImpl;
+import com.fetch.api.service.PointsRules;
+import com.fetch.api.service.ReceiptAggregates;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.api.store.MapReceiptStore;
+import com.fetch.model.AggregateGroup;
+import com.fetch.model.AggregatesResponse;
+import com.fetch.model.Receipt;
+
+/**
+ * Test Class for ReceiptAggregates
+ */
+public class ReceiptAggregatesTests {
+
+	/**
+	 * testAggregatesMatchStore(): The groups add up to the receipts saved, from several threads at once.
+	 */
+	@Test
+	public void testAggregatesMatchStore() throws Exception {
+		ReceiptService service = new ReceiptService();
+		ExecutorService threads = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> done = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				done.add(threads.submit(() -> {
+					for (Receipt receipt : ReceiptServiceTests.fixtureReceipts()) {
+						for (int i = 0; i < 1000; i++) {
+							service.save(copy(receipt));
+						}
+					}
+				}));
+			}
+			for (Future<?> future : done) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+
+		long expectedPoints = 0;
+		for (Receipt receipt : ReceiptServiceTests.fixtureReceipts()) {
+			expectedPoints += 4000 * service.calculatePoints(receipt);
+		}
+		for (List<ReceiptAggregates.Group> groups : List.of(service.getAggregates().byRetailer(),
+				service.getAggregates().byDate())) {
+			long receipts = 0;
+			long points = 0;
+			for (ReceiptAggregates.Group group : groups) {
+				receipts += group.getReceipts();
+				points += group.getPoints();
+			}
+			assertEquals(service.countReceipts(), receipts);
+			assertEquals(expectedPoints, points);
+		}
+	}
+
+	/**
+	 * testGroups(): Retailers are sorted by name and dates oldest first, with their own counts and points.
+	 */
+	@Test
+	public void testGroups() {
+		ReceiptAggregates aggregates = new ReceiptAggregates(1);
+		aggregates.add("Walgreens", LocalDate.parse("2022-01-02"), 10);
+		aggregates.add("Target", LocalDate.parse("2022-01-02"), 28);
+		aggregates.add("Target", LocalDate.parse("2021-12-31"), 2);
+
+		List<ReceiptAggregates.Group> retailers = aggregates.byRetailer();
+		assertEquals(2, retailers.size());
+		assertGroup(retailers.get(0), "Target", 2, 30);
+		assertGroup(retailers.get(1), "Walgreens", 1, 10);
+
+		List<ReceiptAggregates.Group> dates = aggregates.byDate();
+		assertEquals(2, dates.size());
+		assertGroup(dates.get(0), "2021-12-31", 1, 2);
+		assertGroup(dates.get(1), "2022-01-02", 2, 38);
+	}
+
+	/**
+	 * testMaximumGroups(): Retailers beyond the maximum are counted under OTHER, listed last.
+	 */
+	@Test
+	public void testMaximumGroups() {
+		ReceiptAggregates aggregates = new ReceiptAggregates(1, 2);
+		LocalDate date = LocalDate.parse("2022-01-01");
+		for (String retailer : new String[] {"C", "A", "B", "D", "A"}) {
+			aggregates.add(retailer, date, 1);
+		}
+		List<ReceiptAggregates.Group> retailers = aggregates.byRetailer();
+		assertEquals(3, retailers.size());
+		assertGroup(retailers.get(0), "A", 2, 2);
+		assertGroup(retailers.get(1), "C", 1, 1);
+		assertGroup(retailers.get(2), ReceiptAggregates.OTHER, 2, 2);
+	}
+
+	/**
+	 * testStoredReceiptsCounted(): Receipts already in the store, as after a journal replay, are aggregated at startup.
+	 */
+	@Test
+	public void testStoredReceiptsCounted() {
+		MapReceiptStore store = new MapReceiptStore();
+		new ReceiptService(store).save(ReceiptServiceTests.readmeReceipt());
+
+		ReceiptService restarted = new ReceiptService(store);
+		List<ReceiptAggregates.Group> retailers = restarted.getAggregates().byRetailer();
+		assertEquals(1, retailers.size());
+		assertGroup(retailers.get(0), "Target", 1, 28);
+	}
+
+	/**
+	 * testRescoreUnderLoad(): A rescore publishes aggregates of the new points that count every receipt
+	 * once, including those saved while it ran.
+	 */
+	@Test
+	public void testRescoreUnderLoad() throws Exception {
+		ReceiptService service = new ReceiptService(new CompactReceiptStore(true));
+		for (int i = 0; i < 100_000; i++) {
+			service.save(ReceiptServiceTests.readmeReceipt());
+		}
+
+		AtomicBoolean rescoring = new AtomicBoolean(true);
+		ExecutorService threads = Executors.newFixedThreadPool(2);
+		try {
+			Future<?> saving = threads.submit(() -> {
+				while (rescoring.get()) {
+					service.save(ReceiptServiceTests.readmeReceipt());
+				}
+			});
+			service.rescore(PointsRules.compile("item-group:1=3"), new LongAdder());
+			rescoring.set(false);
+			saving.get(10, TimeUnit.SECONDS);
+		} finally {
+			threads.shutdownNow();
+		}
+
+		ReceiptAggregates aggregates = service.getAggregates();
+		assertEquals(2, aggregates.getVersion());
+		assertEquals(1, aggregates.byRetailer().size());
+		assertGroup(aggregates.byRetailer().get(0), "Target", service.countReceipts(), 15 * service.countReceipts());
+	}
+
+	/**
+	 * testEndpoints(): The aggregates endpoints return the groups with the points version.
+	 */
+	@Test
+	public void testEndpoints() {
+		ReceiptService service = new ReceiptService();
+		ApiDelegateImpl apiDelegate = new ApiDelegateImpl(service);
+		service.save(ReceiptServiceTests.readmeReceipt());
+
+		AggregatesResponse retailers = apiDelegate.aggregatesRetailersGet().getBody();
+		assertEquals(Long.valueOf(1), retailers.getVersion());
+		AggregateGroup target = retailers.getGroups().get(0);
+		assertEquals("Target", target.getKey());
+		assertEquals(Long.valueOf(1), target.getReceipts());
+		assertEquals(Long.valueOf(28), target.getPoints());
+
+		AggregatesResponse dates = apiDelegate.aggregatesDatesGet().getBody();
+		assertEquals("2022-01-01", dates.getGroups().get(0).getKey());
+		assertTrue(dates.getGroups().size() == 1);
+	}
+
+	private static void assertGroup(ReceiptAggregates.Group group, String key, long receipts, long points) {
+		assertEquals(key, group.getKey());
+		assertEquals(key, receipts, group.getReceipts());
+		assertEquals(key, points, group.getPoints());
+	}
+
+	// MapReceiptStore keeps the receipt object, so each save gets its own.
+	private static Receipt copy(Receipt receipt) {
+		Receipt copy = new Receipt();
+		copy.setRetailer(receipt.getRetailer());
+		copy.setPurchaseDate(receipt.getPurchaseDate());
+		copy.setPurchaseTime(receipt.getPurchaseTime());
+		copy.setTotal(receipt.getTotal());
+		copy.setItems(receipt.getItems());
+		return copy;
+	}
+}
@@ -0,0 +1,155 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.fetch.api.service.ReceiptBatchProcessor;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.MapReceiptStore;
+import com.fetch.model.Receipt;
+
+/**
+ * Test Class for ReceiptBatchProcessor
+ */
+public class ReceiptBatchProcessorTests {
+
+	private static final String README_RECEIPT = "{\"retailer\":\"Target\",\"purchaseDate\":\"2022-01-01\",\"purchaseTime\":\"13:01\","
+			+ "\"items\":[{\"shortDescription\":\"Mountain Dew 12PK\",\"price\":\"6.49\"},{\"shortDescription\":\"Emils Cheese Pizza\",\"price\":\"12.25\"},"
+			+ "{\"shortDescription\":\"Knorr Creamy Chicken\",\"price\":\"1.26\"},{\"shortDescription\":\"Doritos Nacho Cheese\",\"price\":\"3.35\"},"
+			+ "{\"shortDescription\":\" Klarbrunn 12-PK 12 FL OZ \",\"price\":\"12.00\"}],\"total\":\"35.35\"}";
+
+	private ReceiptService receiptService = new ReceiptService();
+	private ReceiptBatchProcessor batchProcessor = new ReceiptBatchProcessor(receiptService);
+
+	/**
+	 * testNewlineDelimited(): Each line gets its ID or its errors, and bad lines do not stop the upload.
+	 */
+	@Test
+	public void testNewlineDelimited() throws IOException {
+		String upload = README_RECEIPT + "\n\n{\"retailer\":\"Target\"}\r\n{not json\n" + README_RECEIPT + "\n";
+		List<String> results = process(upload);
+
+		assertEquals(4, results.size());
+		assertTrue(results.get(0).startsWith("{\"index\":1,\"id\":\""));
+		assertEquals("{\"index\":3,\"errors\":[\"Invalid Purchase time\",\"Invalid Purchased Date\",\"List of items are empty\",\"Invalid Total\"]}", results.get(1));
+		assertEquals("{\"index\":4,\"errors\":[\"Malformed receipt JSON\"]}", results.get(2));
+		String id = results.get(3).substring("{\"index\":5,\"id\":\"".length(), results.get(3).length() - 2);
+		assertEquals(Long.valueOf(28), receiptService.findPointsById(id));
+	}
+
+	/**
+	 * testJsonArray(): A JSON array upload is processed element by element.
+	 */
+	@Test
+	public void testJsonArray() throws IOException {
+		List<String> results = process("  [" + README_RECEIPT + ", {\"total\":\"1.00\"}, " + README_RECEIPT + "]");
+
+		assertEquals(3, results.size());
+		assertTrue(results.get(0).startsWith("{\"index\":1,\"id\":\""));
+		assertTrue(results.get(1).startsWith("{\"index\":2,\"errors\":[\"Invalid Retailer name\""));
+		assertTrue(results.get(2).startsWith("{\"index\":3,\"id\":\""));
+	}
+
+	/**
+	 * testLargeUploadIsStreamed(): A large generated upload is processed without being held in memory, every receipt saved.
+	 */
+	@Test
+	public void testLargeUploadIsStreamed() throws IOException {
+		int receipts = 100_000;
+		byte[] line = (README_RECEIPT + "\n").getBytes(StandardCharsets.UTF_8);
+		InputStream upload = new InputStream() {
+			private long pos;
+
+			@Override
+			public int read() {
+				return pos < (long) receipts * line.length ? line[(int) (pos++ % line.length)] : -1;
+			}
+		};
+
+		long lines = 0;
+		try (BufferedReader results = new BufferedReader(new InputStreamReader(batchProcessor.process(upload), StandardCharsets.UTF_8))) {
+			String result;
+			while ((result = results.readLine()) != null) {
+				// Lines straddle the chunks the upload is read in, and each must still parse.
+				assertTrue(result, result.startsWith("{\"index\":" + ++lines + ",\"id\":\""));
+			}
+		}
+		assertEquals(receipts, lines);
+	}
+
+	/**
+	 * testJsonArrayElementTooLarge(): An array element over the size limit is reported and skipped,
+	 * and one with a string over the limit ends the stream.
+	 */
+	@Test
+	public void testJsonArrayElementTooLarge() throws IOException {
+		StringBuilder items = new StringBuilder();
+		for (int i = 0; i < 30_000; i++) {
+			items.append(i == 0 ? "" : ",").append("{\"shortDescription\":\"Mountain Dew 12PK\",\"price\":\"6.49\"}");
+		}
+		List<String> results = process("[" + README_RECEIPT + ",{\"retailer\":\"Target\",\"items\":[" + items
+				+ "],\"total\":\"1.00\"}," + README_RECEIPT + "]");
+
+		assertEquals(3, results.size());
+		assertTrue(results.get(0).startsWith("{\"index\":1,\"id\":\""));
+		assertEquals("{\"index\":2,\"errors\":[\"Receipt is larger than 1048576 bytes\"]}", results.get(1));
+		assertTrue(results.get(2).startsWith("{\"index\":3,\"id\":\""));
+
+		String retailer = "T".repeat(2 << 20);
+		results = process("[{\"retailer\":\"" + retailer + "\"}," + README_RECEIPT + "]");
+		assertEquals(List.of("{\"index\":1,\"errors\":[\"Receipt is larger than 1048576 bytes\"]}"), results);
+	}
+
+	/**
+	 * testSaveFailureEndsStream(): A receipt that cannot be saved gets a final error line instead of a cut-off response.
+	 */
+	@Test
+	public void testSaveFailureEndsStream() throws IOException {
+		AtomicInteger puts = new AtomicInteger();
+		receiptService = new ReceiptService(new MapReceiptStore() {
+			@Override
+			public void put(String id, Receipt receipt, long points) {
+				if (puts.incrementAndGet() == 2) {
+					throw new UncheckedIOException(new IOException("Journal write failed"));
+				}
+				super.put(id, receipt, points);
+			}
+		});
+		batchProcessor = new ReceiptBatchProcessor(receiptService);
+
+		for (String upload : new String[] { README_RECEIPT + "\n" + README_RECEIPT + "\n" + README_RECEIPT + "\n",
+				"[" + README_RECEIPT + "," + README_RECEIPT + "," + README_RECEIPT + "]" }) {
+			puts.set(0);
+			List<String> results = process(upload);
+
+			assertEquals(2, results.size());
+			assertTrue(results.get(0).startsWith("{\"index\":1,\"id\":\""));
+			assertEquals("{\"index\":2,\"errors\":[\"Receipt could not be saved; the upload stopped here\"]}", results.get(1));
+		}
+	}
+
+	private List<String> process(String upload) throws IOException {
+		List<String> results = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				batchProcessor.process(new ByteArrayInputStream(upload.getBytes(StandardCharsets.UTF_8))), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				results.add(line);
+			}
+		}
+		return results;
+	}
+}
@@ -0,0 +1,175 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.api.service.ReceiptDeduplicator;
+import com.fetch.api.service.ReceiptFingerprint;
+import com.fetch.api.service.ReceiptParser;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.model.Receipt;
+
+/**
+ * Test Class for ReceiptDeduplicator and ReceiptFingerprint
+ */
+public class ReceiptDeduplicatorTests {
+
+	private ReceiptService receiptService = new ReceiptService();
+	private ReceiptDeduplicator enabled = new ReceiptDeduplicator(receiptService, true, 1000, 1000, Duration.ofHours(1));
+	private ReceiptDeduplicator disabled = new ReceiptDeduplicator(receiptService);
+
+	/**
+	 * testFingerprintIsCanonical(): Equal field values hash the same however they were written.
+	 */
+	@Test
+	public void testFingerprintIsCanonical() throws IOException {
+		Receipt receipt = ReceiptServiceTests.readmeReceipt();
+		Receipt reformatted = ReceiptServiceTests.readmeReceipt();
+		reformatted.setTotal("35.35");
+		reformatted.getItems().get(4).setPrice("12.0");
+		assertEquals(ReceiptFingerprint.of(receipt), ReceiptFingerprint.of(reformatted));
+
+		String json = "{\"total\":\"35.35\",\"purchaseTime\":\"13:01\",\"retailer\":\"Target\",\"purchaseDate\":\"2022-01-01\","
+				+ "\"items\":[{\"price\":\"6.49\",\"shortDescription\":\"Mountain Dew 12PK\"},{\"shortDescription\":\"Emils Cheese Pizza\",\"price\":\"12.25\"},"
+				+ "{\"shortDescription\":\"Knorr Creamy Chicken\",\"price\":\"1.26\"},{\"shortDescription\":\"Doritos Nacho Cheese\",\"price\":\"3.35\"},"
+				+ "{\"shortDescription\":\" Klarbrunn 12-PK 12 FL OZ \",\"price\":\"12.00\"}]}";
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		ReceiptParser parser = new ReceiptParser(new ObjectMapper().getFactory());
+		assertEquals(ReceiptFingerprint.of(receipt), ReceiptFingerprint.of(parser.parse(bytes, 0, bytes.length)));
+	}
+
+	/**
+	 * testFingerprintSeesEveryField(): Changing any field, or moving text between fields, changes the hash.
+	 */
+	@Test
+	public void testFingerprintSeesEveryField() {
+		Receipt receipt = ReceiptServiceTests.readmeReceipt();
+		List<Receipt> changed = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			changed.add(ReceiptServiceTests.readmeReceipt());
+		}
+		changed.get(0).setRetailer("Target ");
+		changed.get(1).setPurchaseDate(receipt.getPurchaseDate().plusDays(1));
+		changed.get(2).setPurchaseTime("13:02");
+		changed.get(3).setTotal("35.36");
+		changed.get(4).getItems().get(0).setPrice("6.48");
+		changed.get(5).getItems().get(0).setShortDescription("Mountain Dew 12P");
+		changed.get(5).getItems().get(1).setShortDescription("KEmils Cheese Pizza");
+		for (Receipt other : changed) {
+			assertNotEquals(ReceiptFingerprint.of(receipt), ReceiptFingerprint.of(other));
+		}
+	}
+
+	/**
+	 * testDisabled(): Without deduplication every submission is stored.
+	 */
+	@Test
+	public void testDisabled() {
+		String first = disabled.save(ReceiptServiceTests.readmeReceipt(), null);
+		String second = disabled.save(ReceiptServiceTests.readmeReceipt(), null);
+
+		assertNotEquals(first, second);
+		assertEquals(2, receiptService.countReceipts());
+	}
+
+	/**
+	 * testDuplicateReturnsStoredId(): A resubmitted receipt gets the stored ID and is not stored again.
+	 */
+	@Test
+	public void testDuplicateReturnsStoredId() {
+		String first = enabled.save(ReceiptServiceTests.readmeReceipt(), null);
+		Receipt again = ReceiptServiceTests.readmeReceipt();
+		again.setTotal("35.35");
+		String second = enabled.save(again, null);
+
+		assertEquals(first, second);
+		assertEquals(1, receiptService.countReceipts());
+		assertEquals(1, enabled.getDuplicates());
+
+		Receipt other = ReceiptServiceTests.readmeReceipt();
+		other.setPurchaseTime("14:01");
+		assertNotEquals(first, enabled.save(other, null));
+		assertEquals(2, receiptService.countReceipts());
+	}
+
+	/**
+	 * testIdempotencyKey(): A repeated key returns the first ID even with deduplication off,
+	 * and a key reused for a different receipt is rejected.
+	 */
+	@Test
+	public void testIdempotencyKey() {
+		String first = disabled.save(ReceiptServiceTests.readmeReceipt(), "order-1");
+		assertEquals(first, disabled.save(ReceiptServiceTests.readmeReceipt(), "order-1"));
+		assertNotEquals(first, disabled.save(ReceiptServiceTests.readmeReceipt(), "order-2"));
+		assertEquals(2, receiptService.countReceipts());
+
+		Receipt other = ReceiptServiceTests.readmeReceipt();
+		other.setRetailer("Walgreens");
+		assertThrows(IllegalStateException.class, () -> disabled.save(other, "order-1"));
+	}
+
+	/**
+	 * testConcurrentDuplicates(): Concurrent submissions of one receipt store it once and all get its ID.
+	 */
+	@Test
+	public void testConcurrentDuplicates() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		Set<String> ids = ConcurrentHashMap.newKeySet();
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < 1000; i++) {
+					ids.add(enabled.save(ReceiptServiceTests.readmeReceipt(), i % 2 == 0 ? null : "retry"));
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		assertEquals(1, ids.size());
+		assertEquals(1, receiptService.countReceipts());
+		assertEquals(7999, enabled.getDuplicates());
+	}
+
+	/**
+	 * testFailedSaveReleasesClaim(): A save that throws leaves the receipt and key free for the next submission.
+	 */
+	@Test
+	public void testFailedSaveReleasesClaim() {
+		ReceiptService failingOnce = new ReceiptService() {
+			private boolean failed;
+
+			@Override
+			public String save(Receipt receipt) {
+				if (!failed) {
+					failed = true;
+					throw new IllegalStateException("Store unavailable");
+				}
+				return super.save(receipt);
+			}
+		};
+		ReceiptDeduplicator deduplicator = new ReceiptDeduplicator(failingOnce, true, 1000, 1000, Duration.ofHours(1));
+
+		assertThrows(IllegalStateException.class, () -> deduplicator.save(ReceiptServiceTests.readmeReceipt(), "order-1"));
+		String id = deduplicator.save(ReceiptServiceTests.readmeReceipt(), "order-1");
+		assertEquals(Long.valueOf(28), failingOnce.findPointsById(id));
+		assertEquals(0, deduplicator.getDuplicates());
+	}
+}
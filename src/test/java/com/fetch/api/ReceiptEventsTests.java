@@ -0,0 +1,130 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fetch.api.jfr.ReceiptIngestEvent;
+import com.fetch.api.jfr.ReceiptRequestEvent;
+import com.fetch.api.jfr.ReceiptSaveEvent;
+import com.fetch.api.jfr.ReceiptValidationEvent;
+import com.fetch.api.service.ApiDelegateImpl;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.model.Receipt;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test Class for the JFR receipt events
+ */
+public class ReceiptEventsTests {
+
+	/**
+	 * testEventsRecorded(): With the thresholds at 0, every ingest, validation and save is recorded with its fields.
+	 */
+	@Test
+	public void testEventsRecorded() throws IOException {
+		ApiDelegateImpl apiDelegateImpl = new ApiDelegateImpl(new ReceiptService());
+		Receipt invalid = ReceiptServiceTests.readmeReceipt();
+		invalid.setTotal("35.3");
+
+		List<RecordedEvent> events;
+		String id;
+		try (Recording recording = new Recording()) {
+			for (String name : new String[] {ReceiptIngestEvent.NAME, ReceiptValidationEvent.NAME, ReceiptSaveEvent.NAME}) {
+				recording.enable(name).withThreshold(Duration.ZERO);
+			}
+			recording.start();
+			ResponseEntity<?> response = apiDelegateImpl.receiptsProcessPost(ReceiptServiceTests.readmeReceipt());
+			id = ApiDelegateImplTests.receiptId(response);
+			assertEquals(HttpStatus.BAD_REQUEST, apiDelegateImpl.receiptsProcessPost(invalid).getStatusCode());
+			recording.stop();
+			events = read(recording);
+		}
+
+		List<RecordedEvent> ingests = named(events, ReceiptIngestEvent.NAME);
+		assertEquals(2, ingests.size());
+		RecordedEvent stored = ingests.get(0).getString("outcome").equals(ReceiptIngestEvent.STORED) ? ingests.get(0) : ingests.get(1);
+		RecordedEvent rejected = stored == ingests.get(0) ? ingests.get(1) : ingests.get(0);
+		assertEquals(id, stored.getString("receiptId"));
+		assertEquals(5, stored.getInt("itemCount"));
+		assertTrue(stored.getDuration("save").toNanos() > 0);
+		assertEquals(ReceiptIngestEvent.INVALID, rejected.getString("outcome"));
+		assertEquals("Invalid Total", rejected.getString("errors"));
+		assertNull(rejected.getString("receiptId"));
+
+		List<RecordedEvent> validations = named(events, ReceiptValidationEvent.NAME);
+		assertEquals(2, validations.size());
+		assertTrue(validations.get(0).getBoolean("valid") != validations.get(1).getBoolean("valid"));
+
+		List<RecordedEvent> saves = named(events, ReceiptSaveEvent.NAME);
+		assertEquals(1, saves.size());
+		assertEquals(id, saves.get(0).getString("receiptId"));
+		assertEquals(1, saves.get(0).getLong("scoringVersion"));
+		assertTrue(saves.get(0).getDuration("scoring").toNanos() > 0);
+	}
+
+	/**
+	 * testThresholdGates(): Every event declares a threshold, and nothing faster than the threshold is recorded.
+	 */
+	@Test
+	public void testThresholdGates() throws IOException {
+		for (Class<? extends Event> type : List.of(ReceiptRequestEvent.class, ReceiptIngestEvent.class,
+				ReceiptValidationEvent.class, ReceiptSaveEvent.class)) {
+			String threshold = EventType.getEventType(type).getSettingDescriptors().stream()
+					.filter(setting -> setting.getName().equals("threshold")).findFirst().get().getDefaultValue();
+			assertTrue(type.getSimpleName() + " " + threshold, threshold.endsWith(" ms") && !threshold.startsWith("0 "));
+		}
+
+		ReceiptService receiptService = new ReceiptService();
+		List<RecordedEvent> events;
+		try (Recording recording = new Recording()) {
+			recording.enable(ReceiptValidationEvent.NAME).withThreshold(Duration.ofHours(1));
+			recording.enable(ReceiptSaveEvent.NAME).withThreshold(Duration.ofHours(1));
+			recording.start();
+			for (int i = 0; i < 1000; i++) {
+				receiptService.validateReceipt(ReceiptServiceTests.readmeReceipt());
+				receiptService.save(ReceiptServiceTests.readmeReceipt());
+			}
+			recording.stop();
+			events = read(recording);
+		}
+		assertEquals(0, named(events, ReceiptValidationEvent.NAME).size());
+		assertEquals(0, named(events, ReceiptSaveEvent.NAME).size());
+	}
+
+	private static List<RecordedEvent> read(Recording recording) throws IOException {
+		Path file = Files.createTempFile("receipts", ".jfr");
+		try {
+			recording.dump(file);
+			return RecordingFile.readAllEvents(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+		List<RecordedEvent> named = new ArrayList<>();
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals(name)) {
+				named.add(event);
+			}
+		}
+		return named;
+	}
+}
@@ -0,0 +1,121 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.fetch.api.service.PointsRules;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.api.store.ReceiptIds;
+import com.fetch.api.store.TimeOrderedIdGenerator;
+
+/**
+ * Test Class for TimeOrderedIdGenerator
+ */
+public class ReceiptIdGeneratorTests {
+
+	private TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator();
+
+	/**
+	 * testVersion7Layout(): IDs are version 7 RFC UUIDs stamped with the current time.
+	 */
+	@Test
+	public void testVersion7Layout() {
+		long before = System.currentTimeMillis();
+		UUID id = generator.next();
+		long after = System.currentTimeMillis();
+
+		assertEquals(7, id.version());
+		assertEquals(2, id.variant());
+		long millis = TimeOrderedIdGenerator.timestampMillis(id.getMostSignificantBits());
+		assertTrue(millis >= before && millis <= after + 1);
+		assertTrue(ReceiptIds.isUuid(id.toString()));
+		assertEquals(id.getMostSignificantBits(), ReceiptIds.mostSignificantBits(id.toString()));
+		assertEquals(id.getLeastSignificantBits(), ReceiptIds.leastSignificantBits(id.toString()));
+	}
+
+	/**
+	 * testUniqueAndOrderedPerThread(): IDs never repeat across threads and increase within each thread,
+	 * even when a thread outruns the 4096 IDs per millisecond sequence.
+	 */
+	@Test
+	public void testUniqueAndOrderedPerThread() throws Exception {
+		int threads = 8;
+		int perThread = 200_000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<UUID>>> results = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				results.add(executor.submit(() -> {
+					List<UUID> ids = new ArrayList<>(perThread);
+					for (int i = 0; i < perThread; i++) {
+						ids.add(generator.next());
+					}
+					return ids;
+				}));
+			}
+			Set<UUID> all = new HashSet<>();
+			for (Future<List<UUID>> result : results) {
+				List<UUID> ids = result.get(30, TimeUnit.SECONDS);
+				for (int i = 1; i < ids.size(); i++) {
+					assertTrue(Long.compareUnsigned(ids.get(i - 1).getMostSignificantBits(), ids.get(i).getMostSignificantBits()) < 0);
+				}
+				all.addAll(ids);
+			}
+			assertEquals(threads * perThread, all.size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * testUniqueAcrossShortLivedThreads(): IDs never repeat when every ID comes from a new thread,
+	 * as with a virtual thread per request, whatever the random bits.
+	 */
+	@Test
+	public void testUniqueAcrossShortLivedThreads() throws Exception {
+		Set<UUID> all = ConcurrentHashMap.newKeySet();
+		Set<String> counters = ConcurrentHashMap.newKeySet();
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 5000; t++) {
+			Thread thread = new Thread(() -> {
+				UUID id = generator.next();
+				all.add(id);
+				// The timestamp, sequence and shard alone, without the random bits.
+				counters.add(id.getMostSignificantBits() + "/" + (id.getLeastSignificantBits() >>> 46));
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(5000, all.size());
+		assertEquals(5000, counters.size());
+	}
+
+	/**
+	 * testSaveWithTimeOrderedIds(): Receipts saved under time-ordered IDs resolve to their points.
+	 */
+	@Test
+	public void testSaveWithTimeOrderedIds() {
+		ReceiptService receiptService = new ReceiptService(new CompactReceiptStore(true), PointsRules.defaults(), generator);
+		String id = receiptService.save(ReceiptServiceTests.readmeReceipt());
+
+		assertEquals(Long.valueOf(28), receiptService.findPointsById(id));
+		assertEquals(7, UUID.fromString(id).version());
+	}
+}
@@ -0,0 +1,375 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+
+import com.fetch.api.model.CustomError;
+import com.fetch.api.service.ApiDelegateImpl;
+import com.fetch.api.service.PointsRules;
+import com.fetch.api.service.ReceiptAggregates;
+import com.fetch.api.service.ReceiptIndex;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.api.store.MapReceiptStore;
+import com.fetch.api.store.ReceiptStore;
+import com.fetch.model.Receipt;
+
+/**
+ * Test Class for ReceiptIndex
+ */
+public class ReceiptIndexTests {
+
+	/**
+	 * testPagesByRetailer(): Following the cursors lists each of the retailer's receipts once, in
+	 * the order they were saved, even with receipts saved between pages.
+	 */
+	@Test
+	public void testPagesByRetailer() {
+		ReceiptService service = new ReceiptService();
+		List<String> target = new ArrayList<>();
+		for (int i = 0; i < 250; i++) {
+			target.add(service.save(ReceiptServiceTests.readmeReceipt()));
+			service.save(receipt("Walgreens", "2022-01-01"));
+		}
+
+		List<String> listed = new ArrayList<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			ReceiptIndex.Page page = service.listByRetailer("Target", cursor, 40);
+			for (ReceiptIndex.Row row = page.next(); row != null; row = page.next()) {
+				assertEquals("Target", row.getRetailer());
+				assertEquals(28, row.getPoints());
+				listed.add(row.getId());
+			}
+			cursor = page.getNextCursor();
+			if (pages++ == 0) {
+				target.add(service.save(ReceiptServiceTests.readmeReceipt()));
+			}
+		} while (cursor != null);
+
+		assertEquals(target, listed);
+		assertEquals(7, pages);
+		assertNull(service.listByRetailer("Costco", null, 40).next());
+	}
+
+	/**
+	 * testRanges(): Date and points ranges list the receipts in them, in key order, across keys and pages.
+	 */
+	@Test
+	public void testRanges() {
+		ReceiptService service = new ReceiptService();
+		String[] dates = {"2022-01-03", "2022-01-01", "2022-01-02", "2022-01-04"};
+		for (int i = 0; i < 40; i++) {
+			service.save(receipt("Target", dates[i % dates.length]));
+		}
+
+		List<ReceiptIndex.Row> january = all(cursor -> service.listByPurchaseDate(LocalDate.parse("2022-01-02"),
+				LocalDate.parse("2022-01-03"), cursor, 7));
+		assertEquals(20, january.size());
+		for (int i = 0; i < january.size(); i++) {
+			assertEquals(i < 10 ? "2022-01-02" : "2022-01-03", january.get(i).getPurchaseDate().toString());
+		}
+		assertEquals(30, all(cursor -> service.listByPurchaseDate(LocalDate.parse("2022-01-02"), null, cursor, 7)).size());
+		assertEquals(10, all(cursor -> service.listByPurchaseDate(null, LocalDate.parse("2022-01-01"), cursor, 7)).size());
+		assertEquals(0, all(cursor -> service.listByPurchaseDate(LocalDate.parse("2022-01-03"),
+				LocalDate.parse("2022-01-02"), cursor, 7)).size());
+
+		// Odd days score 6 more: 28 on the 1st and 3rd, 22 on the 2nd and 4th.
+		List<ReceiptIndex.Row> points = all(cursor -> service.listByPoints(20L, null, cursor, 9));
+		assertEquals(40, points.size());
+		for (int i = 0; i < points.size(); i++) {
+			assertEquals(i < 20 ? 22 : 28, points.get(i).getPoints());
+		}
+		assertEquals(20, all(cursor -> service.listByPoints(23L, 28L, cursor, 9)).size());
+		assertEquals(0, all(cursor -> service.listByPoints(29L, null, cursor, 9)).size());
+	}
+
+	/**
+	 * testConcurrentSaves(): Once saves from several threads are done, every receipt is listed exactly once.
+	 */
+	@Test
+	public void testConcurrentSaves() throws Exception {
+		ReceiptService service = new ReceiptService();
+		ExecutorService threads = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> done = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				done.add(threads.submit(() -> {
+					for (int i = 0; i < 5000; i++) {
+						service.save(receipt(i % 2 == 0 ? "Target" : "Walgreens", "2022-01-0" + (1 + i % 9)));
+					}
+				}));
+			}
+			for (Future<?> future : done) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+
+		for (List<ReceiptIndex.Row> rows : List.of(
+				all(cursor -> service.listByPurchaseDate(null, null, cursor, 1000)),
+				all(cursor -> service.listByPoints(null, null, cursor, 1000)))) {
+			Set<String> ids = new HashSet<>();
+			for (ReceiptIndex.Row row : rows) {
+				ids.add(row.getId());
+			}
+			assertEquals(20_000, rows.size());
+			assertEquals(20_000, ids.size());
+		}
+		assertEquals(10_000, all(cursor -> service.listByRetailer("Walgreens", cursor, 1000)).size());
+	}
+
+	/**
+	 * testEvictedDropped(): Evicted receipts are skipped when listed and dropped once their list grows
+	 * after the eviction, and the index stays within its per-receipt memory bound.
+	 */
+	@Test
+	public void testEvictedDropped() {
+		Set<String> evicted = new HashSet<>();
+		AtomicReference<ReceiptStore.EvictionListener> listener = new AtomicReference<>();
+		MapReceiptStore store = new MapReceiptStore() {
+			@Override
+			public long findPoints(String id) {
+				return evicted.contains(id) ? ReceiptStore.EXPIRED : super.findPoints(id);
+			}
+
+			@Override
+			public void setEvictionListener(EvictionListener evictionListener) {
+				listener.set(evictionListener);
+			}
+		};
+		ReceiptService service = new ReceiptService(store);
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 1024; i++) {
+			ids.add(service.save(ReceiptServiceTests.readmeReceipt()));
+		}
+		long full = service.getIndexEstimatedBytes();
+		assertTrue(full + " bytes", full >= 1024 * 60 && full <= 2 * 1024 * 60 + 3 * 1024);
+
+		for (String id : ids.subList(0, 1000)) {
+			evicted.add(id);
+			UUID uuid = UUID.fromString(id);
+			listener.get().evicted(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+		}
+		assertEquals(24, all(cursor -> service.listByRetailer("Target", cursor, 100)).size());
+		// The next save grows each full list, keeping only the 24 receipts still stored and itself.
+		service.save(ReceiptServiceTests.readmeReceipt());
+		assertEquals(25, all(cursor -> service.listByRetailer("Target", cursor, 100)).size());
+		assertTrue(service.getIndexEstimatedBytes() + " bytes", service.getIndexEstimatedBytes() < full / 10);
+	}
+
+	/**
+	 * testRetailerCap(): Retailers beyond the cap share the OTHER list, from which each is still listed on its own.
+	 */
+	@Test
+	public void testRetailerCap() {
+		ReceiptIndex index = new ReceiptIndex(1, new MapReceiptStore(), 2);
+		Map<Long, String> retailers = new HashMap<>();
+		String[] names = {"A", "B", "C", "D"};
+		for (int i = 1; i <= 40; i++) {
+			retailers.put((long) i, names[i % 4]);
+			index.add(i, i, names[i % 4], null, 0);
+		}
+		ReceiptIndex.RowReader reader = (msb, lsb) -> new ReceiptIndex.Row(Long.toString(msb), retailers.get(msb), null, 0);
+
+		for (String name : names) {
+			List<ReceiptIndex.Row> rows = all(cursor -> index.byRetailer(name, cursor, 3, reader));
+			assertEquals(name, 10, rows.size());
+			assertTrue(rows.stream().allMatch(row -> row.getRetailer().equals(name)));
+		}
+		assertEquals(20, all(cursor -> index.byRetailer(ReceiptAggregates.OTHER, cursor, 3, reader)).size());
+	}
+
+	/**
+	 * testEmptyListsRemoved(): A list whose receipts were all evicted is swept away, and a cursor into it
+	 * goes on with the receipts of the key's new list.
+	 */
+	@Test
+	public void testEmptyListsRemoved() {
+		CompactReceiptStore store = new CompactReceiptStore(false);
+		ReceiptIndex index = new ReceiptIndex(1, store);
+		ReceiptIndex.RowReader reader = (msb, lsb) -> new ReceiptIndex.Row(Long.toString(msb), null, null, 0);
+		for (int i = 1; i <= 10; i++) {
+			store.putPoints(i, i, 0);
+			index.add(i, i, "Gone", null, i);
+		}
+		String cursor = index.byRetailer("Gone", null, 5, reader).getNextCursor();
+		long full = index.getEstimatedBytes();
+
+		for (int i = 1; i <= 10; i++) {
+			store.removePoints(i, i);
+			index.evicted();
+		}
+		// Each save sweeps a few lists, so a handful reach every one of them.
+		for (int i = 11; i <= 20; i++) {
+			store.putPoints(i, i, 0);
+			index.add(i, i, "Kept", null, 0);
+		}
+		assertTrue(index.getEstimatedBytes() + " of " + full + " bytes", index.getEstimatedBytes() < full);
+		assertEquals(0, all(next -> index.byRetailer("Gone", next, 5, reader)).size());
+
+		store.putPoints(21, 21, 0);
+		index.add(21, 21, "Gone", null, 0);
+		ReceiptIndex.Page page = index.byRetailer("Gone", cursor, 5, reader);
+		assertEquals("21", page.next().getId());
+		assertNull(page.next());
+	}
+
+	/**
+	 * testHeapFootprint(): The retained heap per indexed receipt is within the bound of 60 bytes
+	 * across the three indexes, twice over for lists that have just grown, plus the keys, and the
+	 * estimate reported on /metrics is within a factor of two of it.
+	 */
+	@Test
+	public void testHeapFootprint() {
+		int receipts = 200_000;
+		long before = ReceiptStoreTests.usedHeapAfterGc();
+		ReceiptIndex index = new ReceiptIndex(1, new MapReceiptStore());
+		for (int i = 0; i < receipts; i++) {
+			index.add(i, 31L * i, "Retailer " + (i % 100), LocalDate.of(2022, 1, 1).plusDays(i % 365), i % 120);
+		}
+		long measured = ReceiptStoreTests.usedHeapAfterGc() - before;
+		Reference.reachabilityFence(index);
+
+		assertTrue(measured / receipts + " bytes", measured / receipts <= 2 * 60 + 10);
+		assertTrue(index.getEstimatedBytes() + " estimated, " + measured + " measured",
+				index.getEstimatedBytes() > measured / 2 && index.getEstimatedBytes() < measured * 2);
+	}
+
+	/**
+	 * testCursors(): Malformed cursors, cursors from another query and cursors from before a rescore are rejected.
+	 */
+	@Test
+	public void testCursors() {
+		ReceiptService service = new ReceiptService();
+		for (int i = 0; i < 3; i++) {
+			service.save(ReceiptServiceTests.readmeReceipt());
+		}
+		String cursor = service.listByRetailer("Target", null, 1).getNextCursor();
+		assertTrue(cursor != null);
+		assertEquals(2, all(next -> service.listByRetailer("Target", next == null ? cursor : next, 1)).size());
+
+		for (String invalid : new String[] {"not a cursor", "bm90LWEtY3Vyc29y", cursor.substring(1)}) {
+			assertInvalid(() -> service.listByRetailer("Target", invalid, 1), "Invalid cursor.");
+		}
+		assertInvalid(() -> service.listByRetailer("Walgreens", cursor, 1), "Invalid cursor.");
+		assertInvalid(() -> service.listByPoints(null, null, cursor, 1), "Invalid cursor.");
+
+		service.rescore(PointsRules.compile("item-group:1=3"), new LongAdder());
+		assertInvalid(() -> service.listByRetailer("Target", cursor, 1),
+				"The cursor has expired because the points were rescored.");
+		List<ReceiptIndex.Row> rescored = all(next -> service.listByRetailer("Target", next, 1));
+		assertEquals(3, rescored.size());
+		assertEquals(15, rescored.get(0).getPoints());
+	}
+
+	/**
+	 * testEndpoint(): GET /receipts streams one line per receipt with the next cursor in a header,
+	 * and rejects a bad limit or filter combination.
+	 */
+	@Test
+	public void testEndpoint() throws IOException {
+		ReceiptService service = new ReceiptService();
+		ApiDelegateImpl apiDelegate = new ApiDelegateImpl(service);
+		String first = service.save(ReceiptServiceTests.readmeReceipt());
+		String second = service.save(ReceiptServiceTests.readmeReceipt());
+
+		ResponseEntity<Resource> response = apiDelegate.receiptsGet("Target", null, null, null, null, null, 1);
+		List<String> lines = lines(response.getBody());
+		assertEquals(List.of("{\"id\":\"" + first + "\",\"retailer\":\"Target\",\"purchaseDate\":\"2022-01-01\",\"points\":28}"),
+				lines);
+		String cursor = response.getHeaders().getFirst(ApiDelegateImpl.NEXT_CURSOR);
+		response = apiDelegate.receiptsGet("Target", null, null, null, null, cursor, 1);
+		assertTrue(lines(response.getBody()).get(0).contains(second));
+		assertFalse(response.getHeaders().containsKey(ApiDelegateImpl.NEXT_CURSOR));
+
+		assertEquals(2, lines(apiDelegate.receiptsGet(null, LocalDate.parse("2022-01-01"), null, null, null, null, null)
+				.getBody()).size());
+		assertEquals(2, lines(apiDelegate.receiptsGet(null, null, null, 28L, 28L, null, null).getBody()).size());
+
+		Object[][] invalid = {
+			{null, null, null, null, null, null, null},
+			{"Target", null, null, 1L, null, null, null},
+			{"Target", null, null, null, null, null, 0},
+			{"Target", null, null, null, null, null, 1001},
+			{"Target", null, null, null, null, "not a cursor", null},
+		};
+		for (Object[] query : invalid) {
+			try {
+				apiDelegate.receiptsGet((String) query[0], (LocalDate) query[1], (LocalDate) query[2], (Long) query[3],
+						(Long) query[4], (String) query[5], (Integer) query[6]);
+				throw new AssertionError("Query was accepted");
+			} catch (CustomError ex) {
+				assertEquals("400", ex.getCode());
+			}
+		}
+	}
+
+	private static List<ReceiptIndex.Row> all(Function<String, ReceiptIndex.Page> pages) {
+		List<ReceiptIndex.Row> rows = new ArrayList<>();
+		String cursor = null;
+		do {
+			ReceiptIndex.Page page = pages.apply(cursor);
+			for (ReceiptIndex.Row row = page.next(); row != null; row = page.next()) {
+				rows.add(row);
+			}
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+		return rows;
+	}
+
+	private static void assertInvalid(Runnable list, String message) {
+		try {
+			list.run();
+			throw new AssertionError("Cursor was accepted");
+		} catch (IllegalArgumentException ex) {
+			assertEquals(message, ex.getMessage());
+		}
+	}
+
+	private static List<String> lines(Resource body) throws IOException {
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(body.getInputStream(), StandardCharsets.UTF_8))) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	private static Receipt receipt(String retailer, String purchaseDate) {
+		Receipt receipt = ReceiptServiceTests.readmeReceipt();
+		receipt.setRetailer(retailer);
+		receipt.setPurchaseDate(LocalDate.parse(purchaseDate));
+		return receipt;
+	}
+}
@@ -0,0 +1,248 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.BoundedReceiptStore;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.api.store.JournaledReceiptStore;
+import com.fetch.api.store.MapReceiptStore;
+import com.fetch.api.store.ReceiptCodec;
+import com.fetch.api.store.ReceiptJournal;
+
+/**
+ * Test Class for ReceiptJournal
+ */
+public class ReceiptJournalTests {
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * testReplayAfterRestart(): Receipts saved before a restart have the same points after it.
+	 */
+	@Test
+	public void testReplayAfterRestart() throws Exception {
+		List<String> ids = new ArrayList<>();
+		List<Long> points = new ArrayList<>();
+		try (JournaledReceiptStore store = new JournaledReceiptStore(new CompactReceiptStore(true),
+				new ReceiptJournal(directory, 4096, true))) {
+			ReceiptService service = new ReceiptService(store);
+			for (int i = 0; i < 100; i++) {
+				String id = service.save(i % 2 == 0 ? ReceiptServiceTests.readmeReceipt() : ReceiptServiceTests.fixtureReceipts().get(2));
+				ids.add(id);
+				points.add(service.findPointsById(id));
+			}
+		}
+		assertTrue(segmentCount() > 1);
+
+		try (JournaledReceiptStore store = new JournaledReceiptStore(new MapReceiptStore(),
+				new ReceiptJournal(directory, 4096, true))) {
+			assertEquals(100, store.recover());
+			ReceiptService service = new ReceiptService(store);
+			for (int i = 0; i < ids.size(); i++) {
+				assertEquals(points.get(i), service.findPointsById(ids.get(i)));
+			}
+			assertEquals("Target", service.findById(ids.get(0)).getRetailer());
+		}
+	}
+
+	/**
+	 * testGroupCommit(): Concurrent saves are all durable and share flushes.
+	 */
+	@Test
+	public void testGroupCommit() throws Exception {
+		ReceiptJournal journal = new ReceiptJournal(directory, 1 << 20, true);
+		ExecutorService writers = Executors.newFixedThreadPool(16);
+		try (JournaledReceiptStore store = new JournaledReceiptStore(new CompactReceiptStore(false), journal)) {
+			ReceiptService service = new ReceiptService(store);
+			List<Future<String>> saves = new ArrayList<>();
+			for (int i = 0; i < 2000; i++) {
+				saves.add(writers.submit(() -> service.save(ReceiptServiceTests.readmeReceipt())));
+			}
+			for (Future<String> save : saves) {
+				save.get();
+			}
+			assertTrue(journal.getFlushCount() <= 2000);
+		} finally {
+			writers.shutdownNow();
+		}
+
+		try (ReceiptJournal reopened = new ReceiptJournal(directory, 1 << 20, true)) {
+			assertEquals(2000, reopened.replay((msb, lsb, points, writtenMillis, encoded) -> assertEquals(28, points)));
+		}
+	}
+
+	/**
+	 * testTornTailIsTruncated(): A partial record at the end of the newest segment is dropped.
+	 */
+	@Test
+	public void testTornTailIsTruncated() throws Exception {
+		try (JournaledReceiptStore store = new JournaledReceiptStore(new MapReceiptStore(),
+				new ReceiptJournal(directory, 1 << 20, true))) {
+			ReceiptService service = new ReceiptService(store);
+			service.save(ReceiptServiceTests.readmeReceipt());
+			service.save(ReceiptServiceTests.readmeReceipt());
+		}
+		Path segment = lastSegment();
+		long intact = Files.size(segment);
+		try (FileChannel file = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+			file.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 100, 1, 2, 3}));
+		}
+
+		try (ReceiptJournal journal = new ReceiptJournal(directory, 1 << 20, true)) {
+			assertEquals(2, journal.replay((msb, lsb, points, writtenMillis, encoded) -> { }));
+		}
+		assertEquals(intact, Files.size(segment));
+	}
+
+	/**
+	 * testExpiredSkippedOnReplay(): Receipts whose time-to-live passed while the service was down
+	 * are not restored, and the others expire when their time from the original save is up.
+	 */
+	@Test
+	public void testExpiredSkippedOnReplay() throws Exception {
+		byte[] encoded = ReceiptCodec.encode(ReceiptServiceTests.readmeReceipt());
+		long now = System.currentTimeMillis();
+		try (ReceiptJournal journal = new ReceiptJournal(directory, 1 << 20, true)) {
+			journal.append(1, 1, 28, now - Duration.ofHours(2).toMillis(), encoded);
+			journal.append(1, 2, 28, now - Duration.ofMinutes(30).toMillis(), encoded);
+		}
+
+		BoundedReceiptStore bounded = new BoundedReceiptStore(1000, 0, Duration.ofHours(1), true, 1000);
+		try (JournaledReceiptStore store = new JournaledReceiptStore(bounded, new ReceiptJournal(directory, 1 << 20, true))) {
+			assertEquals(1, store.recover());
+			assertFalse(store.contains(1, 1));
+			assertTrue(store.contains(1, 2));
+		}
+		// Compacted after recovery, which close() waits for: the skipped record is gone from the journal.
+		List<Long> replayed = new ArrayList<>();
+		try (ReceiptJournal journal = new ReceiptJournal(directory, 1 << 20, true)) {
+			assertEquals(1, journal.replay((msb, lsb, points, writtenMillis, encodedReceipt) -> replayed.add(lsb)));
+		}
+		assertEquals(Collections.singletonList(2L), replayed);
+
+		AtomicLong nanos = new AtomicLong();
+		bounded = new BoundedReceiptStore(1000, 0, Duration.ofHours(1), true, 1000, nanos::get);
+		try (JournaledReceiptStore store = new JournaledReceiptStore(bounded, new ReceiptJournal(directory, 1 << 20, true))) {
+			assertEquals(1, store.recover());
+			assertTrue(store.contains(1, 2));
+
+			nanos.addAndGet(Duration.ofMinutes(31).toNanos());
+			bounded.cleanUp();
+			assertFalse(store.contains(1, 2));
+		}
+	}
+
+	/**
+	 * testCompaction(): Sealed segments lose the records of receipts that are no longer live: a
+	 * segment with none live is deleted and one at most half live is rewritten, leaving the rest.
+	 */
+	@Test
+	public void testCompaction() throws Exception {
+		byte[] encoded = ReceiptCodec.encode(ReceiptServiceTests.readmeReceipt());
+		long now = System.currentTimeMillis();
+		// Each opening starts a new segment: receipts 0-99, 100-199 and 200-299.
+		for (int segment = 0; segment < 3; segment++) {
+			try (ReceiptJournal journal = new ReceiptJournal(directory, 1 << 20, true)) {
+				for (int i = segment * 100; i < segment * 100 + 100; i++) {
+					journal.append(1, i, i, now, encoded);
+				}
+			}
+		}
+		assertEquals(3, segmentCount());
+
+		// A tenth of the first segment is live, nine tenths of the second and none of the third.
+		Set<Long> live = new HashSet<>();
+		for (long i = 0; i < 200; i++) {
+			if ((i < 100) == (i % 10 == 0)) {
+				live.add(i);
+			}
+		}
+		try (ReceiptJournal journal = new ReceiptJournal(directory, 1 << 20, true)) {
+			assertEquals(90 + 100, journal.compact((msb, lsb) -> live.contains(lsb)));
+			assertEquals(2, segmentCount());
+
+			Set<Long> replayed = ConcurrentHashMap.newKeySet();
+			assertEquals(10 + 100, journal.replay((msb, lsb, points, writtenMillis, encodedReceipt) -> {
+				assertEquals(lsb, points);
+				assertEquals(now, writtenMillis);
+				assertEquals("Target", ReceiptCodec.decode(encodedReceipt).getRetailer());
+				replayed.add(lsb);
+			}));
+			for (long i = 0; i < 300; i++) {
+				assertEquals(i + "", i < 100 ? live.contains(i) : i < 200, replayed.contains(i));
+			}
+		}
+	}
+
+	/**
+	 * testWindowedReplay(): Segments read through mappings smaller than their records replay
+	 * every record intact, and a torn tail is still truncated.
+	 */
+	@Test
+	public void testWindowedReplay() throws Exception {
+		List<String> ids = new ArrayList<>();
+		try (JournaledReceiptStore store = new JournaledReceiptStore(new MapReceiptStore(),
+				new ReceiptJournal(directory, 1 << 20, true))) {
+			ReceiptService service = new ReceiptService(store);
+			for (int i = 0; i < 50; i++) {
+				ids.add(service.save(ReceiptServiceTests.readmeReceipt()));
+			}
+		}
+		Path segment = lastSegment();
+		long intact = Files.size(segment);
+		try (FileChannel file = FileChannel.open(segment, StandardOpenOption.APPEND)) {
+			file.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 100, 1, 2, 3}));
+		}
+
+		for (int windowBytes : new int[] {64, 1000}) {
+			try (JournaledReceiptStore store = new JournaledReceiptStore(new MapReceiptStore(),
+					new ReceiptJournal(directory, 1 << 20, true, windowBytes))) {
+				assertEquals(50, store.recover());
+				ReceiptService service = new ReceiptService(store);
+				for (String id : ids) {
+					assertEquals(Long.valueOf(28), service.findPointsById(id));
+					assertEquals("Target", service.findById(id).getRetailer());
+				}
+			}
+			assertEquals(intact, Files.size(segment));
+		}
+	}
+
+	private long segmentCount() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.count();
+		}
+	}
+
+	private Path lastSegment() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.sorted().reduce((first, second) -> second).get();
+		}
+	}
+}
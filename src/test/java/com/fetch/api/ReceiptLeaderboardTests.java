@@ -0,0 +1,205 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+import com.fetch.api.model.CustomError;
+import com.fetch.api.service.ApiDelegateImpl;
+import com.fetch.api.service.PointsRules;
+import com.fetch.api.service.ReceiptLeaderboard;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.MapReceiptStore;
+import com.fetch.model.LeaderboardEntry;
+import com.fetch.model.LeaderboardResponse;
+import com.fetch.model.Receipt;
+
+/**
+ * Test Class for ReceiptLeaderboard
+ */
+public class ReceiptLeaderboardTests {
+
+	/**
+	 * testTopPoints(): Offered from several threads, the boards hold exactly the highest scores, most first.
+	 */
+	@Test
+	public void testTopPoints() throws Exception {
+		ReceiptLeaderboard leaderboard = new ReceiptLeaderboard(1, new MapReceiptStore());
+		List<Long> offered = Collections.synchronizedList(new ArrayList<>());
+		ExecutorService threads = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> done = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				done.add(threads.submit(() -> {
+					for (int i = 0; i < 25_000; i++) {
+						long points = ThreadLocalRandom.current().nextLong(1_000_000);
+						offered.add(points);
+						leaderboard.add(i, points, i % 2 == 0 ? "Target" : "Walgreens", points);
+					}
+				}));
+			}
+			for (Future<?> future : done) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+
+		offered.sort(Collections.reverseOrder());
+		List<ReceiptLeaderboard.Entry> top = leaderboard.top(ReceiptLeaderboard.SIZE);
+		assertEquals(ReceiptLeaderboard.SIZE, top.size());
+		for (int i = 0; i < top.size(); i++) {
+			assertEquals(offered.get(i).longValue(), top.get(i).getPoints());
+		}
+		assertEquals(10, leaderboard.top(10).size());
+
+		List<ReceiptLeaderboard.Entry> target = leaderboard.top("Target", ReceiptLeaderboard.SIZE);
+		assertEquals(ReceiptLeaderboard.SIZE, target.size());
+		for (int i = 0; i < target.size(); i++) {
+			assertEquals("Target", target.get(i).getRetailer());
+			assertTrue(i == 0 || target.get(i - 1).getPoints() >= target.get(i).getPoints());
+		}
+		assertEquals(0, leaderboard.top("Costco", 10).size());
+	}
+
+	/**
+	 * testTiesKeepFirst(): A receipt that only equals the lowest score on a full board does not replace it.
+	 */
+	@Test
+	public void testTiesKeepFirst() {
+		ReceiptLeaderboard leaderboard = new ReceiptLeaderboard(1, new MapReceiptStore());
+		for (int i = 0; i < ReceiptLeaderboard.SIZE; i++) {
+			leaderboard.add(0, i, "Target", 5);
+		}
+		leaderboard.add(1, 0, "Target", 5);
+		leaderboard.add(1, 1, "Target", 6);
+
+		List<ReceiptLeaderboard.Entry> top = leaderboard.top(ReceiptLeaderboard.SIZE);
+		assertEquals(6, top.get(0).getPoints());
+		assertEquals("00000000-0000-0001-0000-000000000001", top.get(0).getId());
+		for (ReceiptLeaderboard.Entry entry : top.subList(1, top.size())) {
+			assertEquals(5, entry.getPoints());
+			assertTrue(entry.getId().startsWith("00000000-0000-0000-"));
+		}
+	}
+
+	/**
+	 * testEvictedDropped(): Receipts the store evicted are dropped before a read and, once enough
+	 * have been evicted, on the next save, which then takes lower scores again.
+	 */
+	@Test
+	public void testEvictedDropped() {
+		Set<Long> evicted = new HashSet<>();
+		ReceiptLeaderboard leaderboard = new ReceiptLeaderboard(1, new MapReceiptStore() {
+			@Override
+			public boolean contains(long msb, long lsb) {
+				return !evicted.contains(lsb);
+			}
+		});
+		for (int i = 0; i < ReceiptLeaderboard.SIZE; i++) {
+			leaderboard.add(0, i, "Target", 100 + i);
+		}
+		for (long lsb = 90; lsb < ReceiptLeaderboard.SIZE; lsb++) {
+			evicted.add(lsb);
+			leaderboard.evicted();
+		}
+		leaderboard.add(1, 1000, "Target", 50);
+
+		List<ReceiptLeaderboard.Entry> top = leaderboard.top(ReceiptLeaderboard.SIZE);
+		assertEquals(91, top.size());
+		assertEquals(189, top.get(0).getPoints());
+		assertEquals(50, top.get(90).getPoints());
+		assertEquals(91, leaderboard.top("Target", ReceiptLeaderboard.SIZE).size());
+
+		evicted.add(0L);
+		leaderboard.evicted();
+		assertEquals(90, leaderboard.top(ReceiptLeaderboard.SIZE).size());
+	}
+
+	/**
+	 * testSavedReceipts(): Saved receipts are on the leaderboard with their IDs, including those stored before startup.
+	 */
+	@Test
+	public void testSavedReceipts() {
+		MapReceiptStore store = new MapReceiptStore();
+		ReceiptService service = new ReceiptService(store);
+		String readme = service.save(ReceiptServiceTests.readmeReceipt());
+		List<String> ids = new ArrayList<>();
+		for (Receipt receipt : ReceiptServiceTests.fixtureReceipts()) {
+			ids.add(service.save(receipt));
+		}
+
+		ReceiptService restarted = new ReceiptService(store);
+		for (ReceiptService receiptService : List.of(service, restarted)) {
+			List<ReceiptLeaderboard.Entry> target = receiptService.getLeaderboard().top("Target", 10);
+			assertTrue(target.size() >= 1);
+			assertTrue(target.stream().anyMatch(entry -> entry.getId().equals(readme) && entry.getPoints() == 28));
+			List<ReceiptLeaderboard.Entry> top = receiptService.getLeaderboard().top(ReceiptLeaderboard.SIZE);
+			assertEquals(ids.size() + 1, top.size());
+			for (ReceiptLeaderboard.Entry entry : top) {
+				assertEquals(receiptService.findPointsById(entry.getId()).longValue(), entry.getPoints());
+			}
+		}
+	}
+
+	/**
+	 * testRescore(): A rescore publishes a leaderboard of the new points, with each receipt on it once.
+	 */
+	@Test
+	public void testRescore() {
+		ReceiptService service = new ReceiptService();
+		for (int i = 0; i < 3; i++) {
+			service.save(ReceiptServiceTests.readmeReceipt());
+		}
+		service.rescore(PointsRules.compile("item-group:1=3"), new LongAdder());
+
+		ReceiptLeaderboard leaderboard = service.getLeaderboard();
+		assertEquals(2, leaderboard.getVersion());
+		List<ReceiptLeaderboard.Entry> top = leaderboard.top(10);
+		assertEquals(3, top.size());
+		for (ReceiptLeaderboard.Entry entry : top) {
+			assertEquals(15, entry.getPoints());
+		}
+	}
+
+	/**
+	 * testEndpoint(): The leaderboard endpoint returns the entries with the points version, and rejects a bad limit.
+	 */
+	@Test
+	public void testEndpoint() {
+		ReceiptService service = new ReceiptService();
+		ApiDelegateImpl apiDelegate = new ApiDelegateImpl(service);
+		String id = service.save(ReceiptServiceTests.readmeReceipt());
+
+		LeaderboardResponse overall = apiDelegate.leaderboardGet(null, null).getBody();
+		assertEquals(Long.valueOf(1), overall.getVersion());
+		LeaderboardEntry entry = overall.getEntries().get(0);
+		assertEquals(id, entry.getId());
+		assertEquals("Target", entry.getRetailer());
+		assertEquals(Long.valueOf(28), entry.getPoints());
+		assertEquals(1, apiDelegate.leaderboardGet("Target", 5).getBody().getEntries().size());
+		assertEquals(0, apiDelegate.leaderboardGet("Walgreens", 5).getBody().getEntries().size());
+
+		for (int limit : new int[] {0, ReceiptLeaderboard.SIZE + 1}) {
+			try {
+				apiDelegate.leaderboardGet(null, limit);
+				throw new AssertionError("Limit " + limit + " was accepted");
+			} catch (CustomError ex) {
+				assertEquals("400", ex.getCode());
+			}
+		}
+	}
+}
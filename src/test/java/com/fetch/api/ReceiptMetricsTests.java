@@ -0,0 +1,144 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fetch.api.service.LatencyHistogram;
+import com.fetch.api.service.ReceiptMetrics;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.api.store.MapReceiptStore;
+import com.fetch.api.store.ReceiptStore;
+import com.fetch.model.Receipt;
+
+/**
+ * Test Class for ReceiptMetrics, LatencyHistogram and RequestMetricsFilter
+ */
+public class ReceiptMetricsTests {
+
+	/**
+	 * testHistogramPercentiles(): Percentiles are within the bucket precision, and sum and max are exact.
+	 */
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.percentile(0.99));
+		for (long nanos = 1; nanos <= 100_000; nanos++) {
+			histogram.record(nanos * 1000);
+		}
+		assertEquals(100_000, histogram.count());
+		assertEquals(5_000_050_000_000L, histogram.sum());
+		assertEquals(100_000_000, histogram.max());
+		assertEquals(50_000_000, histogram.percentile(0.5), 50_000_000 * 0.016);
+		assertEquals(99_000_000, histogram.percentile(0.99), 99_000_000 * 0.016);
+		assertEquals(100_000_000, histogram.percentile(1.0));
+	}
+
+	/**
+	 * testStagesAreTimed(): Saving, looking up and validating a receipt record into the stage timers.
+	 */
+	@Test
+	public void testStagesAreTimed() {
+		ReceiptService receiptService = new ReceiptService();
+		ReceiptMetrics metrics = receiptService.getMetrics();
+		String id = receiptService.save(ReceiptServiceTests.readmeReceipt());
+		receiptService.findPointsById(id);
+		receiptService.validateReceipt(ReceiptServiceTests.readmeReceipt());
+
+		assertEquals(1, metrics.getTimer(ReceiptMetrics.Timer.INGEST).count());
+		assertEquals(1, metrics.getTimer(ReceiptMetrics.Timer.SCORING).count());
+		assertEquals(1, metrics.getTimer(ReceiptMetrics.Timer.LOOKUP).count());
+		assertEquals(1, metrics.getTimer(ReceiptMetrics.Timer.VALIDATION).count());
+		assertTrue(metrics.getTimer(ReceiptMetrics.Timer.INGEST).sum()
+				>= metrics.getTimer(ReceiptMetrics.Timer.SCORING).sum());
+	}
+
+	/**
+	 * testValidationErrorsCounted(): Each validation message is counted separately, from the models and the parse.
+	 */
+	@Test
+	public void testValidationErrorsCounted() {
+		ReceiptService receiptService = new ReceiptService();
+		Receipt receipt = ReceiptServiceTests.readmeReceipt();
+		receipt.setRetailer("");
+		receipt.setTotal("35.3");
+		receiptService.validateReceipt(receipt);
+		List<String> errors = new ArrayList<>();
+		errors.add("already there");
+		receiptService.parseReceipt(receipt, errors);
+
+		ReceiptMetrics metrics = receiptService.getMetrics();
+		assertEquals(2, metrics.getValidationErrors("Invalid Retailer name"));
+		assertEquals(2, metrics.getValidationErrors("Invalid Total"));
+		assertEquals(0, metrics.getValidationErrors("already there"));
+		assertEquals(0, metrics.getValidationErrors("Invalid Item Price"));
+	}
+
+	/**
+	 * testScrape(): The scrape is in the Prometheus text format with every timer, gauge and error counter.
+	 */
+	@Test
+	public void testScrape() {
+		ReceiptService receiptService = new ReceiptService();
+		receiptService.save(ReceiptServiceTests.readmeReceipt());
+		Receipt receipt = ReceiptServiceTests.readmeReceipt();
+		receipt.setTotal("35.3");
+		receiptService.validateReceipt(receipt);
+
+		String scrape = receiptService.getMetrics().scrape(receiptService.countReceipts(), receiptService.getEstimatedBytes(),
+				receiptService.getIndexEstimatedBytes(), receiptService.getSizeEvictionCount(), receiptService.getExpirationCount());
+		assertTrue(scrape, scrape.contains("# TYPE receipts_request_seconds summary\n"));
+		assertTrue(scrape, scrape.contains("receipts_request_seconds{endpoint=\"process\",quantile=\"0.99\"} 0.0\n"));
+		assertTrue(scrape, scrape.contains("receipts_stage_seconds_count{stage=\"ingest\"} 1\n"));
+		assertTrue(scrape, scrape.contains("receipts_stage_seconds_count{stage=\"validation\"} 1\n"));
+		assertTrue(scrape, scrape.contains("\nreceipts_stored 1\n"));
+		assertTrue(scrape, scrape.contains("\nreceipts_store_estimated_bytes " + receiptService.getEstimatedBytes() + "\n"));
+		assertTrue(scrape, scrape.contains("\nreceipts_index_estimated_bytes " + receiptService.getIndexEstimatedBytes() + "\n"));
+		assertTrue(scrape, scrape.contains("receipts_store_evictions_total{cause=\"size\"} 0\n"));
+		assertTrue(scrape, scrape.contains("receipts_store_evictions_total{cause=\"expired\"} 0\n"));
+		assertTrue(scrape, scrape.contains("receipts_validation_errors_total{error=\"Invalid Total\"} 1\n"));
+		for (String line : scrape.split("\n")) {
+			assertTrue(line, line.startsWith("# ") || line.matches("[a-z_]+(\\{[^}]*\\})? \\S+"));
+		}
+	}
+
+	/**
+	 * testEstimatedBytes(): Every store's estimate grows with the receipts stored in it.
+	 */
+	@Test
+	public void testEstimatedBytes() {
+		for (ReceiptStore store : new ReceiptStore[] {new MapReceiptStore(), new CompactReceiptStore(true),
+				new CompactReceiptStore(false)}) {
+			ReceiptService receiptService = new ReceiptService(store);
+			long empty = store.getEstimatedBytes();
+			for (int i = 0; i < 10_000; i++) {
+				receiptService.save(ReceiptServiceTests.readmeReceipt());
+			}
+			long full = store.getEstimatedBytes();
+			assertTrue(store.getClass().getSimpleName() + " " + empty + " -> " + full, full - empty >= 10_000 * 16);
+			assertTrue(store.getClass().getSimpleName() + " " + full, full < 10_000 * 2048 + empty);
+		}
+	}
+
+	/**
+	 * testEndpointMatching(): Only the receipt endpoints are timed, each under its own timer.
+	 */
+	@Test
+	public void testEndpointMatching() {
+		assertEquals(ReceiptMetrics.Timer.PROCESS, RequestMetricsFilter.endpoint("POST", "/receipts/process"));
+		assertEquals(ReceiptMetrics.Timer.PROCESS_BATCH, RequestMetricsFilter.endpoint("POST", "/receipts/process/batch"));
+		assertEquals(ReceiptMetrics.Timer.POINTS_BATCH, RequestMetricsFilter.endpoint("POST", "/receipts/points/batch"));
+		assertEquals(ReceiptMetrics.Timer.POINTS, RequestMetricsFilter.endpoint("GET", "/receipts/7fb1377b-b223-49d9-a31a-5a02701dd310/points"));
+		assertNull(RequestMetricsFilter.endpoint("GET", "/receipts//points"));
+		assertNull(RequestMetricsFilter.endpoint("GET", "/receipts/a/b/points"));
+		assertNull(RequestMetricsFilter.endpoint("GET", "/receipts/process"));
+		assertNull(RequestMetricsFilter.endpoint("GET", "/metrics"));
+		assertNull(RequestMetricsFilter.endpoint("POST", "/auth/token"));
+	}
+}
@@ -0,0 +1,107 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fetch.api.model.Money;
+import com.fetch.api.model.ParsedReceipt;
+import com.fetch.api.service.ReceiptParser;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.ReceiptCodec;
+import com.fetch.model.Receipt;
+
+/**
+ * Test Class for ReceiptParser
+ */
+public class ReceiptParserTests {
+
+	private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+			.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+	private ReceiptParser receiptParser = new ReceiptParser(objectMapper.getFactory());
+	private ReceiptService receiptService = new ReceiptService();
+
+	/**
+	 * testMatchesModelScoring(): Streamed receipts score and validate exactly like the generated model.
+	 */
+	@Test
+	public void testMatchesModelScoring() throws IOException {
+		for (Receipt receipt : ReceiptServiceTests.fixtureReceipts()) {
+			ParsedReceipt parsed = parse(objectMapper.writeValueAsString(receipt));
+
+			assertTrue(receiptService.validateReceipt(parsed).isEmpty());
+			assertEquals(receiptService.calculatePoints(receipt), receiptService.calculatePoints(parsed));
+		}
+	}
+
+	/**
+	 * testDecodedFields(): Amounts come back in cents, the time in minutes, and unknown fields are skipped.
+	 */
+	@Test
+	public void testDecodedFields() throws IOException {
+		ParsedReceipt parsed = parse("{\"extra\":{\"a\":[1,2]},\"retailer\":\"Target\",\"purchaseDate\":\"2022-01-01\","
+				+ "\"purchaseTime\":\"9:05\",\"total\":\"35.30\",\"items\":[{\"shortDescription\":\"Pizza\",\"price\":\"12.25\",\"sku\":7}]}");
+
+		assertEquals("Target", parsed.getRetailer());
+		assertEquals(LocalDate.of(2022, 1, 1), parsed.getPurchaseDate());
+		assertEquals(9 * 60 + 5, parsed.getPurchaseMinutes());
+		assertEquals(3530, parsed.getTotalCents());
+		assertEquals(1, parsed.getItemCount());
+		assertEquals("Pizza", parsed.getDescription(0));
+		assertEquals(1225, parsed.getPriceCents(0));
+		assertEquals("35.30", ReceiptCodec.decode(ReceiptCodec.encode(parsed)).getTotal());
+		assertEquals("09:05", ReceiptCodec.decode(ReceiptCodec.encode(parsed)).getPurchaseTime());
+	}
+
+	/**
+	 * testInvalidFields(): Bad dates, times and amounts are reported by validateReceipt.
+	 */
+	@Test
+	public void testInvalidFields() throws IOException {
+		ParsedReceipt parsed = parse("{\"retailer\":\"\",\"purchaseDate\":\"2022-02-30\",\"purchaseTime\":\"24:00\","
+				+ "\"total\":\"1.234\",\"items\":[{\"shortDescription\":\"Pizza\",\"price\":\"abc\"}]}");
+
+		assertNull(parsed.getPurchaseDate());
+		assertEquals(ParsedReceipt.INVALID_TIME, parsed.getPurchaseMinutes());
+		assertEquals(Money.INVALID, parsed.getTotalCents());
+		assertEquals(5, receiptService.validateReceipt(parsed).size());
+		assertEquals("Invalid Item Price", receiptService.validateReceipt(parsed).get(3));
+	}
+
+	/**
+	 * testMalformed(): Anything but a single receipt object is rejected.
+	 */
+	@Test
+	public void testMalformed() {
+		assertThrows(JsonProcessingException.class, () -> parse("null"));
+		assertThrows(JsonProcessingException.class, () -> parse("[]"));
+		assertThrows(JsonProcessingException.class, () -> parse("{\"retailer\":\"Target\"} {}"));
+		assertThrows(JsonProcessingException.class, () -> parse("{\"retailer\":"));
+	}
+
+	/**
+	 * testTimeMatchesPattern(): parseMinutes() accepts the same times as isValidTime().
+	 */
+	@Test
+	public void testTimeMatchesPattern() {
+		String[] times = {"0:00", "00:00", "9:59", "13:01", "23:59", "24:00", "9:60", "123:00", "1:5", "ab:cd", "12-00", ""};
+		for (String time : times) {
+			assertEquals(time, ReceiptService.isValidTime(time), ReceiptParser.parseMinutes(time) != ParsedReceipt.INVALID_TIME);
+		}
+	}
+
+	private ParsedReceipt parse(String json) throws IOException {
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		return receiptParser.parse(bytes, 0, bytes.length);
+	}
+}
@@ -0,0 +1,138 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.fetch.api.service.ReceiptService;
+import com.fetch.model.Item;
+import com.fetch.model.Receipt;
+
+/**
+ * Property test for ReceiptService.calculatePoints(): random receipts are scored
+ * against an oracle that applies the README rules with BigDecimal arithmetic.
+ * Set -Dpoints.receipts and -Dpoints.seed to widen or reproduce a run.
+ */
+public class ReceiptPointsPropertyTests {
+
+	private static final int RECEIPTS = Integer.getInteger("points.receipts", 1_000_000);
+	private static final long SEED = Long.getLong("points.seed", 20221001L);
+
+	private static final BigDecimal QUARTER = new BigDecimal("0.25");
+	private static final BigDecimal ONE_FIFTH = new BigDecimal("0.2");
+	private static final String RETAILER_CHARS = "abcXYZ019 &-'.\u00e9";
+
+	private ReceiptService receiptService = new ReceiptService();
+
+	/**
+	 * testMatchesBigDecimalOracle(): Every random receipt scores the same as the oracle.
+	 */
+	@Test
+	public void testMatchesBigDecimalOracle() {
+		SplittableRandom random = new SplittableRandom(SEED);
+		for (int n = 0; n < RECEIPTS; n++) {
+			Receipt receipt = randomReceipt(random);
+			assertEquals("receipt " + n + " with seed " + SEED, oracle(receipt), receiptService.calculatePoints(receipt));
+		}
+	}
+
+	/**
+	 * testRoundingBoundaries(): Prices on and just past whole points, where the rounding up must be exact.
+	 */
+	@Test
+	public void testRoundingBoundaries() {
+		for (String price : new String[] {"0.00", "0.01", "0.35", "4.99", "5.00", "5.01", "10.00", "25.00", "999999995.00"}) {
+			Receipt receipt = receipt("Shop", "1.00", "abc", price);
+			assertEquals(price, oracle(receipt), receiptService.calculatePoints(receipt));
+		}
+	}
+
+	/**
+	 * oracle(): The README rules with exact decimal arithmetic.
+	 */
+	private static long oracle(Receipt receipt) {
+		long points = receipt.getRetailer().codePoints().filter(Character::isLetterOrDigit).count();
+		BigDecimal total = new BigDecimal(receipt.getTotal());
+		if (total.remainder(BigDecimal.ONE).signum() == 0) {
+			points += 50;
+		}
+		if (total.remainder(QUARTER).signum() == 0) {
+			points += 25;
+		}
+		points += receipt.getItems().size() / 2 * 5;
+		for (Item item : receipt.getItems()) {
+			if (item.getShortDescription().trim().length() % 3 == 0) {
+				points += new BigDecimal(item.getPrice()).multiply(ONE_FIFTH).setScale(0, RoundingMode.CEILING).longValueExact();
+			}
+		}
+		if (receipt.getPurchaseDate().getDayOfMonth() % 2 == 1) {
+			points += 6;
+		}
+		String[] time = receipt.getPurchaseTime().split(":");
+		int hour = Integer.parseInt(time[0]);
+		if (hour >= 14 && hour < 16) {
+			points += 10;
+		}
+		return points;
+	}
+
+	private static Receipt randomReceipt(SplittableRandom random) {
+		StringBuilder retailer = new StringBuilder();
+		for (int i = random.nextInt(1, 20); i > 0; i--) {
+			retailer.append(RETAILER_CHARS.charAt(random.nextInt(RETAILER_CHARS.length())));
+		}
+		List<Item> items = new ArrayList<>();
+		for (int i = random.nextInt(1, 12); i > 0; i--) {
+			Item item = new Item();
+			item.setShortDescription(" ".repeat(random.nextInt(3)) + "d".repeat(random.nextInt(1, 12)) + " ".repeat(random.nextInt(3)));
+			item.setPrice(randomAmount(random));
+			items.add(item);
+		}
+		Receipt receipt = new Receipt();
+		receipt.setRetailer(retailer.toString());
+		receipt.setPurchaseDate(LocalDate.ofEpochDay(random.nextInt(0, 40_000)));
+		int hour = random.nextInt(24);
+		receipt.setPurchaseTime((hour < 10 && random.nextBoolean() ? "" : hour < 10 ? "0" : "") + hour + ":"
+				+ String.format("%02d", random.nextInt(60)));
+		receipt.setItems(items);
+		receipt.setTotal(randomAmount(random));
+		return receipt;
+	}
+
+	// Whole dollars, one decimal or two decimals, biased towards quarters and round amounts.
+	private static String randomAmount(SplittableRandom random) {
+		long dollars = random.nextInt(4) == 0 ? random.nextLong(0, 1_000_000_000L) : random.nextInt(0, 100);
+		switch (random.nextInt(4)) {
+			case 0:
+				return Long.toString(dollars);
+			case 1:
+				return dollars + "." + random.nextInt(10);
+			case 2:
+				return dollars + "." + (25 * random.nextInt(4) + 100 + "").substring(1);
+			default:
+				return dollars + "." + (random.nextInt(100) + 100 + "").substring(1);
+		}
+	}
+
+	private static Receipt receipt(String retailer, String total, String description, String price) {
+		Item item = new Item();
+		item.setShortDescription(description);
+		item.setPrice(price);
+		List<Item> items = new ArrayList<>();
+		items.add(item);
+		Receipt receipt = new Receipt();
+		receipt.setRetailer(retailer);
+		receipt.setPurchaseDate(LocalDate.of(2022, 1, 2));
+		receipt.setPurchaseTime("13:01");
+		receipt.setItems(items);
+		receipt.setTotal(total);
+		return receipt;
+	}
+}
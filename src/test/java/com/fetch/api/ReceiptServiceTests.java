@@ -0,0 +1,208 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+import com.fetch.api.service.PointsRules;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.model.Item;
+import com.fetch.model.Receipt;
+
+/**
+ * Test Class for ReceiptService
+ */
+public class ReceiptServiceTests {
+
+	private ReceiptService receiptService = new ReceiptService();
+
+	/**
+	 * receipt(): To build a receipt from the given item data.
+	 */
+	private static Receipt receipt(String retailer, String date, String time, String total, String[][] itemData) {
+		List<Item> items = new ArrayList<>();
+		for (String[] data : itemData) {
+			Item item = new Item();
+			item.setShortDescription(data[0]);
+			item.setPrice(data[1]);
+			items.add(item);
+		}
+		Receipt receipt = new Receipt();
+		receipt.setRetailer(retailer);
+		receipt.setPurchaseDate(LocalDate.parse(date));
+		receipt.setPurchaseTime(time);
+		receipt.setItems(items);
+		receipt.setTotal(total);
+		return receipt;
+	}
+
+	/**
+	 * readmeReceipt(): The sample receipt given in the README.
+	 */
+	static Receipt readmeReceipt() {
+		return receipt("Target", "2022-01-01", "13:01", "35.35", new String[][] {
+			{"Mountain Dew 12PK", "6.49"},
+			{"Emils Cheese Pizza", "12.25"},
+			{"Knorr Creamy Chicken", "1.26"},
+			{"Doritos Nacho Cheese", "3.35"},
+			{" Klarbrunn 12-PK 12 FL OZ ", "12.00"}
+		});
+	}
+
+	/**
+	 * fixtureReceipts(): The receipts used by ApiDelegateImplTests.
+	 */
+	static List<Receipt> fixtureReceipts() {
+		List<Receipt> receipts = new ArrayList<>();
+		receipts.add(receipt("RetailerName", LocalDate.now().toString(), "13:01", "6.49", new String[][] {
+			{"testProduct", "2.20"}
+		}));
+		receipts.add(receipt("Target", "2022-01-01", "13:01", "35.35", new String[][] {
+			{"Mountain Dew 12PK", "6.49"},
+			{"Emils Cheese Pizza", "12.25"},
+			{"Knorr Creamy Chicken", "1.26"},
+			{"Doritos Nacho Cheese", "3.35"},
+			{"   Klarbrunn 12-PK 12 FL OZ  ", "12.00"}
+		}));
+		receipts.add(receipt("M&M Corner Market", "2022-03-20", "14:33", "9.00", new String[][] {
+			{"Gatorade", "2.25"},
+			{"Gatorade", "2.25"},
+			{"Gatorade", "2.25"},
+			{"Gatorade", "2.25"}
+		}));
+		return receipts;
+	}
+
+	/**
+	 * testPrecomputedPointsReadmeSample(): Points stored at ingest match points calculated on demand.
+	 */
+	@Test
+	public void testPrecomputedPointsReadmeSample() {
+		String id = receiptService.save(readmeReceipt());
+
+		assertEquals(Long.valueOf(28), receiptService.findPointsById(id));
+		assertEquals(receiptService.calculatePoints(receiptService.findById(id)), (long) receiptService.findPointsById(id));
+	}
+
+	/**
+	 * testPrecomputedPointsFixtures(): Points stored at ingest match points calculated on demand for the fixtures.
+	 */
+	@Test
+	public void testPrecomputedPointsFixtures() {
+		for (Receipt receipt : fixtureReceipts()) {
+			String id = receiptService.save(receipt);
+			assertEquals(receiptService.calculatePoints(receipt), (long) receiptService.findPointsById(id));
+		}
+	}
+
+	/**
+	 * testPointsUnknownId(): Unknown IDs have no points.
+	 */
+	@Test
+	public void testPointsUnknownId() {
+		assertNull(receiptService.findPointsById("1233"));
+	}
+
+	/**
+	 * testReadAfterWrite(): An ID handed to another thread always resolves to its points.
+	 */
+	@Test
+	public void testReadAfterWrite() throws Exception {
+		ExecutorService readers = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Long>> reads = new ArrayList<>();
+			for (int i = 0; i < 1000; i++) {
+				String id = receiptService.save(readmeReceipt());
+				reads.add(readers.submit(() -> receiptService.findPointsById(id)));
+			}
+			for (Future<Long> read : reads) {
+				Long points = read.get(10, TimeUnit.SECONDS);
+				assertNotNull(points);
+				assertEquals(28L, (long) points);
+			}
+		} finally {
+			readers.shutdownNow();
+		}
+	}
+
+	/**
+	 * testRescore(): A rescore republishes the points of every stored receipt under the new rules.
+	 */
+	@Test
+	public void testRescore() {
+		for (ReceiptService service : new ReceiptService[] {receiptService, new ReceiptService(new CompactReceiptStore(true))}) {
+			String id = service.save(readmeReceipt());
+			LongAdder progress = new LongAdder();
+
+			assertEquals(2, service.rescore(PointsRules.compile("item-group:1=3"), progress));
+			assertEquals(1, progress.sum());
+			assertEquals(Long.valueOf(15), service.findPointsById(id));
+			assertEquals(Long.valueOf(15), service.findPointsById(service.save(readmeReceipt())));
+		}
+	}
+
+	/**
+	 * testRescoreUnderLoad(): Saves carry on during a rescore, none is left with old points, and a
+	 * batch lookup never mixes old and new points.
+	 */
+	@Test
+	public void testRescoreUnderLoad() throws Exception {
+		ReceiptService service = new ReceiptService(new CompactReceiptStore(true));
+		List<String> watched = new ArrayList<>();
+		for (int i = 0; i < 200_000; i++) {
+			String id = service.save(readmeReceipt());
+			if (i % 1000 == 0) {
+				watched.add(id);
+			}
+		}
+
+		AtomicBoolean rescoring = new AtomicBoolean(true);
+		ExecutorService threads = Executors.newFixedThreadPool(3);
+		try {
+			Future<List<String>> saved = threads.submit(() -> {
+				List<String> ids = new ArrayList<>();
+				while (rescoring.get()) {
+					ids.add(service.save(readmeReceipt()));
+				}
+				return ids;
+			});
+			Future<Boolean> neverMixed = threads.submit(() -> {
+				while (rescoring.get()) {
+					long[] points = service.findPointsByIds(watched);
+					for (long p : points) {
+						if (p != points[0]) {
+							return false;
+						}
+					}
+				}
+				return true;
+			});
+			service.rescore(PointsRules.compile("item-group:1=3"), new LongAdder());
+			rescoring.set(false);
+
+			assertTrue(neverMixed.get(10, TimeUnit.SECONDS));
+			for (String id : saved.get(10, TimeUnit.SECONDS)) {
+				assertEquals(Long.valueOf(15), service.findPointsById(id));
+			}
+			for (String id : watched) {
+				assertEquals(Long.valueOf(15), service.findPointsById(id));
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+}
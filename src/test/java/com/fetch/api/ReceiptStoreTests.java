@@ -0,0 +1,268 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fetch.api.service.ApiDelegateImpl;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.BoundedReceiptStore;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.api.store.MapReceiptStore;
+import com.fetch.api.store.ReceiptCodec;
+import com.fetch.api.store.ReceiptIds;
+import com.fetch.api.store.ReceiptStore;
+import com.fetch.model.Item;
+import com.fetch.model.Receipt;
+
+/**
+ * Test Class for the ReceiptStore implementations
+ */
+public class ReceiptStoreTests {
+
+	private static final int FOOTPRINT_RECEIPTS = 50_000;
+
+	/**
+	 * testCompactStoreMatchesMapStore(): Both stores return the same points and receipts.
+	 */
+	@Test
+	public void testCompactStoreMatchesMapStore() {
+		ReceiptService mapService = new ReceiptService(new MapReceiptStore());
+		ReceiptService compactService = new ReceiptService(new CompactReceiptStore(true));
+
+		for (Receipt receipt : ReceiptServiceTests.fixtureReceipts()) {
+			String mapId = mapService.save(receipt);
+			String compactId = compactService.save(receipt);
+			assertEquals(mapService.findPointsById(mapId), compactService.findPointsById(compactId));
+			assertEquals(receipt.getRetailer(), compactService.findById(compactId).getRetailer());
+			assertEquals(receipt.getItems().size(), compactService.findById(compactId).getItems().size());
+		}
+		assertNull(compactService.findPointsById("1233"));
+		assertNull(compactService.findPointsById(UUID.randomUUID().toString()));
+	}
+
+	/**
+	 * testUpperCaseIds(): Every store keys receipts under the lower-case ID only, and the API
+	 * lowers the IDs it is sent, so an upper-case ID finds the receipt whatever the store.
+	 */
+	@Test
+	public void testUpperCaseIds() {
+		for (ReceiptStore store : List.of(new MapReceiptStore(), new CompactReceiptStore(true),
+				new BoundedReceiptStore(1000, 0, Duration.ZERO, true, 1000))) {
+			ReceiptService service = new ReceiptService(store);
+			ApiDelegateImpl apiDelegate = new ApiDelegateImpl(service);
+			String id = service.save(ReceiptServiceTests.readmeReceipt());
+			String upper = id.toUpperCase(Locale.ROOT);
+
+			assertEquals(ReceiptStore.MISSING, store.findPoints(upper));
+			ResponseEntity<?> response = apiDelegate.receiptsIdPointsGet(upper);
+			assertEquals(Long.valueOf(28), ApiDelegateImplTests.points(response));
+			assertEquals(ApiDelegateImpl.pointsETag(id, 1), response.getHeaders().getETag());
+			assertEquals(id, ReceiptIds.canonical(upper));
+		}
+	}
+
+	/**
+	 * testCompactStoreGrows(): Entries survive segment resizes.
+	 */
+	@Test
+	public void testCompactStoreGrows() {
+		CompactReceiptStore store = new CompactReceiptStore(false);
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 100_000; i++) {
+			String id = UUID.randomUUID().toString();
+			store.put(id, null, i);
+			ids.add(id);
+		}
+		assertEquals(100_000, store.size());
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals(i, store.findPoints(ids.get(i)));
+		}
+		assertNull(store.findReceipt(ids.get(0)));
+	}
+
+	/**
+	 * testCompactStoreRemoves(): Removed entries are gone and the ones probed past them are still found.
+	 */
+	@Test
+	public void testCompactStoreRemoves() {
+		CompactReceiptStore store = new CompactReceiptStore(false);
+		List<UUID> ids = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			UUID id = UUID.randomUUID();
+			store.putPoints(id.getMostSignificantBits(), id.getLeastSignificantBits(), i);
+			ids.add(id);
+		}
+		for (int i = 0; i < ids.size(); i += 2) {
+			assertTrue(store.removePoints(ids.get(i).getMostSignificantBits(), ids.get(i).getLeastSignificantBits()));
+		}
+		assertEquals(5_000, store.size());
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals(i % 2 == 0 ? ReceiptStore.MISSING : i,
+					store.findPoints(ids.get(i).getMostSignificantBits(), ids.get(i).getLeastSignificantBits()));
+		}
+		assertFalse(store.removePoints(ids.get(0).getMostSignificantBits(), ids.get(0).getLeastSignificantBits()));
+	}
+
+	/**
+	 * testBoundedStoreSizeEviction(): The store stays within its entry bound and evicted IDs read as expired.
+	 */
+	@Test
+	public void testBoundedStoreSizeEviction() {
+		BoundedReceiptStore store = new BoundedReceiptStore(100, 0, Duration.ZERO, false, 1000);
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			String id = UUID.randomUUID().toString();
+			store.put(id, null, i);
+			ids.add(id);
+		}
+		store.cleanUp();
+
+		assertTrue(store.size() <= 100);
+		assertEquals(1000 - store.size(), store.getSizeEvictionCount());
+		assertEquals(0, store.getExpirationCount());
+		long expired = ids.stream().filter(id -> store.findPoints(id) == ReceiptStore.EXPIRED).count();
+		assertEquals(store.getSizeEvictionCount(), expired);
+		assertEquals(ReceiptStore.MISSING, store.findPoints(UUID.randomUUID().toString()));
+	}
+
+	/**
+	 * testBoundedStoreByteBudget(): The estimated bytes stay within the byte budget.
+	 */
+	@Test
+	public void testBoundedStoreByteBudget() {
+		BoundedReceiptStore store = new BoundedReceiptStore(0, 64 * 1024, Duration.ZERO, true, 1000);
+		ReceiptService service = new ReceiptService(store);
+		for (int i = 0; i < 2000; i++) {
+			service.save(ReceiptServiceTests.readmeReceipt());
+		}
+		store.cleanUp();
+
+		assertTrue(store.getEstimatedBytes() <= 64 * 1024);
+		assertTrue(store.getSizeEvictionCount() > 0);
+	}
+
+	/**
+	 * testBoundedStoreExpiry(): Receipts past their time-to-live read as expired through the API.
+	 */
+	@Test
+	public void testBoundedStoreExpiry() {
+		AtomicLong nanos = new AtomicLong();
+		BoundedReceiptStore store = new BoundedReceiptStore(1000, 0, Duration.ofMinutes(1), true, 1000, nanos::get);
+		ReceiptService service = new ReceiptService(store);
+		ApiDelegateImpl apiDelegate = new ApiDelegateImpl(service);
+		String id = service.save(ReceiptServiceTests.readmeReceipt());
+
+		assertEquals(Long.valueOf(28), ApiDelegateImplTests.points(apiDelegate.receiptsIdPointsGet(id)));
+
+		nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+		store.cleanUp();
+		ResponseEntity<?> expired = apiDelegate.receiptsIdPointsGet(id);
+
+		assertEquals(HttpStatus.GONE, expired.getStatusCode());
+		assertEquals("Receipt ID has expired.", ApiDelegateImplTests.errorMessage(expired));
+		assertEquals(1, store.getExpirationCount());
+		assertEquals(HttpStatus.NOT_FOUND, apiDelegate.receiptsIdPointsGet(UUID.randomUUID().toString()).getStatusCode());
+	}
+
+	/**
+	 * testCodecRoundTrip(): Encoded receipts decode to the same values, with amounts in two decimals.
+	 */
+	@Test
+	public void testCodecRoundTrip() {
+		Receipt receipt = ReceiptServiceTests.readmeReceipt();
+		Receipt decoded = ReceiptCodec.decode(ReceiptCodec.encode(receipt));
+
+		assertEquals(receipt, decoded);
+
+		Receipt fixture = ReceiptServiceTests.fixtureReceipts().get(0);
+		fixture.getItems().get(0).setPrice("2.2");
+		assertEquals("2.20", ReceiptCodec.decode(ReceiptCodec.encode(fixture)).getItems().get(0).getPrice());
+	}
+
+	/**
+	 * testHeapFootprint(): The compact store retains a fraction of the heap of the map store.
+	 */
+	@Test
+	public void testHeapFootprint() {
+		long mapBytes = footprint(new MapReceiptStore());
+		long compactBytes = footprint(new CompactReceiptStore(true));
+		long pointsOnlyBytes = footprint(new CompactReceiptStore(false));
+
+		assertTrue(mapBytes + " vs " + compactBytes, mapBytes > 3 * compactBytes);
+		assertTrue(mapBytes + " vs " + pointsOnlyBytes, mapBytes > 10 * pointsOnlyBytes);
+	}
+
+	/**
+	 * footprint(): Retained heap of a store filled with distinct receipts, measured after
+	 * collecting the service that filled it.
+	 */
+	private static long footprint(ReceiptStore store) {
+		long before = usedHeapAfterGc();
+		fill(store);
+		long after = usedHeapAfterGc();
+		Reference.reachabilityFence(store);
+		return after - before;
+	}
+
+	private static void fill(ReceiptStore store) {
+		ReceiptService service = new ReceiptService(store);
+		for (int i = 0; i < FOOTPRINT_RECEIPTS; i++) {
+			service.save(distinctReceipt(i));
+		}
+	}
+
+	/**
+	 * usedHeapAfterGc(): Heap in use once repeated collections stop freeing anything.
+	 */
+	static long usedHeapAfterGc() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			long now = memory.getHeapMemoryUsage().getUsed();
+			if (now >= used) {
+				break;
+			}
+			used = now;
+		}
+		return used;
+	}
+
+	/**
+	 * distinctReceipt(): A README-like receipt whose strings are not shared with other receipts.
+	 */
+	private static Receipt distinctReceipt(int n) {
+		List<Item> items = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Item item = new Item();
+			item.setShortDescription("Product " + n + " line " + i);
+			item.setPrice((n % 50) + "." + (10 + i));
+			items.add(item);
+		}
+		Receipt receipt = new Receipt();
+		receipt.setRetailer("Retailer " + n);
+		receipt.setPurchaseDate(LocalDate.of(2022, 1, 1).plusDays(n % 365));
+		receipt.setPurchaseTime(String.format("%02d:%02d", n % 24, n % 60));
+		receipt.setItems(items);
+		receipt.setTotal((n % 100) + ".25");
+		return receipt;
+	}
+}
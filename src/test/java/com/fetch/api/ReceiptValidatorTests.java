@@ -0,0 +1,120 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import com.fetch.api.model.Money;
+import com.fetch.api.model.ParsedReceipt;
+import com.fetch.api.service.ReceiptValidator;
+import com.fetch.model.Receipt;
+
+/**
+ * Test Class for ReceiptValidator
+ */
+public class ReceiptValidatorTests {
+
+	private static final String ALPHABET = "aZ09_ -&.\t\n!\u00e9\u00a0$[]";
+
+	/**
+	 * testScannersMatchRegex(): Every pattern in api.yml, and a few others, compile to scanners
+	 * that accept exactly what java.util.regex accepts.
+	 */
+	@Test
+	public void testScannersMatchRegex() throws IOException {
+		List<String> patterns = specPatterns();
+		assertTrue(patterns.contains("^[\\w\\s\\-&]+$"));
+		assertTrue(patterns.contains("^\\d+\\.\\d{2}$"));
+		patterns.addAll(Arrays.asList("^[a-z0-9_-]*$", "[A-Z&&[^Q]]+", "^[.$]+$", "^(ab)+$"));
+
+		SplittableRandom random = new SplittableRandom(17);
+		for (String regex : patterns) {
+			ReceiptValidator.Scanner scanner = ReceiptValidator.compile(regex);
+			Pattern pattern = Pattern.compile(regex);
+			assertFalse(regex, scanner.matches(null));
+			for (int n = 0; n < 20_000; n++) {
+				StringBuilder s = new StringBuilder();
+				int length = random.nextInt(7);
+				for (int i = 0; i < length; i++) {
+					s.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+				}
+				assertEquals(regex + " on \"" + s + "\"", pattern.matcher(s).matches(), scanner.matches(s));
+			}
+		}
+	}
+
+	/**
+	 * testAmountCents(): Only "digits.dd" amounts convert, without overflowing.
+	 */
+	@Test
+	public void testAmountCents() {
+		assertEquals(0, ReceiptValidator.amountCents("0.00"));
+		assertEquals(3535, ReceiptValidator.amountCents("35.35"));
+		assertEquals(9223372036854775799L, ReceiptValidator.amountCents("92233720368547757.99"));
+		for (String amount : new String[] {"1.2", ".12", "1.234", "-1.00", "1,00", "12", "", "1.0a", "92233720368547758.00"}) {
+			assertEquals(amount, Money.INVALID, ReceiptValidator.amountCents(amount));
+		}
+	}
+
+	/**
+	 * testSpecConstraints(): The README receipt converts for scoring, and each api.yml pattern is enforced.
+	 */
+	@Test
+	public void testSpecConstraints() {
+		List<String> errors = new ArrayList<>();
+		ParsedReceipt parsed = ReceiptValidator.SPEC.validate(ReceiptServiceTests.readmeReceipt(), errors);
+
+		assertTrue(errors.isEmpty());
+		assertNotNull(parsed);
+		assertEquals(13 * 60 + 1, parsed.getPurchaseMinutes());
+		assertEquals(3535, parsed.getTotalCents());
+		assertArrayEquals(new long[] {649, 1225, 126, 335, 1200},
+				new long[] {parsed.getPriceCents(0), parsed.getPriceCents(1), parsed.getPriceCents(2), parsed.getPriceCents(3), parsed.getPriceCents(4)});
+
+		assertEquals("Invalid Retailer name", firstError(receipt -> receipt.setRetailer("Target!")));
+		assertEquals("Invalid Item Description", firstError(receipt -> receipt.getItems().get(1).setShortDescription("Pizza*")));
+		assertEquals("Invalid Item Price", firstError(receipt -> receipt.getItems().get(2).setPrice("1.2")));
+		assertEquals("Invalid Total", firstError(receipt -> receipt.setTotal("35.355")));
+		assertEquals("Invalid Purchase time", firstError(receipt -> receipt.setPurchaseTime("24:00")));
+	}
+
+	private static String firstError(Consumer<Receipt> change) {
+		Receipt receipt = ReceiptServiceTests.readmeReceipt();
+		change.accept(receipt);
+		List<String> errors = new ArrayList<>();
+		assertNull(ReceiptValidator.SPEC.validate(receipt, errors));
+		assertEquals(1, errors.size());
+		return errors.get(0);
+	}
+
+	// The patterns in api.yml, unescaped from their YAML double-quoted form.
+	private static List<String> specPatterns() throws IOException {
+		List<String> patterns = new ArrayList<>();
+		try (InputStream in = ReceiptValidatorTests.class.getResourceAsStream("/api.yml")) {
+			Matcher matcher = Pattern.compile("pattern: \"(.*)\"").matcher(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			while (matcher.find()) {
+				String regex = matcher.group(1).replace("\\\\", "\\");
+				if (!patterns.contains(regex)) {
+					patterns.add(regex);
+				}
+			}
+		}
+		return patterns;
+	}
+}
@@ -0,0 +1,144 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+import com.fetch.api.service.PointsRules;
+import com.fetch.api.service.ReceiptService;
+import com.fetch.api.store.CompactReceiptStore;
+import com.fetch.api.store.ReceiptCodec;
+import com.fetch.api.store.StringDictionary;
+import com.fetch.model.Item;
+import com.fetch.model.Receipt;
+
+/**
+ * Test Class for StringDictionary and the dictionary encoding of ReceiptCodec
+ */
+public class StringDictionaryTests {
+
+	/**
+	 * testCodes(): Equal strings share one code and one instance, with their facts cached.
+	 */
+	@Test
+	public void testCodes() {
+		StringDictionary dictionary = new StringDictionary(10);
+		int code = dictionary.code("Target");
+
+		assertEquals(code, dictionary.code(new String("Target")));
+		assertNotEquals(code, dictionary.code("Walgreens"));
+		assertEquals("Target", dictionary.string(code));
+		assertSame(dictionary.string(code), dictionary.intern(new String("Target")));
+		assertEquals(14, dictionary.letterOrDigitCount("M&M Corner Market"));
+		assertEquals(24, dictionary.trimmedLength("   Klarbrunn 12-PK 12 FL OZ  "));
+		assertEquals(StringDictionary.NO_CODE, dictionary.code(null));
+		assertEquals(4, dictionary.size());
+	}
+
+	/**
+	 * testBounded(): Once the table is full, new strings get no code but their facts are still right.
+	 */
+	@Test
+	public void testBounded() {
+		StringDictionary dictionary = new StringDictionary(2);
+		dictionary.code("a");
+		dictionary.code("b");
+		String other = new String("c c ");
+
+		assertEquals(StringDictionary.NO_CODE, dictionary.code(other));
+		assertSame(other, dictionary.intern(other));
+		assertEquals(2, dictionary.letterOrDigitCount(other));
+		assertEquals(3, dictionary.trimmedLength(other));
+		assertEquals(2, dictionary.size());
+	}
+
+	/**
+	 * testConcurrentCoding(): Threads coding the same strings agree on one dense code per string.
+	 */
+	@Test
+	public void testConcurrentCoding() throws Exception {
+		StringDictionary dictionary = new StringDictionary(5000);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<int[]>> futures = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			futures.add(executor.submit(() -> {
+				int[] codes = new int[1000];
+				for (int i = 0; i < codes.length; i++) {
+					codes[i] = dictionary.code("item " + i);
+				}
+				return codes;
+			}));
+		}
+		int[] first = futures.get(0).get();
+		for (Future<int[]> future : futures) {
+			int[] codes = future.get();
+			for (int i = 0; i < codes.length; i++) {
+				assertEquals(first[i], codes[i]);
+				assertEquals("item " + i, dictionary.string(codes[i]));
+			}
+		}
+		executor.shutdown();
+		assertEquals(1000, dictionary.size());
+	}
+
+	/**
+	 * testCodecRoundTrip(): Dictionary and self-contained encodings decode to the same receipt,
+	 * and a repeated receipt costs fewer bytes with codes.
+	 */
+	@Test
+	public void testCodecRoundTrip() {
+		StringDictionary dictionary = new StringDictionary(100);
+		Receipt receipt = ReceiptServiceTests.readmeReceipt();
+		byte[] inline = ReceiptCodec.encode(receipt);
+		byte[] coded = ReceiptCodec.encode(receipt, dictionary);
+		byte[] interned = ReceiptCodec.intern(inline, dictionary);
+
+		assertEquals(ReceiptCodec.decode(inline), ReceiptCodec.decode(coded, dictionary));
+		assertEquals(ReceiptCodec.decode(inline), ReceiptCodec.decode(interned, dictionary));
+		assertTrue(coded.length * 3 < inline.length);
+
+		StringDictionary full = new StringDictionary(1);
+		assertEquals(ReceiptCodec.decode(inline), ReceiptCodec.decode(ReceiptCodec.encode(receipt, full), full));
+	}
+
+	/**
+	 * testStoreWithDictionary(): A compact store with a dictionary keeps receipts and points intact,
+	 * including through a rescore that decodes them.
+	 */
+	@Test
+	public void testStoreWithDictionary() {
+		StringDictionary dictionary = new StringDictionary(100);
+		AtomicLong ids = new AtomicLong();
+		ReceiptService receiptService = new ReceiptService(new CompactReceiptStore(true, dictionary), PointsRules.defaults(),
+				() -> new UUID(1, ids.incrementAndGet()), dictionary);
+		List<String> saved = new ArrayList<>();
+		for (Receipt receipt : ReceiptServiceTests.fixtureReceipts()) {
+			saved.add(receiptService.save(receipt));
+		}
+		List<Receipt> fixtures = ReceiptServiceTests.fixtureReceipts();
+		for (int i = 0; i < saved.size(); i++) {
+			Receipt expected = ReceiptCodec.decode(ReceiptCodec.encode(fixtures.get(i)));
+			assertEquals(expected, receiptService.findById(saved.get(i)));
+			assertEquals(Long.valueOf(new ReceiptService().calculatePoints(fixtures.get(i))), receiptService.findPointsById(saved.get(i)));
+		}
+		Item item = receiptService.findById(saved.get(0)).getItems().get(0);
+		assertSame(dictionary.intern(item.getShortDescription()), item.getShortDescription());
+
+		receiptService.rescore(PointsRules.defaults(), new LongAdder());
+		for (int i = 0; i < saved.size(); i++) {
+			assertEquals(Long.valueOf(new ReceiptService().calculatePoints(fixtures.get(i))), receiptService.findPointsById(saved.get(i)));
+		}
+	}
+}
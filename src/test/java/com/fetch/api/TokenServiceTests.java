@@ -0,0 +1,117 @@
+package com.fetch.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import com.fetch.api.service.TokenService;
+
+/**
+ * Test Class for TokenService and CachingAuthenticationProvider
+ */
+public class TokenServiceTests {
+
+	private static final String SECRET = Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+	private static final Instant NOW = Instant.parse("2024-06-01T12:00:00Z");
+
+	private TokenService tokenService = new TokenService(true, SECRET, Duration.ofMinutes(15), Clock.fixed(NOW, ZoneOffset.UTC));
+
+	/**
+	 * testRoundTrip(): An issued token verifies to its username, whatever the scheme's case.
+	 */
+	@Test
+	public void testRoundTrip() {
+		String token = tokenService.issue("admin");
+
+		assertEquals("admin", tokenService.verify("Bearer " + token));
+		assertEquals("admin", tokenService.verify("bearer " + token));
+		assertEquals("first.last@example.com", tokenService.verify("Bearer " + tokenService.issue("first.last@example.com")));
+		assertEquals(NOW.getEpochSecond() + 900 + ".admin", token.substring(0, token.lastIndexOf('.')));
+	}
+
+	/**
+	 * testRejected(): Tampered, foreign, expired and malformed tokens do not verify.
+	 */
+	@Test
+	public void testRejected() {
+		String token = tokenService.issue("admin");
+		String signature = token.substring(token.lastIndexOf('.') + 1);
+
+		assertNull(tokenService.verify(null));
+		assertNull(tokenService.verify("Basic YWRtaW46cGFzc3dvcmQ="));
+		assertNull(tokenService.verify("Bearer " + token.replace(".admin.", ".admim.")));
+		assertNull(tokenService.verify("Bearer " + (NOW.getEpochSecond() + 90000) + ".admin." + signature));
+		assertNull(tokenService.verify("Bearer " + token.substring(0, token.length() - 1)));
+		assertNull(tokenService.verify("Bearer " + token.substring(0, token.length() - 1) + "B"));
+		assertNull(tokenService.verify("Bearer .admin." + signature));
+		assertNull(tokenService.verify("Bearer " + signature));
+
+		TokenService otherKey = new TokenService(true, Base64.getEncoder().encodeToString(new byte[32]), Duration.ofMinutes(15),
+				Clock.fixed(NOW, ZoneOffset.UTC));
+		assertNull(otherKey.verify("Bearer " + token));
+
+		TokenService later = new TokenService(true, SECRET, Duration.ofMinutes(15), Clock.fixed(NOW.plusSeconds(900), ZoneOffset.UTC));
+		assertNull(later.verify("Bearer " + token));
+
+		TokenService disabled = new TokenService(false, SECRET, Duration.ofMinutes(15), Clock.fixed(NOW, ZoneOffset.UTC));
+		assertNull(disabled.verify("Bearer " + token));
+	}
+
+	/**
+	 * testInvalidSettings(): Short secrets and usernames that cannot be put in a token are refused.
+	 */
+	@Test
+	public void testInvalidSettings() {
+		assertThrows(IllegalArgumentException.class, () -> new TokenService(true, "c2hvcnQ=", Duration.ofMinutes(1), Clock.systemUTC()));
+		assertThrows(IllegalArgumentException.class, () -> tokenService.issue("a b"));
+	}
+
+	/**
+	 * testCredentialCache(): Only successful checks are cached, keyed by username and password together.
+	 */
+	@Test
+	public void testCredentialCache() {
+		AtomicInteger checks = new AtomicInteger();
+		AuthenticationProvider passwordCheck = new AuthenticationProvider() {
+			@Override
+			public Authentication authenticate(Authentication authentication) {
+				checks.incrementAndGet();
+				if (!"password".equals(authentication.getCredentials())) {
+					throw new BadCredentialsException("Bad credentials");
+				}
+				return UsernamePasswordAuthenticationToken.authenticated(authentication.getName(), null, null);
+			}
+
+			@Override
+			public boolean supports(Class<?> authentication) {
+				return true;
+			}
+		};
+		CachingAuthenticationProvider provider = new CachingAuthenticationProvider(passwordCheck, 100, Duration.ofMinutes(1));
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals("admin", provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "password")).getName());
+		}
+		assertEquals(1, checks.get());
+		for (int i = 0; i < 2; i++) {
+			assertThrows(BadCredentialsException.class,
+					() -> provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("admin", "wrong")));
+		}
+		assertEquals(3, checks.get());
+		provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("other", "password"));
+		assertEquals(4, checks.get());
+	}
+}